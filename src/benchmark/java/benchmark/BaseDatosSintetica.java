@@ -0,0 +1,219 @@
+package benchmark;
+
+import bd.Conexion;
+import modelo.PeriodoFacturacion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Base H2 en memoria (modo MySQL) con datos sintéticos para los benchmarks.
+ *
+ * Reparto de las suscripciones generadas:
+ * - 70% al día (3 meses anteriores pagados)
+ * - 20% con el último mes pendiente (candidatas a RECORDATORIO)
+ * - 10% morosas: 3 meses pendientes y ULTIMATUM ya enviado (candidatas a corte)
+ * - 5% inactivas, 10% sin teléfono
+ * estado_cobranza queda como la dejaría la migración 7 (backfill).
+ * proxima_facturacion queda en NULL, así la generación revisa a todas
+ * (peor caso: primera corrida después de la migración).
+ */
+public final class BaseDatosSintetica {
+
+    public static final String URL = "jdbc:h2:mem:fnet_benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final int TAMANO_BATCH = 5000;
+
+    private BaseDatosSintetica() {
+    }
+
+    /**
+     * Apunta PoolConexiones a la base H2. Debe llamarse antes de la primera
+     * conexión.
+     */
+    public static void configurar() {
+        System.setProperty("DB_URL", URL);
+        System.setProperty("DB_USER", "sa");
+        System.setProperty("DB_PASSWORD", "benchmark");
+    }
+
+    /**
+     * Borra todo y genera el esquema con la cantidad de suscripciones pedida.
+     */
+    public static void generar(int suscripciones, LocalDate hoy, long semilla) throws SQLException {
+        Random rnd = new Random(semilla);
+
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                throw new SQLException("Sin conexión a la base H2");
+            }
+            crearEsquema(conn);
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement psCliente = conn.prepareStatement(
+                    "INSERT INTO cliente (id_cliente, nombres, apellidos, telefono, dni_cliente) VALUES (?, ?, ?, ?, ?)");
+                    PreparedStatement psSus = conn.prepareStatement(
+                            "INSERT INTO suscripcion (id_suscripcion, id_cliente, id_servicio, codigo_contrato, "
+                                    + "ip_cliente, dia_pago, mes_adelantado, activo) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                    PreparedStatement psFac = conn.prepareStatement(
+                            "INSERT INTO factura (id_suscripcion, fecha_emision, fecha_vencimiento, monto_total, "
+                                    + "monto_pagado, id_estado, codigo_factura, periodo_mes, rango_periodo) "
+                                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                    PreparedStatement psNot = conn.prepareStatement(
+                            "INSERT INTO notificacion_pendiente (id_suscripcion, tipo, mensaje, telefono, "
+                                    + "fecha_programada, estado) VALUES (?, ?, 'sintético', ?, ?, 'ENVIADO')");
+                    PreparedStatement psEstado = conn.prepareStatement(
+                            "INSERT INTO estado_cobranza (id_suscripcion, estado, fecha_vencimiento, proxima_accion) "
+                                    + "VALUES (?, ?, ?, ?)")) {
+
+                int codigo = 0;
+                for (int id = 1; id <= suscripciones; id++) {
+                    String telefono = rnd.nextInt(10) == 0 ? null : String.valueOf(900000000 + id);
+                    int idServicio = 1 + rnd.nextInt(5);
+                    double mensualidad = 40 + idServicio * 10;
+                    int diaPago = 1 + rnd.nextInt(28);
+                    boolean adelantado = rnd.nextBoolean();
+                    int perfil = rnd.nextInt(10); // 0..6 al día, 7..8 un mes, 9 moroso
+
+                    psCliente.setInt(1, id);
+                    psCliente.setString(2, "Cliente");
+                    psCliente.setString(3, "Sintético " + id);
+                    psCliente.setString(4, telefono);
+                    psCliente.setString(5, String.format("%08d", id));
+                    psCliente.addBatch();
+
+                    psSus.setInt(1, id);
+                    psSus.setInt(2, id);
+                    psSus.setInt(3, idServicio);
+                    psSus.setString(4, "CTR-" + id);
+                    psSus.setString(5, "10." + (id >> 16 & 255) + "." + (id >> 8 & 255) + "." + (id & 255));
+                    psSus.setInt(6, diaPago);
+                    psSus.setInt(7, adelantado ? 1 : 0);
+                    boolean activo = rnd.nextInt(20) != 0;
+                    psSus.setInt(8, activo ? 1 : 0);
+                    psSus.addBatch();
+
+                    // Historial: los 3 meses anteriores
+                    LocalDate vencePendiente = null;
+                    for (int k = 3; k >= 1; k--) {
+                        LocalDate mes = hoy.minusMonths(k);
+                        PeriodoFacturacion p = PeriodoFacturacion.calcular(
+                                mes.withDayOfMonth(mes.lengthOfMonth()), diaPago, adelantado);
+                        boolean pendiente = perfil == 9 || (perfil >= 7 && k == 1);
+                        if (pendiente && vencePendiente == null) {
+                            vencePendiente = p.getFechaVencimiento();
+                        }
+                        psFac.setInt(1, id);
+                        psFac.setDate(2, java.sql.Date.valueOf(p.getFechaInicio()));
+                        psFac.setDate(3, java.sql.Date.valueOf(p.getFechaVencimiento()));
+                        psFac.setDouble(4, mensualidad);
+                        psFac.setDouble(5, pendiente ? 0 : mensualidad);
+                        psFac.setInt(6, pendiente ? 1 : 2);
+                        psFac.setString(7, String.format("%04d", ++codigo));
+                        psFac.setString(8, p.getNombrePeriodo());
+                        psFac.setString(9, p.getRangoPeriodo());
+                        psFac.addBatch();
+                    }
+
+                    if (perfil == 9) {
+                        for (String tipo : new String[] { "RECORDATORIO", "ULTIMATUM" }) {
+                            psNot.setInt(1, id);
+                            psNot.setString(2, tipo);
+                            psNot.setString(3, telefono);
+                            psNot.setDate(4, java.sql.Date.valueOf(hoy.minusMonths(1)));
+                            psNot.addBatch();
+                        }
+                    }
+
+                    // dias_recordatorio = 0, plazo_pago_dias = 21
+                    String estado = vencePendiente == null ? "AL_DIA"
+                            : !activo ? "CORTADO" : perfil == 9 ? "ULTIMATUM" : "AL_DIA";
+                    LocalDate proxima = vencePendiente == null ? null
+                            : "AL_DIA".equals(estado) ? vencePendiente
+                                    : "ULTIMATUM".equals(estado) ? vencePendiente.plusDays(22) : null;
+                    psEstado.setInt(1, id);
+                    psEstado.setString(2, estado);
+                    psEstado.setDate(3, vencePendiente != null ? java.sql.Date.valueOf(vencePendiente) : null);
+                    psEstado.setDate(4, proxima != null ? java.sql.Date.valueOf(proxima) : null);
+                    psEstado.addBatch();
+
+                    if (id % TAMANO_BATCH == 0 || id == suscripciones) {
+                        psCliente.executeBatch();
+                        psSus.executeBatch();
+                        psFac.executeBatch();
+                        psNot.executeBatch();
+                        psEstado.executeBatch();
+                        conn.commit();
+                    }
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO secuencia (nombre, valor) VALUES ('factura', ?)")) {
+                    ps.setLong(1, codigo);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            }
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Esquema equivalente al de producción con las migraciones ya aplicadas
+     * (solo las columnas que usa el servicio).
+     */
+    private static void crearEsquema(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP ALL OBJECTS");
+            st.execute("CREATE TABLE configuracion_sistema (clave VARCHAR(50) PRIMARY KEY, valor VARCHAR(255), "
+                    + "descripcion VARCHAR(255))");
+            st.execute("INSERT INTO configuracion_sistema (clave, valor) VALUES "
+                    + "('whatsapp_habilitado', 'false'), ('router_habilitado', 'false'), "
+                    + "('plazo_pago_dias', '21'), ('dias_recordatorio', '0'), ('facturacion_hilos', '4')");
+            st.execute("CREATE TABLE servicio (id_servicio INT PRIMARY KEY, descripcion VARCHAR(100), "
+                    + "mensualidad DECIMAL(10,2))");
+            st.execute("INSERT INTO servicio VALUES (1, 'Plan 1', 50), (2, 'Plan 2', 60), (3, 'Plan 3', 70), "
+                    + "(4, 'Plan 4', 80), (5, 'Plan 5', 90)");
+            st.execute("CREATE TABLE cliente (id_cliente INT PRIMARY KEY, nombres VARCHAR(100), apellidos VARCHAR(100), "
+                    + "telefono VARCHAR(20), dni_cliente VARCHAR(15))");
+            st.execute("CREATE TABLE suscripcion (id_suscripcion INT AUTO_INCREMENT PRIMARY KEY, id_cliente INT, "
+                    + "id_servicio INT, codigo_contrato VARCHAR(30), direccion_instalacion VARCHAR(200), "
+                    + "ip_cliente VARCHAR(45), dia_pago INT, mes_adelantado TINYINT, activo TINYINT, "
+                    + "fecha_cancelacion DATE, proxima_facturacion DATE)");
+            st.execute("CREATE INDEX idx_suscripcion_proxima_facturacion ON suscripcion (activo, proxima_facturacion)");
+            st.execute("CREATE TABLE factura (id_factura INT AUTO_INCREMENT PRIMARY KEY, id_suscripcion INT, "
+                    + "fecha_emision DATE, fecha_vencimiento DATE, monto_total DECIMAL(10,2), monto_pagado DECIMAL(10,2), "
+                    + "id_estado INT, codigo_factura VARCHAR(20), periodo_mes VARCHAR(50), fecha_pago DATE, "
+                    + "rango_periodo VARCHAR(50), periodo_unico TINYINT DEFAULT 1)");
+            st.execute("CREATE UNIQUE INDEX uk_factura_suscripcion_periodo ON factura "
+                    + "(id_suscripcion, periodo_mes, periodo_unico)");
+            st.execute("CREATE INDEX idx_factura_codigo ON factura (codigo_factura)");
+            st.execute("CREATE TABLE notificacion_pendiente (id_notificacion INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "id_suscripcion INT, tipo VARCHAR(20), mensaje TEXT, telefono VARCHAR(20), "
+                    + "fecha_programada DATE, fecha_enviado DATETIME, estado VARCHAR(20), "
+                    + "reclamado_por VARCHAR(100), lease_expira DATETIME, "
+                    + "intentos INT NOT NULL DEFAULT 0, proximo_intento DATETIME, "
+                    + "id_mensaje VARCHAR(64), estado_entrega VARCHAR(20), fecha_entrega DATETIME, "
+                    + "pendiente_unico TINYINT AS (CASE WHEN estado = 'PENDIENTE' THEN 1 END))");
+            st.execute("CREATE UNIQUE INDEX uk_notificacion_pendiente_unica ON notificacion_pendiente "
+                    + "(id_suscripcion, tipo, pendiente_unico)");
+            st.execute("CREATE INDEX idx_notificacion_estado_reintento ON notificacion_pendiente "
+                    + "(estado, fecha_programada, id_notificacion, proximo_intento)");
+            st.execute("CREATE TABLE estado_cobranza (id_suscripcion INT PRIMARY KEY, "
+                    + "estado VARCHAR(20) NOT NULL DEFAULT 'AL_DIA', fecha_vencimiento DATE, proxima_accion DATE, "
+                    + "fecha_estado DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, fecha_recordado DATETIME, "
+                    + "fecha_ultimatum DATETIME, fecha_cortado DATETIME, fecha_reconectado DATETIME)");
+            st.execute("CREATE INDEX idx_estado_cobranza_proxima ON estado_cobranza (estado, proxima_accion)");
+            st.execute("CREATE TABLE alerta_gerente (id_alerta INT AUTO_INCREMENT PRIMARY KEY, tipo VARCHAR(30), "
+                    + "titulo VARCHAR(200), mensaje TEXT, id_suscripcion INT, leido TINYINT DEFAULT 0, "
+                    + "fecha_creacion DATETIME DEFAULT CURRENT_TIMESTAMP)");
+            st.execute("CREATE TABLE movimiento_caja (id_movimiento INT AUTO_INCREMENT PRIMARY KEY, fecha DATE, "
+                    + "monto DECIMAL(10,2), descripcion VARCHAR(255), id_categoria INT, id_usuario INT)");
+            st.execute("CREATE TABLE secuencia (nombre VARCHAR(50) PRIMARY KEY, valor BIGINT NOT NULL DEFAULT 0)");
+        }
+    }
+}
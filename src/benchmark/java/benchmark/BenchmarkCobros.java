@@ -0,0 +1,131 @@
+package benchmark;
+
+import bd.Conexion;
+import servicio.CobrosAutomaticoService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Macro-benchmark del ciclo de cobros sobre H2 con datos sintéticos.
+ *
+ * Para cada tamaño (por defecto 1k, 10k y 100k suscripciones) regenera la
+ * base, ejecuta las tres fases de CobrosAutomaticoService en orden y mide
+ * cada una. Se reporta la mediana de las repeticiones (la primera corrida
+ * de cada tamaño es de calentamiento y no se cuenta).
+ *
+ * Uso: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="1000 10k --repeticiones=5"
+ * (sin argumentos: 1k, 10k y 100k con 3 repeticiones)
+ */
+public class BenchmarkCobros {
+
+    private static final String[] FASES = { "generarFacturasFaltantes", "revisarFacturasVencidas",
+            "revisarUltimatumsVencidos" };
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> tamanos = new ArrayList<>();
+        int repeticiones = 3;
+        for (String arg : args) {
+            if (arg.startsWith("--repeticiones=")) {
+                repeticiones = Integer.parseInt(arg.substring("--repeticiones=".length()));
+            } else {
+                tamanos.add(Integer.parseInt(arg.replace("k", "000")));
+            }
+        }
+        if (tamanos.isEmpty()) {
+            tamanos = Arrays.asList(1_000, 10_000, 100_000);
+        }
+
+        BaseDatosSintetica.configurar();
+        PrintStream consola = System.out;
+        LocalDate hoy = LocalDate.now();
+
+        consola.println("═══════════════════════════════════════════════════════════");
+        consola.println("⏱️ BENCHMARK CICLO DE COBROS (H2 modo MySQL) - " + hoy);
+        consola.println("═══════════════════════════════════════════════════════════");
+
+        boolean planesVerificados = false;
+        for (int tamano : tamanos) {
+            long[][] tiempos = new long[FASES.length][repeticiones];
+            long[] filas = new long[FASES.length];
+
+            for (int rep = -1; rep < repeticiones; rep++) {
+                BaseDatosSintetica.generar(tamano, hoy, 42);
+
+                // El servicio escribe mucho en consola: silenciarlo mientras se mide
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                long[] medidas = new long[FASES.length];
+                long[] producidas = new long[FASES.length];
+                try {
+                    CobrosAutomaticoService servicio = new CobrosAutomaticoService();
+                    long antes = contar("SELECT COUNT(*) FROM factura");
+                    medidas[0] = medir(() -> servicio.generarFacturasFaltantes(false));
+                    producidas[0] = contar("SELECT COUNT(*) FROM factura") - antes;
+
+                    antes = contar("SELECT COUNT(*) FROM notificacion_pendiente");
+                    medidas[1] = medir(servicio::revisarFacturasVencidas);
+                    producidas[1] = contar("SELECT COUNT(*) FROM notificacion_pendiente") - antes;
+
+                    antes = contar("SELECT COUNT(*) FROM suscripcion WHERE activo = 0");
+                    medidas[2] = medir(servicio::revisarUltimatumsVencidos);
+                    producidas[2] = contar("SELECT COUNT(*) FROM suscripcion WHERE activo = 0") - antes;
+                } finally {
+                    System.setOut(consola);
+                }
+
+                if (!planesVerificados) {
+                    servicio.VerificacionPlanes.verificar();
+                    planesVerificados = true;
+                }
+
+                if (rep >= 0) { // rep -1 = calentamiento
+                    for (int f = 0; f < FASES.length; f++) {
+                        tiempos[f][rep] = medidas[f];
+                        filas[f] = producidas[f];
+                    }
+                }
+            }
+
+            consola.println("\n📊 " + String.format("%,d", tamano) + " suscripciones (" + repeticiones
+                    + " repeticiones, mediana)");
+            consola.println(String.format("   %-28s %10s %10s %10s %14s", "Fase", "ms", "min", "max",
+                    "suscrip./s"));
+            long totalMs = 0;
+            for (int f = 0; f < FASES.length; f++) {
+                long[] t = tiempos[f].clone();
+                Arrays.sort(t);
+                long mediana = t[t.length / 2];
+                totalMs += mediana;
+                consola.println(String.format("   %-28s %10d %10d %10d %,14.0f   (%d filas)", FASES[f],
+                        mediana, t[0], t[t.length - 1], tamano * 1000.0 / Math.max(1, mediana), filas[f]));
+            }
+            consola.println(String.format("   %-28s %10d %32s", "TOTAL CICLO", totalMs,
+                    String.format("%,.0f", tamano * 1000.0 / Math.max(1, totalMs))));
+        }
+
+        bd.PoolConexiones.cerrarPool();
+    }
+
+    private static long medir(Runnable fase) {
+        long inicio = System.nanoTime();
+        fase.run();
+        return (System.nanoTime() - inicio) / 1_000_000;
+    }
+
+    private static long contar(String sql) throws SQLException {
+        try (Connection conn = Conexion.getConexion();
+                Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import servicio.CobrosAutomaticoService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH: cada fase del ciclo de cobros medida por separado (SingleShotTime),
+ * con la base sintética regenerada antes de cada iteración.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=org.openjdk.jmh.Main
+ * -Dbenchmark.args="CicloCobros -p suscripciones=10000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class CicloCobrosBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int suscripciones;
+
+    private CobrosAutomaticoService servicio;
+
+    @Setup(Level.Trial)
+    public void configurar() {
+        BaseDatosSintetica.configurar();
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Setup(Level.Iteration)
+    public void regenerar() throws Exception {
+        BaseDatosSintetica.generar(suscripciones, LocalDate.now(), 42);
+        servicio = new CobrosAutomaticoService();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        bd.PoolConexiones.cerrarPool();
+    }
+
+    @Benchmark
+    public void generarFacturasFaltantes() {
+        servicio.generarFacturasFaltantes(false);
+    }
+
+    @Benchmark
+    public void revisarFacturasVencidas() {
+        servicio.revisarFacturasVencidas();
+    }
+
+    @Benchmark
+    public void revisarUltimatumsVencidos() {
+        servicio.revisarUltimatumsVencidos();
+    }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import modelo.CalculadoraPeriodos;
+import modelo.PeriodoFacturacion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH: cálculo de periodos de una corrida (todas las combinaciones de
+ * dia_pago y modalidad) al vuelo vs. tablas precalculadas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class PeriodosBenchmark {
+
+    private LocalDate hoy;
+    private CalculadoraPeriodos calculadora;
+
+    @Setup
+    public void preparar() {
+        hoy = LocalDate.now().withDayOfMonth(28);
+        calculadora = CalculadoraPeriodos.getInstancia();
+    }
+
+    @Benchmark
+    public void calcularAlVuelo(Blackhole bh) {
+        for (int dia = 1; dia <= 28; dia++) {
+            bh.consume(PeriodoFacturacion.calcular(hoy, dia, true));
+            bh.consume(PeriodoFacturacion.calcular(hoy, dia, false));
+        }
+    }
+
+    @Benchmark
+    public void calcularConTablas(Blackhole bh) {
+        for (int dia = 1; dia <= 28; dia++) {
+            bh.consume(calculadora.calcular(hoy, dia, true));
+            bh.consume(calculadora.calcular(hoy, dia, false));
+        }
+    }
+}
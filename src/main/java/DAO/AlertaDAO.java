@@ -75,6 +75,86 @@ public class AlertaDAO {
         return crearAlerta(alerta);
     }
 
+    /**
+     * Crea una alerta de reconexión fallida, evitando duplicados en las últimas 24 horas.
+     */
+    public boolean crearAlertaReconexionFallo(int idSuscripcion, String nombreCliente, String error) {
+        String checkSql = "SELECT COUNT(*) FROM alerta_gerente WHERE id_suscripcion = ? AND tipo = 'RECONEXION_FALLO' AND fecha_creacion >= DATE_SUB(NOW(), INTERVAL 24 HOUR)";
+        try (Connection conn = Conexion.getConexion(); PreparedStatement ps = conn.prepareStatement(checkSql)) {
+            ps.setInt(1, idSuscripcion);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next() && rs.getInt(1) > 0) {
+                return false; // Ya hay una alerta en las últimas 24 horas
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        AlertaGerente alerta = new AlertaGerente(
+                TipoAlerta.RECONEXION_FALLO,
+                "Error al reconectar servicio",
+                String.format("El cliente '%s' ya pagó pero no se pudo reconectar su servicio. Error: %s. " +
+                        "Requiere intervención manual.", nombreCliente, error));
+        alerta.setIdSuscripcion(idSuscripcion);
+        return crearAlerta(alerta);
+    }
+
+    /**
+     * Crea alertas CORTE_FALLIDO para varias suscripciones a la vez, con la
+     * misma regla que crearAlertaCorteFallido: no se repite si ya hay una en
+     * las últimas 24 horas. Una consulta para los duplicados y un batch.
+     *
+     * @param fallidos filas { idSuscripcion, nombreCliente, error }
+     * @return cantidad de alertas nuevas
+     */
+    public int crearAlertasCorteFallido(List<Object[]> fallidos) {
+        if (fallidos.isEmpty()) {
+            return 0;
+        }
+
+        String marcadores = String.join(", ", java.util.Collections.nCopies(fallidos.size(), "?"));
+        String checkSql = "SELECT DISTINCT id_suscripcion FROM alerta_gerente WHERE tipo = 'CORTE_FALLIDO' " +
+                "AND fecha_creacion >= DATE_SUB(NOW(), INTERVAL 24 HOUR) AND id_suscripcion IN (" + marcadores + ")";
+        String sql = "INSERT INTO alerta_gerente (tipo, titulo, mensaje, id_suscripcion, leido) VALUES (?, ?, ?, ?, 0)";
+
+        java.util.Set<Integer> conAlerta = new java.util.HashSet<>();
+        int creadas = 0;
+
+        try (Connection conn = Conexion.getConexion()) {
+            try (PreparedStatement ps = conn.prepareStatement(checkSql)) {
+                for (int i = 0; i < fallidos.size(); i++) {
+                    ps.setInt(i + 1, (Integer) fallidos.get(i)[0]);
+                }
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    conAlerta.add(rs.getInt(1));
+                }
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (Object[] f : fallidos) {
+                    if (!conAlerta.add((Integer) f[0])) {
+                        continue; // Ya hay una alerta (o se repite en el lote)
+                    }
+                    ps.setString(1, TipoAlerta.CORTE_FALLIDO.name());
+                    ps.setString(2, "Error al cortar servicio");
+                    ps.setString(3, String.format("No se pudo cortar el servicio del cliente '%s'. Error: %s. " +
+                            "Requiere intervención manual.", f[1], f[2]));
+                    ps.setInt(4, (Integer) f[0]);
+                    ps.addBatch();
+                    creadas++;
+                }
+                if (creadas > 0) {
+                    ps.executeBatch();
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        return creadas;
+    }
+
     /**
      * Obtiene todas las alertas no leídas.
      */
@@ -21,6 +21,11 @@ public class ConfiguracionDAO {
     public static final String MIKROTIK_IP = "mikrotik_ip";
     public static final String MIKROTIK_USUARIO = "mikrotik_usuario";
     public static final String MIKROTIK_PASSWORD = "mikrotik_password";
+    public static final String FACTURACION_HILOS = "facturacion_hilos";
+    public static final String CORTES_POR_ROUTER = "cortes_por_router";
+    public static final String NOTIFICACIONES_AUTOMATICAS = "notificaciones_automaticas";
+    public static final String ENVIO_HILOS = "envio_hilos";
+    public static final String ENVIO_MAX_INTENTOS = "envio_max_intentos";
 
     /**
      * Obtiene el valor de una configuración por su clave.
@@ -132,7 +137,12 @@ public class ConfiguracionDAO {
                 { CALLMEBOT_APIKEY, "", "API Key de CallMeBot para WhatsApp" },
                 { MIKROTIK_IP, "", "IP del router MikroTik principal" },
                 { MIKROTIK_USUARIO, "admin", "Usuario de acceso al router MikroTik" },
-                { MIKROTIK_PASSWORD, "", "Contraseña del router MikroTik" }
+                { MIKROTIK_PASSWORD, "", "Contraseña del router MikroTik" },
+                { FACTURACION_HILOS, "4", "Hilos para generar facturas en paralelo (1 = secuencial)" },
+                { CORTES_POR_ROUTER, "4", "Cortes simultáneos como máximo por router (1 = secuencial)" },
+                { NOTIFICACIONES_AUTOMATICAS, "0", "Enviar la cola de notificaciones cada hora (0 = envío manual por CSV)" },
+                { ENVIO_HILOS, "4", "Hilos para enviar notificaciones (el ritmo lo fija el proveedor)" },
+                { ENVIO_MAX_INTENTOS, "6", "Intentos de envío de una notificación antes de quedar en ERROR" }
         };
 
         try (Connection conn = Conexion.getConexion();
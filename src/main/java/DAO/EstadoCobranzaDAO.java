@@ -0,0 +1,422 @@
+package DAO;
+
+import bd.Conexion;
+import modelo.EstadoCobranza;
+import modelo.EstadoCobranza.Estado;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DAO de la tabla estado_cobranza: la etapa de cobranza de cada
+ * suscripción y la fecha de su siguiente acción.
+ *
+ * Se actualiza cuando ocurre algo (factura generada, pago, recordatorio
+ * programado, ultimátum enviado, corte, reconexión), así las pasadas
+ * horarias de CobrosAutomaticoService solo leen las filas cuya
+ * proxima_accion ya llegó (idx_estado_cobranza_proxima). Los cambios de
+ * factura hechos fuera del servicio se recogen cada hora con resincronizar.
+ */
+public class EstadoCobranzaDAO {
+
+    // Máximo de ids por consulta IN
+    private static final int TAMANO_LOTE = 500;
+
+    /**
+     * Recalcula deuda, etapa y próxima acción de las suscripciones dadas a
+     * partir de sus facturas PENDIENTES. Crea la fila si no existe.
+     * Usa la conexión (y transacción) del llamador.
+     *
+     * - Sin deuda: RECORDADO y ULTIMATUM vuelven a AL_DIA; CORTADO se
+     *   mantiene hasta la reconexión.
+     * - Con deuda: la etapa no cambia, solo la fecha de referencia y la
+     *   próxima acción.
+     */
+    public void recalcular(Connection conn, Collection<Integer> idsSuscripcion) throws SQLException {
+        List<Integer> ids = new ArrayList<>(new java.util.LinkedHashSet<>(idsSuscripcion));
+        if (ids.isEmpty()) {
+            return;
+        }
+        int[] plazos = leerPlazos(conn);
+
+        String sqlInsert = "INSERT IGNORE INTO estado_cobranza (id_suscripcion, estado, fecha_vencimiento, " +
+                "proxima_accion, fecha_estado) VALUES (?, ?, ?, ?, ?)";
+        String sqlUpdate = "UPDATE estado_cobranza SET estado = ?, fecha_vencimiento = ?, proxima_accion = ?, " +
+                "fecha_estado = COALESCE(?, fecha_estado) WHERE id_suscripcion = ?";
+
+        for (int i = 0; i < ids.size(); i += TAMANO_LOTE) {
+            List<Integer> bloque = ids.subList(i, Math.min(i + TAMANO_LOTE, ids.size()));
+            Map<Integer, LocalDate> deuda = obtenerVencimientoMasAntiguo(conn, bloque);
+            Map<Integer, Object[]> actuales = obtenerActuales(conn, bloque);
+            Timestamp ahora = new Timestamp(System.currentTimeMillis());
+
+            try (PreparedStatement psInsert = conn.prepareStatement(sqlInsert);
+                    PreparedStatement psUpdate = conn.prepareStatement(sqlUpdate)) {
+                boolean hayInsert = false;
+                boolean hayUpdate = false;
+
+                for (Integer id : bloque) {
+                    LocalDate vence = deuda.get(id);
+                    Object[] actual = actuales.get(id);
+                    Estado estado = actual == null ? Estado.AL_DIA : (Estado) actual[0];
+                    if (vence == null && (estado == Estado.RECORDADO || estado == Estado.ULTIMATUM)) {
+                        estado = Estado.AL_DIA;
+                    }
+                    LocalDate proxima = EstadoCobranza.calcularProximaAccion(estado, vence, plazos[0], plazos[1]);
+
+                    if (actual == null) {
+                        psInsert.setInt(1, id);
+                        psInsert.setString(2, estado.name());
+                        psInsert.setDate(3, vence != null ? java.sql.Date.valueOf(vence) : null);
+                        psInsert.setDate(4, proxima != null ? java.sql.Date.valueOf(proxima) : null);
+                        psInsert.setTimestamp(5, ahora);
+                        psInsert.addBatch();
+                        hayInsert = true;
+                    } else if (actual[0] != estado || !java.util.Objects.equals(actual[1], vence)
+                            || !java.util.Objects.equals(actual[2], proxima)) {
+                        psUpdate.setString(1, estado.name());
+                        psUpdate.setDate(2, vence != null ? java.sql.Date.valueOf(vence) : null);
+                        psUpdate.setDate(3, proxima != null ? java.sql.Date.valueOf(proxima) : null);
+                        psUpdate.setTimestamp(4, actual[0] != estado ? ahora : null);
+                        psUpdate.setInt(5, id);
+                        psUpdate.addBatch();
+                        hayUpdate = true;
+                    }
+                }
+
+                if (hayInsert) {
+                    psInsert.executeBatch();
+                }
+                if (hayUpdate) {
+                    psUpdate.executeBatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * Versión con conexión propia, para llamadores fuera de una transacción.
+     */
+    public boolean recalcular(Collection<Integer> idsSuscripcion) {
+        try (Connection conn = Conexion.getConexion()) {
+            recalcular(conn, idsSuscripcion);
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Recalcula las suscripciones cuya deuda cambió sin pasar por este
+     * servicio (facturas creadas o pagadas desde la aplicación de
+     * escritorio): las que tienen deuda sin fila en estado_cobranza, las
+     * cuya factura pendiente más antigua no coincide con fecha_vencimiento
+     * y las que ya no tienen deuda pero la fila aún la registra.
+     *
+     * @return suscripciones recalculadas o -1 si falló
+     */
+    public int resincronizar() {
+        String sql = "SELECT d.id_suscripcion FROM (" +
+                "   SELECT id_suscripcion, MIN(fecha_vencimiento) AS vence FROM factura " +
+                "   WHERE id_estado = 1 GROUP BY id_suscripcion) d " + // 1 = PENDIENTE
+                "LEFT JOIN estado_cobranza ec ON ec.id_suscripcion = d.id_suscripcion " +
+                "WHERE ec.id_suscripcion IS NULL OR ec.fecha_vencimiento IS NULL " +
+                "   OR ec.fecha_vencimiento <> d.vence " +
+                "UNION " +
+                "SELECT ec.id_suscripcion FROM estado_cobranza ec " +
+                "WHERE ec.fecha_vencimiento IS NOT NULL AND NOT EXISTS (SELECT 1 FROM factura f " +
+                "   WHERE f.id_suscripcion = ec.id_suscripcion AND f.id_estado = 1)";
+
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                return -1;
+            }
+            List<Integer> ids = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+            recalcular(conn, ids);
+            return ids.size();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * AL_DIA / RECONECTADO → RECORDADO para las suscripciones a las que se
+     * les acaba de programar el recordatorio de deuda vencida.
+     */
+    public int registrarRecordatorios(Collection<Integer> idsSuscripcion) {
+        return transicion(Estado.RECORDADO, "fecha_recordado", idsSuscripcion,
+                "'" + Estado.AL_DIA + "', '" + Estado.RECONECTADO + "'");
+    }
+
+    /**
+     * ULTIMATUM → CORTADO tras un corte confirmado por el router. Las que ya
+     * no están en ULTIMATUM (p. ej. pagaron y PagoDAO las pasó a AL_DIA) no
+     * se tocan.
+     */
+    public int registrarCortes(Collection<Integer> idsSuscripcion) {
+        return transicion(Estado.CORTADO, "fecha_cortado", idsSuscripcion, "'" + Estado.ULTIMATUM + "'");
+    }
+
+    /**
+     * Igual que registrarCortes, con la conexión (y transacción) del
+     * llamador: así la etapa cambia junto con suscripcion.activo.
+     */
+    public int registrarCortes(Connection conn, Collection<Integer> idsSuscripcion) throws SQLException {
+        return transicion(conn, Estado.CORTADO, "fecha_cortado", idsSuscripcion, "'" + Estado.ULTIMATUM + "'");
+    }
+
+    /**
+     * CORTADO → RECONECTADO. Si aún queda deuda, la próxima acción vuelve a
+     * ser el recordatorio.
+     */
+    public boolean registrarReconexion(int idSuscripcion) {
+        List<Integer> ids = Collections.singletonList(idSuscripcion);
+        if (transicion(Estado.RECONECTADO, "fecha_reconectado", ids, "'" + Estado.CORTADO + "'") == 0) {
+            return false;
+        }
+        return recalcular(ids);
+    }
+
+    /**
+     * RECORDADO → ULTIMATUM para las suscripciones cuyo ultimátum ya figura
+     * como ENVIADO (lo marque este servicio o el envío manual por CSV).
+     * Solo recorre las filas en RECORDADO.
+     *
+     * @return cantidad de suscripciones que pasaron a ULTIMATUM
+     */
+    public int sincronizarUltimatumsEnviados() {
+        try (Connection conn = Conexion.getConexion()) {
+            return sincronizarUltimatums(conn, null);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Igual que sincronizarUltimatumsEnviados pero solo para la suscripción
+     * de una notificación recién marcada como enviada.
+     */
+    public void registrarEnvio(Connection conn, int idNotificacion) throws SQLException {
+        sincronizarUltimatums(conn, Collections.singletonList(idNotificacion));
+    }
+
+    /**
+     * Situación de todas las suscripciones con IP, para comparar con la
+     * lista MOROSOS del router (ReconciliadorMorosos). Una sola consulta.
+     *
+     * @return filas { ip_cliente, id_suscripcion, activa, estado (o null),
+     *         cancelada, con_deuda, reconexion_pendiente }
+     */
+    public List<Object[]> listarSituacionRouter() {
+        List<Object[]> filas = new ArrayList<>();
+        String sql = "SELECT s.ip_cliente, s.id_suscripcion, s.activo, s.fecha_cancelacion, ec.estado, " +
+                "EXISTS (SELECT 1 FROM factura f WHERE f.id_suscripcion = s.id_suscripcion AND f.id_estado = 1) AS con_deuda, " +
+                "EXISTS (SELECT 1 FROM evento_pago ep WHERE ep.id_suscripcion = s.id_suscripcion " +
+                "   AND ep.estado = 'PENDIENTE') AS reconexion_pendiente " +
+                "FROM suscripcion s " +
+                "LEFT JOIN estado_cobranza ec ON ec.id_suscripcion = s.id_suscripcion " +
+                "WHERE s.ip_cliente IS NOT NULL AND s.ip_cliente <> ''";
+
+        try (Connection conn = Conexion.getConexion();
+                PreparedStatement ps = conn.prepareStatement(sql);
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                filas.add(new Object[] {
+                        rs.getString("ip_cliente").trim(),
+                        rs.getInt("id_suscripcion"),
+                        rs.getInt("activo") == 1,
+                        rs.getString("estado"),
+                        rs.getDate("fecha_cancelacion") != null,
+                        rs.getBoolean("con_deuda"),
+                        rs.getBoolean("reconexion_pendiente") });
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return filas;
+    }
+
+    /**
+     * Igual que registrarEnvio para un lote de notificaciones recién marcadas
+     * como enviadas (como máximo TAMANO_LOTE ids).
+     */
+    public void registrarEnvios(Connection conn, Collection<Integer> idsNotificacion) throws SQLException {
+        if (!idsNotificacion.isEmpty()) {
+            sincronizarUltimatums(conn, idsNotificacion);
+        }
+    }
+
+    private int sincronizarUltimatums(Connection conn, Collection<Integer> idsNotificacion) throws SQLException {
+        String sql = "SELECT ec.id_suscripcion, ec.fecha_vencimiento FROM estado_cobranza ec " +
+                "WHERE ec.estado = 'RECORDADO' " +
+                (idsNotificacion != null
+                        ? "AND ec.id_suscripcion IN (SELECT id_suscripcion FROM notificacion_pendiente "
+                                + "WHERE id_notificacion IN (" + marcadores(idsNotificacion.size()) + ")) "
+                        : "") +
+                "AND EXISTS (SELECT 1 FROM notificacion_pendiente np " +
+                "   WHERE np.id_suscripcion = ec.id_suscripcion " +
+                "   AND np.tipo = 'ULTIMATUM' AND np.estado = 'ENVIADO' " +
+                // Un ultimátum de una deuda anterior (ya pagada) no cuenta
+                "   AND (ec.fecha_recordado IS NULL OR np.fecha_enviado IS NULL " +
+                "       OR np.fecha_enviado >= ec.fecha_recordado))";
+
+        Map<Integer, LocalDate> enviados = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            if (idsNotificacion != null) {
+                int idx = 1;
+                for (Integer id : idsNotificacion) {
+                    ps.setInt(idx++, id);
+                }
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    java.sql.Date vence = rs.getDate("fecha_vencimiento");
+                    enviados.put(rs.getInt("id_suscripcion"), vence != null ? vence.toLocalDate() : null);
+                }
+            }
+        }
+        if (enviados.isEmpty()) {
+            return 0;
+        }
+
+        int[] plazos = leerPlazos(conn);
+        String sqlUpdate = "UPDATE estado_cobranza SET estado = 'ULTIMATUM', proxima_accion = ?, " +
+                "fecha_estado = NOW(), fecha_ultimatum = NOW() WHERE id_suscripcion = ? AND estado = 'RECORDADO'";
+        try (PreparedStatement ps = conn.prepareStatement(sqlUpdate)) {
+            for (Map.Entry<Integer, LocalDate> e : enviados.entrySet()) {
+                LocalDate proxima = EstadoCobranza.calcularProximaAccion(Estado.ULTIMATUM, e.getValue(),
+                        plazos[0], plazos[1]);
+                ps.setDate(1, proxima != null ? java.sql.Date.valueOf(proxima) : null);
+                ps.setInt(2, e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        return enviados.size();
+    }
+
+    /**
+     * Cambia de etapa un conjunto de suscripciones y sella la fecha de la
+     * transición. La próxima acción queda en NULL (espera un evento).
+     *
+     * @param desde etapas de origen permitidas (lista SQL) o null = cualquiera
+     */
+    private int transicion(Estado destino, String columnaFecha, Collection<Integer> idsSuscripcion, String desde) {
+        try (Connection conn = Conexion.getConexion()) {
+            return transicion(conn, destino, columnaFecha, idsSuscripcion, desde);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    private int transicion(Connection conn, Estado destino, String columnaFecha, Collection<Integer> idsSuscripcion,
+            String desde) throws SQLException {
+        List<Integer> ids = new ArrayList<>(idsSuscripcion);
+        int actualizadas = 0;
+
+        for (int i = 0; i < ids.size(); i += TAMANO_LOTE) {
+            List<Integer> bloque = ids.subList(i, Math.min(i + TAMANO_LOTE, ids.size()));
+            String sql = "UPDATE estado_cobranza SET estado = ?, proxima_accion = NULL, fecha_estado = NOW(), " +
+                    columnaFecha + " = NOW() WHERE id_suscripcion IN (" + marcadores(bloque.size()) + ")" +
+                    (desde != null ? " AND estado IN (" + desde + ")" : "");
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, destino.name());
+                int idx = 2;
+                for (Integer id : bloque) {
+                    ps.setInt(idx++, id);
+                }
+                actualizadas += ps.executeUpdate();
+            }
+        }
+        return actualizadas;
+    }
+
+    private Map<Integer, LocalDate> obtenerVencimientoMasAntiguo(Connection conn, List<Integer> ids)
+            throws SQLException {
+        Map<Integer, LocalDate> deuda = new HashMap<>();
+        String sql = "SELECT id_suscripcion, MIN(fecha_vencimiento) AS vence FROM factura " +
+                "WHERE id_estado = 1 AND id_suscripcion IN (" + marcadores(ids.size()) + ") GROUP BY id_suscripcion";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int idx = 1;
+            for (Integer id : ids) {
+                ps.setInt(idx++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    java.sql.Date vence = rs.getDate("vence");
+                    if (vence != null) {
+                        deuda.put(rs.getInt("id_suscripcion"), vence.toLocalDate());
+                    }
+                }
+            }
+        }
+        return deuda;
+    }
+
+    // { estado, fecha_vencimiento, proxima_accion } por id_suscripcion
+    private Map<Integer, Object[]> obtenerActuales(Connection conn, List<Integer> ids) throws SQLException {
+        Map<Integer, Object[]> actuales = new HashMap<>();
+        String sql = "SELECT id_suscripcion, estado, fecha_vencimiento, proxima_accion FROM estado_cobranza " +
+                "WHERE id_suscripcion IN (" + marcadores(ids.size()) + ")";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int idx = 1;
+            for (Integer id : ids) {
+                ps.setInt(idx++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    java.sql.Date vence = rs.getDate("fecha_vencimiento");
+                    java.sql.Date proxima = rs.getDate("proxima_accion");
+                    actuales.put(rs.getInt("id_suscripcion"), new Object[] {
+                            Estado.valueOf(rs.getString("estado")),
+                            vence != null ? vence.toLocalDate() : null,
+                            proxima != null ? proxima.toLocalDate() : null });
+                }
+            }
+        }
+        return actuales;
+    }
+
+    /**
+     * { dias_recordatorio, plazo_pago_dias } leídos con la misma conexión.
+     */
+    private int[] leerPlazos(Connection conn) throws SQLException {
+        int[] plazos = { 0, 21 }; // Mismos valores por defecto que CobrosAutomaticoService
+        String sql = "SELECT clave, valor FROM configuracion_sistema WHERE clave IN (?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, ConfiguracionDAO.DIAS_RECORDATORIO);
+            ps.setString(2, ConfiguracionDAO.PLAZO_PAGO_DIAS);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    try {
+                        int valor = Integer.parseInt(rs.getString("valor").trim());
+                        plazos[ConfiguracionDAO.DIAS_RECORDATORIO.equals(rs.getString("clave")) ? 0 : 1] = valor;
+                    } catch (Exception e) {
+                        // Valor inválido: se usa el valor por defecto
+                    }
+                }
+            }
+        }
+        return plazos;
+    }
+
+    private static String marcadores(int cantidad) {
+        return String.join(", ", Collections.nCopies(cantidad, "?"));
+    }
+}
@@ -0,0 +1,139 @@
+package DAO;
+
+import bd.Conexion;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Cola durable de eventos de pago (tabla evento_pago).
+ *
+ * PagoDAO publica un evento en la misma transacción que registra el pago;
+ * ReconexionWorker los consume cada pocos segundos. Estados:
+ * PENDIENTE → PROCESADO, o FALLIDO tras agotar los reintentos.
+ */
+public class EventoPagoDAO {
+
+    /**
+     * Publica un evento de pago usando la conexión (y transacción) del
+     * llamador: si el pago se revierte, el evento también.
+     */
+    public void publicar(Connection conn, int idSuscripcion, int idFactura) throws SQLException {
+        String sql = "INSERT INTO evento_pago (id_suscripcion, id_factura) VALUES (?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, idSuscripcion);
+            if (idFactura > 0) {
+                ps.setInt(2, idFactura);
+            } else {
+                ps.setNull(2, Types.INTEGER);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Publica un evento con conexión propia (pagos registrados por fuera).
+     */
+    public boolean publicar(int idSuscripcion) {
+        try (Connection conn = Conexion.getConexion()) {
+            publicar(conn, idSuscripcion, 0);
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Eventos PENDIENTES cuyo próximo intento ya llegó, del más antiguo al
+     * más nuevo (idx_evento_pago_estado_proximo).
+     *
+     * @return filas { id_evento, id_suscripcion, intentos }
+     */
+    public List<Object[]> obtenerPendientes(int limite) {
+        List<Object[]> eventos = new ArrayList<>();
+        String sql = "SELECT id_evento, id_suscripcion, intentos FROM evento_pago " +
+                "WHERE estado = 'PENDIENTE' AND proximo_intento <= NOW() " +
+                "ORDER BY proximo_intento, id_evento LIMIT ?";
+
+        try (Connection conn = Conexion.getConexion();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    eventos.add(new Object[] { rs.getLong("id_evento"), rs.getInt("id_suscripcion"),
+                            rs.getInt("intentos") });
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return eventos;
+    }
+
+    /**
+     * Marca eventos como PROCESADOS.
+     *
+     * @param resultado descripción breve de lo que se hizo (queda en ultimo_error)
+     */
+    public boolean marcarProcesados(Collection<Long> idsEvento, String resultado) {
+        return actualizar(idsEvento, "estado = 'PROCESADO', fecha_procesado = NOW(), ultimo_error = ?", resultado);
+    }
+
+    /**
+     * Marca eventos como FALLIDOS (sin más reintentos).
+     */
+    public boolean marcarFallidos(Collection<Long> idsEvento, String error) {
+        return actualizar(idsEvento, "estado = 'FALLIDO', fecha_procesado = NOW(), ultimo_error = ?", error);
+    }
+
+    /**
+     * Reprograma eventos para otro intento dentro de segundosEspera.
+     */
+    public boolean reprogramar(Collection<Long> idsEvento, int segundosEspera, String error) {
+        Timestamp proximo = new Timestamp(System.currentTimeMillis() + segundosEspera * 1000L);
+        String sql = "UPDATE evento_pago SET intentos = intentos + 1, proximo_intento = ?, ultimo_error = ? " +
+                "WHERE id_evento IN (" + marcadores(idsEvento.size()) + ")";
+
+        try (Connection conn = Conexion.getConexion();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, proximo);
+            ps.setString(2, recortar(error));
+            int idx = 3;
+            for (Long id : idsEvento) {
+                ps.setLong(idx++, id);
+            }
+            return ps.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private boolean actualizar(Collection<Long> idsEvento, String asignaciones, String texto) {
+        String sql = "UPDATE evento_pago SET " + asignaciones +
+                " WHERE id_evento IN (" + marcadores(idsEvento.size()) + ")";
+
+        try (Connection conn = Conexion.getConexion();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, recortar(texto));
+            int idx = 2;
+            for (Long id : idsEvento) {
+                ps.setLong(idx++, id);
+            }
+            return ps.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static String recortar(String texto) {
+        return texto != null && texto.length() > 255 ? texto.substring(0, 255) : texto;
+    }
+
+    private static String marcadores(int cantidad) {
+        return String.join(", ", java.util.Collections.nCopies(cantidad, "?"));
+    }
+}
@@ -5,10 +5,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import bd.Conexion;
 import modelo.NotificacionPendiente;
+import modelo.NotificacionPendiente.EstadoNotificacion;
 import modelo.NotificacionPendiente.TipoNotificacion;
 
 /**
@@ -16,13 +20,38 @@ import modelo.NotificacionPendiente.TipoNotificacion;
  */
 public class NotificacionDAO {
 
+    private final EstadoCobranzaDAO estadoCobranzaDAO = new EstadoCobranzaDAO();
+
+    // Identifica a esta instancia en reclamado_por (pid@host + sufijo al azar)
+    private static final String ID_INSTANCIA = crearIdInstancia();
+    private static final java.util.concurrent.atomic.AtomicLong RECLAMOS = new java.util.concurrent.atomic.AtomicLong();
+
+    // Estados de entrega de menor a mayor avance (ver actualizarEntregasLote)
+    public static final List<String> ESTADOS_ENTREGA = java.util.Arrays.asList("ACEPTADO", "ENTREGADO", "LEIDO",
+            "FALLIDO");
+
+    // Reintentos de envíos fallidos (ver marcarEstadoLote)
+    private static final int MAX_INTENTOS_DEFECTO = 6;
+    private static final int ESPERA_BASE_SEGUNDOS = 60;
+    private static final int ESPERA_MAXIMA_SEGUNDOS = 6 * 3600;
+
+    /**
+     * Cuando ya hay una PENDIENTE del mismo tipo (uk_notificacion_pendiente_unica)
+     * no se crea otra: se reemplaza su texto y teléfono por los nuevos, así
+     * lo que se envía corresponde a la deuda actual. La fecha programada no
+     * cambia.
+     */
+    public static final String SQL_ACTUALIZAR_PENDIENTE = "ON DUPLICATE KEY UPDATE " +
+            "mensaje = VALUES(mensaje), telefono = VALUES(telefono)";
+
     /**
-     * Crea una nueva notificación pendiente.
+     * Crea una nueva notificación pendiente (o actualiza el texto de la
+     * PENDIENTE del mismo tipo, ver SQL_ACTUALIZAR_PENDIENTE).
      */
     public boolean crearNotificacion(NotificacionPendiente n) {
         String sql = "INSERT INTO notificacion_pendiente " +
                 "(id_suscripcion, tipo, mensaje, telefono, fecha_programada, estado) " +
-                "VALUES (?, ?, ?, ?, ?, ?)";
+                "VALUES (?, ?, ?, ?, ?, ?) " + SQL_ACTUALIZAR_PENDIENTE;
 
         try (Connection conn = Conexion.getConexion();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -39,26 +68,158 @@ public class NotificacionDAO {
         }
     }
 
+    // Filas por sentencia en crearNotificacionesLote (6 parámetros por fila)
+    private static final int TAMANO_LOTE = 500;
+
+    /**
+     * Crea varias notificaciones con un INSERT multi-fila (una sentencia
+     * por cada TAMANO_LOTE filas, todas en una conexión).
+     * Las que ya tienen una PENDIENTE del mismo tipo no se duplican: se
+     * actualiza el texto de esa (SQL_ACTUALIZAR_PENDIENTE), así que no hace
+     * falta consultar antes.
+     *
+     * @return Filas afectadas (MySQL cuenta 1 por creada y 2 por actualizada)
+     */
+    public int crearNotificacionesLote(List<NotificacionPendiente> notificaciones) {
+        if (notificaciones.isEmpty()) {
+            return 0;
+        }
+        int creadas = 0;
+
+        try (Connection conn = Conexion.getConexion()) {
+            for (int i = 0; i < notificaciones.size(); i += TAMANO_LOTE) {
+                List<NotificacionPendiente> lote = notificaciones.subList(i,
+                        Math.min(i + TAMANO_LOTE, notificaciones.size()));
+
+                StringBuilder sql = new StringBuilder("INSERT INTO notificacion_pendiente " +
+                        "(id_suscripcion, tipo, mensaje, telefono, fecha_programada, estado) VALUES ");
+                for (int j = 0; j < lote.size(); j++) {
+                    sql.append(j == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+                }
+                sql.append(' ').append(SQL_ACTUALIZAR_PENDIENTE);
+
+                try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                    int idx = 1;
+                    for (NotificacionPendiente n : lote) {
+                        ps.setInt(idx++, n.getIdSuscripcion());
+                        ps.setString(idx++, n.getTipo().name());
+                        ps.setString(idx++, n.getMensaje());
+                        ps.setString(idx++, n.getTelefono());
+                        ps.setDate(idx++, n.getFechaProgramada());
+                        ps.setString(idx++, n.getEstado().name());
+                    }
+                    creadas += ps.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return creadas;
+    }
+
+    // SELECT común de las lecturas con nombre del cliente y contrato
+    private static final String SQL_CON_CLIENTE = "SELECT n.*, " +
+            "CONCAT(c.nombres, ' ', c.apellidos) as nombre_cliente, " +
+            "s.codigo_contrato " +
+            "FROM notificacion_pendiente n " +
+            "JOIN suscripcion s ON n.id_suscripcion = s.id_suscripcion " +
+            "JOIN cliente c ON s.id_cliente = c.id_cliente ";
+
+    // Filas por página de los cursores
+    public static final int TAMANO_PAGINA = 500;
+
     /**
      * Obtiene todas las notificaciones pendientes de envío.
-     * Solo retorna las que tienen fecha_programada <= hoy.
+     * Solo retorna las que tienen fecha_programada <= hoy y cuyo reintento
+     * (proximo_intento) ya llegó.
+     * No las reclama: para enviarlas usar reclamarPendientes.
+     * Carga todo en memoria; para colas grandes usar recorrerPendientes.
      */
     public List<NotificacionPendiente> obtenerPendientes() {
         List<NotificacionPendiente> lista = new ArrayList<>();
-        String sql = "SELECT n.*, " +
-                "CONCAT(c.nombres, ' ', c.apellidos) as nombre_cliente, " +
-                "s.codigo_contrato " +
-                "FROM notificacion_pendiente n " +
-                "JOIN suscripcion s ON n.id_suscripcion = s.id_suscripcion " +
-                "JOIN cliente c ON s.id_cliente = c.id_cliente " +
-                "WHERE n.estado = 'PENDIENTE' AND n.fecha_programada <= CURRENT_DATE() " +
-                "ORDER BY n.fecha_programada ASC";
+        for (NotificacionPendiente n : recorrerPendientes(TAMANO_PAGINA)) {
+            lista.add(n);
+        }
+        return lista;
+    }
 
-        try (Connection conn = Conexion.getConexion();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                lista.add(mapearNotificacion(rs));
+    /**
+     * Igual que obtenerPendientes pero por páginas (keyset sobre
+     * fecha_programada, id_notificacion): en memoria solo queda una página,
+     * sin importar el tamaño de la cola. Cada página usa su propia conexión.
+     */
+    public Iterable<NotificacionPendiente> recorrerPendientes(int tamanoPagina) {
+        return () -> new CursorKeyset(
+                SQL_CON_CLIENTE + "WHERE n.estado = 'PENDIENTE' AND n.fecha_programada <= CURRENT_DATE() "
+                        + "AND (n.proximo_intento IS NULL OR n.proximo_intento <= NOW()) ",
+                true, tamanoPagina);
+    }
+
+    /**
+     * Reclama hasta "limite" notificaciones PENDIENTES para esta instancia y
+     * las devuelve. El UPDATE marca las filas con un token propio y un
+     * lease; mientras el lease esté vigente ninguna otra instancia (ni otra
+     * corrida de esta) las toma. Si el proceso muere sin escribir el estado,
+     * el lease vence y las filas vuelven a reclamarse solas. Las que ya
+     * tienen resultado sin escribir las mantiene reservadas EscritorEstados
+     * (extenderLease) y DespachadorNotificaciones no las vuelve a enviar.
+     *
+     * @param segundosLease cuánto tiempo quedan reservadas
+     * @param tipos         tipos a reclamar, o null para todos
+     * @param despuesDe     última notificación del reclamo anterior (keyset:
+     *                      solo se buscan las que van después) o null
+     */
+    public List<NotificacionPendiente> reclamarPendientes(int limite, int segundosLease,
+            Collection<TipoNotificacion> tipos, NotificacionPendiente despuesDe) {
+        List<NotificacionPendiente> lista = new ArrayList<>();
+        String token = ID_INSTANCIA + "#" + RECLAMOS.incrementAndGet();
+
+        // UPDATE ... ORDER BY ... LIMIT: InnoDB bloquea cada fila y vuelve a
+        // evaluar el WHERE, así dos instancias nunca reclaman la misma
+        String sqlReclamo = "UPDATE notificacion_pendiente " +
+                "SET reclamado_por = ?, lease_expira = DATE_ADD(NOW(), INTERVAL ? SECOND) " +
+                "WHERE estado = 'PENDIENTE' AND fecha_programada <= CURRENT_DATE() " +
+                "AND (proximo_intento IS NULL OR proximo_intento <= NOW()) " +
+                "AND (lease_expira IS NULL OR lease_expira < NOW()) " +
+                (tipos != null ? "AND tipo IN (" + marcadores(tipos.size()) + ") " : "") +
+                (despuesDe != null
+                        ? "AND (fecha_programada > ? OR (fecha_programada = ? AND id_notificacion > ?)) "
+                        : "") +
+                "ORDER BY fecha_programada, id_notificacion LIMIT ?";
+        String sqlLeer = SQL_CON_CLIENTE +
+                "WHERE n.reclamado_por = ? AND n.estado = 'PENDIENTE' " +
+                "ORDER BY n.fecha_programada, n.id_notificacion";
+
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                return lista; // BD caída: nada reclamado, se intenta en la siguiente corrida
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sqlReclamo)) {
+                int idx = 1;
+                ps.setString(idx++, token);
+                ps.setInt(idx++, segundosLease);
+                if (tipos != null) {
+                    for (TipoNotificacion tipo : tipos) {
+                        ps.setString(idx++, tipo.name());
+                    }
+                }
+                if (despuesDe != null) {
+                    ps.setDate(idx++, despuesDe.getFechaProgramada());
+                    ps.setDate(idx++, despuesDe.getFechaProgramada());
+                    ps.setInt(idx++, despuesDe.getIdNotificacion());
+                }
+                ps.setInt(idx, limite);
+                if (ps.executeUpdate() == 0) {
+                    return lista;
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sqlLeer)) {
+                ps.setString(1, token);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        lista.add(mapearNotificacion(rs));
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -67,30 +228,100 @@ public class NotificacionDAO {
     }
 
     /**
-     * Obtiene las notificaciones fallidas por falta de número
-     * para mostrarlas en la "Bandeja del Gerente".
+     * Alarga el lease de notificaciones que siguen PENDIENTES en BD pero
+     * cuyo resultado ya se conoce y falta escribir (EscritorEstados): así
+     * ninguna instancia las reclama y las vuelve a enviar mientras tanto.
+     *
+     * @return filas actualizadas o -1 si falló
      */
-    public List<NotificacionPendiente> obtenerErroresSinTelefono() {
-        List<NotificacionPendiente> lista = new ArrayList<>();
-        String sql = "SELECT n.*, CONCAT(c.nombres, ' ', c.apellidos) as nombre_cliente, s.codigo_contrato " +
-                "FROM notificacion_pendiente n " +
-                "JOIN suscripcion s ON n.id_suscripcion = s.id_suscripcion " +
-                "JOIN cliente c ON s.id_cliente = c.id_cliente " +
-                "WHERE n.estado = 'SIN_TELEFONO' " +
-                "ORDER BY n.fecha_programada DESC";
+    public int extenderLease(Collection<Integer> idsNotificacion, int segundosLease) {
+        List<Integer> ids = new ArrayList<>(idsNotificacion);
+        int actualizadas = 0;
 
-        try (Connection conn = Conexion.getConexion();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                lista.add(mapearNotificacion(rs));
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                return -1;
+            }
+            for (int i = 0; i < ids.size(); i += TAMANO_LOTE) {
+                List<Integer> bloque = ids.subList(i, Math.min(i + TAMANO_LOTE, ids.size()));
+                String sql = "UPDATE notificacion_pendiente " +
+                        "SET lease_expira = DATE_ADD(NOW(), INTERVAL ? SECOND) " +
+                        "WHERE estado = 'PENDIENTE' AND id_notificacion IN (" + marcadores(bloque.size()) + ")";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int idx = 1;
+                    ps.setInt(idx++, segundosLease);
+                    for (Integer id : bloque) {
+                        ps.setInt(idx++, id);
+                    }
+                    actualizadas += ps.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        return actualizadas;
+    }
+
+    /**
+     * Cuántas notificaciones hay listas para enviar (las mismas que
+     * reclamarPendientes puede tomar, sin mirar leases) por tipo.
+     */
+    public Map<TipoNotificacion, Integer> contarPendientesPorTipo() {
+        Map<TipoNotificacion, Integer> conteo = new EnumMap<>(TipoNotificacion.class);
+        String sql = "SELECT tipo, COUNT(*) AS cantidad FROM notificacion_pendiente " +
+                "WHERE estado = 'PENDIENTE' AND fecha_programada <= CURRENT_DATE() " +
+                "AND (proximo_intento IS NULL OR proximo_intento <= NOW()) GROUP BY tipo";
+
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                return conteo;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    NotificacionPendiente n = new NotificacionPendiente();
+                    n.setTipo(rs.getString("tipo"));
+                    conteo.merge(n.getTipo(), rs.getInt("cantidad"), Integer::sum);
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return conteo;
+    }
+
+    private static String marcadores(int cantidad) {
+        return String.join(", ", java.util.Collections.nCopies(cantidad, "?"));
+    }
+
+    private static String crearIdInstancia() {
+        String id = java.lang.management.ManagementFactory.getRuntimeMXBean().getName() + "-"
+                + java.util.UUID.randomUUID().toString().substring(0, 8);
+        return id.length() > 80 ? id.substring(id.length() - 80) : id;
+    }
+
+    /**
+     * Obtiene las notificaciones fallidas por falta de número
+     * para mostrarlas en la "Bandeja del Gerente".
+     * Carga todo en memoria; para listas grandes usar recorrerErroresSinTelefono.
+     */
+    public List<NotificacionPendiente> obtenerErroresSinTelefono() {
+        List<NotificacionPendiente> lista = new ArrayList<>();
+        for (NotificacionPendiente n : recorrerErroresSinTelefono(TAMANO_PAGINA)) {
+            lista.add(n);
+        }
         return lista;
     }
 
+    /**
+     * Igual que obtenerErroresSinTelefono pero por páginas (de la más nueva a
+     * la más antigua).
+     */
+    public Iterable<NotificacionPendiente> recorrerErroresSinTelefono(int tamanoPagina) {
+        return () -> new CursorKeyset(SQL_CON_CLIENTE + "WHERE n.estado = 'SIN_TELEFONO' ", false, tamanoPagina);
+    }
+
     /**
      * Obtiene notificaciones por suscripción.
      */
@@ -123,7 +354,12 @@ public class NotificacionDAO {
         try (Connection conn = Conexion.getConexion();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, idNotificacion);
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            // Si era el ultimátum, la suscripción pasa a ULTIMATUM
+            estadoCobranzaDAO.registrarEnvio(conn, idNotificacion);
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -131,10 +367,18 @@ public class NotificacionDAO {
     }
 
     /**
-     * Marca una notificación como error (no se pudo enviar).
+     * Registra un envío fallido: se reintenta más tarde o queda en ERROR si
+     * agotó los intentos (ver marcarEstadoLote).
      */
     public boolean marcarComoError(int idNotificacion) {
-        String sql = "UPDATE notificacion_pendiente SET estado = 'ERROR' WHERE id_notificacion = ?";
+        return marcarEstadoLote(java.util.Collections.singletonList(idNotificacion), EstadoNotificacion.ERROR) > 0;
+    }
+
+    /**
+     * Marca como SIN_TELEFONO (para crear alerta al gerente).
+     */
+    public boolean marcarSinTelefono(int idNotificacion) {
+        String sql = "UPDATE notificacion_pendiente SET estado = 'SIN_TELEFONO' WHERE id_notificacion = ?";
 
         try (Connection conn = Conexion.getConexion();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -147,21 +391,190 @@ public class NotificacionDAO {
     }
 
     /**
-     * Marca como SIN_TELEFONO (para crear alerta al gerente).
+     * Cambia el estado de varias notificaciones con un UPDATE ... IN por
+     * cada TAMANO_LOTE ids, todas en una conexión, y libera su reclamo
+     * (reclamarPendientes). ENVIADO además sella
+     * fecha_enviado y avanza a ULTIMATUM las suscripciones cuyo ultimátum
+     * quedó enviado (igual que marcarComoEnviada).
+     * ERROR es un intento fallido: la notificación sigue PENDIENTE con
+     * proximo_intento a una espera exponencial con jitter (ESPERA_BASE_SEGUNDOS
+     * · 2^intentos, entre 50% y 100%, tope ESPERA_MAXIMA_SEGUNDOS) y solo
+     * queda en ERROR al llegar a envio_max_intentos.
+     * Todo en una transacción: o se escribe el lote completo o nada.
+     *
+     * @return Cantidad de notificaciones actualizadas, o -1 si falló (el
+     *         llamador puede reintentar el lote completo)
      */
-    public boolean marcarSinTelefono(int idNotificacion) {
-        String sql = "UPDATE notificacion_pendiente SET estado = 'SIN_TELEFONO' WHERE id_notificacion = ?";
+    public int marcarEstadoLote(Collection<Integer> idsNotificacion, EstadoNotificacion estado) {
+        List<Integer> ids = new ArrayList<>(idsNotificacion);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        boolean enviado = estado == EstadoNotificacion.ENVIADO;
+        boolean fallido = estado == EstadoNotificacion.ERROR;
+        int actualizadas = 0;
 
-        try (Connection conn = Conexion.getConexion();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, idNotificacion);
-            return ps.executeUpdate() > 0;
+        Connection conn = null;
+        try {
+            conn = Conexion.getConexion();
+            if (conn == null) {
+                return -1; // BD caída: el llamador reintenta (EscritorEstados)
+            }
+            conn.setAutoCommit(false);
+            int maxIntentos = fallido ? leerMaxIntentos(conn) : 0;
+
+            for (int i = 0; i < ids.size(); i += TAMANO_LOTE) {
+                List<Integer> bloque = ids.subList(i, Math.min(i + TAMANO_LOTE, ids.size()));
+                // MySQL asigna de izquierda a derecha: intentos se incrementa al final
+                String sql = "UPDATE notificacion_pendiente SET reclamado_por = NULL, lease_expira = NULL, " +
+                        (fallido
+                                ? "estado = CASE WHEN intentos + 1 >= ? THEN 'ERROR' ELSE 'PENDIENTE' END, " +
+                                        "proximo_intento = CASE WHEN intentos + 1 >= ? THEN NULL " +
+                                        "ELSE DATE_ADD(NOW(), INTERVAL FLOOR(LEAST(?, ? * POWER(2, intentos)) " +
+                                        "* (0.5 + RAND() / 2)) SECOND) END"
+                                : "estado = ?") +
+                        (enviado ? ", fecha_enviado = NOW()" : "") +
+                        (enviado || fallido ? ", intentos = intentos + 1" : "") +
+                        " WHERE id_notificacion IN (" +
+                        String.join(", ", java.util.Collections.nCopies(bloque.size(), "?")) + ")";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int idx = 1;
+                    if (fallido) {
+                        ps.setInt(idx++, maxIntentos);
+                        ps.setInt(idx++, maxIntentos);
+                        ps.setInt(idx++, ESPERA_MAXIMA_SEGUNDOS);
+                        ps.setInt(idx++, ESPERA_BASE_SEGUNDOS);
+                    } else {
+                        ps.setString(idx++, estado.name());
+                    }
+                    for (Integer id : bloque) {
+                        ps.setInt(idx++, id);
+                    }
+                    actualizadas += ps.executeUpdate();
+                }
+                if (enviado) {
+                    estadoCobranzaDAO.registrarEnvios(conn, bloque);
+                }
+            }
+
+            conn.commit();
+            return actualizadas;
+
+        } catch (Exception e) {
+            try {
+                if (conn != null)
+                    conn.rollback();
+            } catch (Exception ex) {
+            }
+            e.printStackTrace();
+            return -1;
+        } finally {
+            try {
+                if (conn != null)
+                    conn.close();
+            } catch (Exception ex) {
+            }
+        }
+    }
+
+    /**
+     * Guarda el id que el proveedor asignó a cada notificación enviada
+     * (JDBC batch, una conexión). Varias notificaciones agrupadas en un
+     * mensaje comparten el id.
+     *
+     * @return true si se escribió todo
+     */
+    public boolean guardarIdsMensaje(Map<Integer, String> idsMensaje) {
+        if (idsMensaje.isEmpty()) {
+            return true;
+        }
+        String sql = "UPDATE notificacion_pendiente SET id_mensaje = ? WHERE id_notificacion = ?";
+
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                return false;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (Map.Entry<Integer, String> e : idsMensaje.entrySet()) {
+                    ps.setString(1, e.getValue());
+                    ps.setInt(2, e.getKey());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    /**
+     * Aplica estados de entrega informados por el proveedor (JDBC batch por
+     * id_mensaje, idx_notificacion_id_mensaje). Un estado nunca retrocede:
+     * un "entregado" que llega tarde no pisa un "leído".
+     *
+     * @param entregas { id_mensaje, estado_entrega } con los estados de
+     *                 ESTADOS_ENTREGA
+     * @return las entregas cuyo id_mensaje aún no está en la tabla (el
+     *         callback llegó antes que EscritorEstados lo guardara), o null
+     *         si falló la escritura
+     */
+    public List<String[]> actualizarEntregasLote(List<String[]> entregas) {
+        List<String[]> sinCoincidencia = new ArrayList<>();
+        if (entregas.isEmpty()) {
+            return sinCoincidencia;
+        }
+        String orden = "'" + String.join("', '", ESTADOS_ENTREGA) + "'";
+        String sql = "UPDATE notificacion_pendiente SET estado_entrega = ?, fecha_entrega = NOW() " +
+                "WHERE id_mensaje = ? AND (estado_entrega IS NULL " +
+                "OR FIELD(estado_entrega, " + orden + ") <= FIELD(?, " + orden + "))";
+
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                return null;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (String[] e : entregas) {
+                    ps.setString(1, e[1]);
+                    ps.setString(2, e[0]);
+                    ps.setString(3, e[1]);
+                    ps.addBatch();
+                }
+                int[] filas = ps.executeBatch();
+                for (int i = 0; i < filas.length; i++) {
+                    if (filas[i] == 0) {
+                        sinCoincidencia.add(entregas.get(i));
+                    }
+                }
+            }
+            return sinCoincidencia;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * envio_max_intentos leído con la misma conexión (mínimo 1).
+     */
+    private int leerMaxIntentos(Connection conn) throws SQLException {
+        String sql = "SELECT valor FROM configuracion_sistema WHERE clave = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, ConfiguracionDAO.ENVIO_MAX_INTENTOS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    try {
+                        return Math.max(1, Integer.parseInt(rs.getString("valor").trim()));
+                    } catch (Exception e) {
+                        // Valor inválido: se usa el valor por defecto
+                    }
+                }
+            }
+        }
+        return MAX_INTENTOS_DEFECTO;
+    }
+
     /**
      * Cancela notificaciones pendientes de una suscripción.
      * Usado cuando el cliente paga antes del envío.
@@ -200,6 +613,85 @@ public class NotificacionDAO {
         }
     }
 
+    /**
+     * Recorre una consulta por páginas con keyset sobre
+     * (fecha_programada, id_notificacion) (idx_notificacion_estado_reintento):
+     * cada página empieza donde terminó la anterior, sin OFFSET, así el costo
+     * por página no crece con el avance. Lee la siguiente página solo cuando
+     * se consumió la actual.
+     */
+    private class CursorKeyset implements java.util.Iterator<NotificacionPendiente> {
+        private final String sqlBase;
+        private final boolean ascendente;
+        private final int tamanoPagina;
+        private java.util.Iterator<NotificacionPendiente> pagina = java.util.Collections.emptyIterator();
+        private java.sql.Date ultimaFecha = null;
+        private int ultimoId = 0;
+        private boolean agotado = false;
+
+        CursorKeyset(String sqlBase, boolean ascendente, int tamanoPagina) {
+            this.sqlBase = sqlBase;
+            this.ascendente = ascendente;
+            this.tamanoPagina = Math.max(1, tamanoPagina);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!pagina.hasNext() && !agotado) {
+                List<NotificacionPendiente> filas = leerPagina();
+                agotado = filas.size() < tamanoPagina;
+                if (!filas.isEmpty()) {
+                    NotificacionPendiente ultima = filas.get(filas.size() - 1);
+                    ultimaFecha = ultima.getFechaProgramada();
+                    ultimoId = ultima.getIdNotificacion();
+                    agotado |= ultimaFecha == null; // Sin clave no se puede seguir
+                }
+                pagina = filas.iterator();
+            }
+            return pagina.hasNext();
+        }
+
+        @Override
+        public NotificacionPendiente next() {
+            if (!hasNext()) {
+                throw new java.util.NoSuchElementException();
+            }
+            return pagina.next();
+        }
+
+        private List<NotificacionPendiente> leerPagina() {
+            String op = ascendente ? ">" : "<";
+            String orden = ascendente ? "ASC" : "DESC";
+            String sql = sqlBase +
+                    (ultimaFecha != null
+                            ? "AND (n.fecha_programada " + op + " ? OR (n.fecha_programada = ? AND n.id_notificacion "
+                                    + op + " ?)) "
+                            : "") +
+                    "ORDER BY n.fecha_programada " + orden + ", n.id_notificacion " + orden + " LIMIT ?";
+
+            List<NotificacionPendiente> filas = new ArrayList<>(tamanoPagina);
+            try (Connection conn = Conexion.getConexion();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                int idx = 1;
+                if (ultimaFecha != null) {
+                    ps.setDate(idx++, ultimaFecha);
+                    ps.setDate(idx++, ultimaFecha);
+                    ps.setInt(idx++, ultimoId);
+                }
+                ps.setInt(idx, tamanoPagina);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        filas.add(mapearNotificacion(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                agotado = true; // No repetir la página en un bucle
+            }
+            return filas;
+        }
+    }
+
     /**
      * Mapea un ResultSet a NotificacionPendiente.
      */
@@ -213,6 +705,10 @@ public class NotificacionDAO {
         n.setFechaProgramada(rs.getDate("fecha_programada"));
         n.setFechaEnviado(rs.getTimestamp("fecha_enviado"));
         n.setEstado(rs.getString("estado"));
+        n.setIntentos(rs.getInt("intentos"));
+        n.setProximoIntento(rs.getTimestamp("proximo_intento"));
+        n.setIdMensaje(rs.getString("id_mensaje"));
+        n.setEstadoEntrega(rs.getString("estado_entrega"));
 
         // Campos opcionales (pueden no estar en todas las consultas)
         try {
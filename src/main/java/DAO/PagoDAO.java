@@ -3,13 +3,26 @@ package DAO;
 import bd.Conexion;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.Locale;
+import modelo.CalculadoraPeriodos;
+import modelo.FacturaHistorica;
+import modelo.FacturaNueva;
+import modelo.PeriodoFacturacion;
+import modelo.ResumenDeuda;
 
 public class PagoDAO {
 
+    // Etapa de cobranza: se recalcula en la misma transacción que facturas y pagos
+    private final EstadoCobranzaDAO estadoCobranzaDAO = new EstadoCobranzaDAO();
+
+    // Eventos de pago para ReconexionWorker (misma transacción que el pago)
+    private final EventoPagoDAO eventoPagoDAO = new EventoPagoDAO();
+
     // 1. Buscar deudas (Actualizado para traer id_suscripcion)
     public List<Object[]> buscarDeudasPorCliente(String textoBusqueda) {
         List<Object[]> lista = new ArrayList<>();
@@ -117,7 +130,9 @@ public class PagoDAO {
             // 5. Obtener nombre del cliente y periodo para la descripción de caja
             String nombreCliente = "";
             String periodoMes = "";
-            String sqlCliente = "SELECT CONCAT(c.nombres, ' ', c.apellidos) as nombre_cliente, f2.periodo_mes " +
+            int idSuscripcion = 0;
+            String sqlCliente = "SELECT CONCAT(c.nombres, ' ', c.apellidos) as nombre_cliente, f2.periodo_mes, " +
+                    "f2.id_suscripcion " +
                     "FROM factura f2 " +
                     "JOIN suscripcion sus ON f2.id_suscripcion = sus.id_suscripcion " +
                     "JOIN cliente c ON sus.id_cliente = c.id_cliente " +
@@ -128,6 +143,7 @@ public class PagoDAO {
                 if (rsCliente.next()) {
                     nombreCliente = rsCliente.getString("nombre_cliente");
                     periodoMes = rsCliente.getString("periodo_mes");
+                    idSuscripcion = rsCliente.getInt("id_suscripcion");
                 }
             }
 
@@ -143,6 +159,13 @@ public class PagoDAO {
                 psCaja.executeUpdate();
             }
 
+            // 7. Etapa de cobranza (vuelve a AL_DIA si ya no queda deuda) y
+            // evento para la reconexión automática
+            if (idSuscripcion > 0) {
+                estadoCobranzaDAO.recalcular(conn, java.util.Collections.singletonList(idSuscripcion));
+                eventoPagoDAO.publicar(conn, idSuscripcion, idFactura);
+            }
+
             conn.commit();
             return true;
 
@@ -199,110 +222,46 @@ public class PagoDAO {
                 }
             }
 
-            LocalDate hoy = LocalDate.now();
-            int diaHoy = hoy.getDayOfMonth();
-
-            // B. VALIDACIÓN: Solo generar si ya llegó o pasó el día de pago
-            if (diaHoy < diaPago) {
+            // B y C. Calcular RANGO DE FECHAS y CONCEPTO según tipo
+            // (null si aún no llega el día de pago)
+            PeriodoFacturacion periodo = CalculadoraPeriodos.getInstancia().calcular(LocalDate.now(), diaPago,
+                    esMesAdelantado);
+            if (periodo == null) {
                 // Silencioso: no generar log por cada cliente que aún no le toca
                 return false;
             }
+            String nombrePeriodo = periodo.getNombrePeriodo();
+            String rangoPeriodo = periodo.getRangoPeriodo();
+            LocalDate fechaVencimiento = periodo.getFechaVencimiento();
 
-            // C. Calcular RANGO DE FECHAS y CONCEPTO según tipo
-            LocalDate fechaInicio, fechaFin, fechaVencimiento;
-            String nombrePeriodo, rangoPeriodo;
-            DateTimeFormatter fmtMes = DateTimeFormatter.ofPattern("MMMM yyyy", new Locale("es", "ES"));
-            DateTimeFormatter fmtRango = DateTimeFormatter.ofPattern("dd MMM", new Locale("es", "ES"));
-
-            if (esMesAdelantado) {
-                // PREPAGO: Cobra período ADELANTE
-                // Rango: dia_pago del mes actual → dia_pago del mes siguiente
-                // Ejemplo: 20 Dic → 20 Ene = concepto Enero (mes donde cae más del período)
-                fechaInicio = hoy.withDayOfMonth(Math.min(diaPago, hoy.lengthOfMonth()));
-                LocalDate mesSiguiente = hoy.plusMonths(1);
-                fechaFin = mesSiguiente.withDayOfMonth(Math.min(diaPago, mesSiguiente.lengthOfMonth()));
-                fechaVencimiento = fechaInicio; // Vence al inicio del período
-
-                // El concepto es el mes donde cae la MAYOR parte del período
-                // Para dia_pago <= 16: la mayoría cae en el mes actual
-                // Para dia_pago > 16: la mayoría cae en el mes siguiente
-                LocalDate mesConcepto = (diaPago <= 16) ? fechaInicio : fechaFin;
-                String mesNombre = mesConcepto.format(fmtMes);
-                nombrePeriodo = mesNombre.substring(0, 1).toUpperCase() + mesNombre.substring(1).toLowerCase();
-
-            } else {
-                // POSTPAGO: Cobra período ATRÁS
-                // Rango: dia_pago del mes anterior → dia_pago del mes actual
-                // Ejemplo: 20 Nov → 20 Dic = concepto Diciembre (mes donde cae más del período)
-                LocalDate mesAnterior = hoy.minusMonths(1);
-                fechaInicio = mesAnterior.withDayOfMonth(Math.min(diaPago, mesAnterior.lengthOfMonth()));
-                fechaFin = hoy.withDayOfMonth(Math.min(diaPago, hoy.lengthOfMonth()));
-                fechaVencimiento = fechaFin; // Vence al final del período
-
-                // El concepto es el mes donde cae la MAYOR parte del período
-                // Para dia_pago <= 16: la mayoría cae en el mes anterior
-                // Para dia_pago > 16: la mayoría cae en el mes actual
-                LocalDate mesConcepto = (diaPago <= 16) ? fechaInicio : fechaFin;
-                String mesNombre = mesConcepto.format(fmtMes);
-                nombrePeriodo = mesNombre.substring(0, 1).toUpperCase() + mesNombre.substring(1).toLowerCase();
-            }
-
-            // Formato del rango: "17 dic - 17 ene"
-            rangoPeriodo = fechaInicio.format(fmtRango) + " - " + fechaFin.format(fmtRango);
-
-            // D. Verificar que no exista factura para este periodo
-            String sqlExiste = "SELECT COUNT(*) FROM factura WHERE id_suscripcion = ? AND periodo_mes = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sqlExiste)) {
-                ps.setInt(1, idSuscripcion);
-                ps.setString(2, nombrePeriodo);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next() && rs.getInt(1) > 0) {
-                    return false; // Ya existe, silencioso
-                }
-            }
-
-            // F. Insertar Factura (con rango_periodo) - codigo_factura se actualiza después
-            String sqlInsert = "INSERT INTO factura (id_suscripcion, fecha_emision, fecha_vencimiento, monto_total, monto_pagado, id_estado, codigo_factura, periodo_mes, rango_periodo) "
+            // D y F. Insertar Factura (con rango_periodo y código ya asignado).
+            // Si el periodo ya existe, la clave única lo ignora (0 filas).
+            String sqlInsert = "INSERT IGNORE INTO factura (id_suscripcion, fecha_emision, fecha_vencimiento, monto_total, monto_pagado, id_estado, codigo_factura, periodo_mes, rango_periodo) "
                     +
-                    "VALUES (?, ?, ?, ?, 0.00, 1, '', ?, ?)";
+                    "VALUES (?, ?, ?, ?, 0.00, 1, ?, ?, ?)";
 
-            try (PreparedStatement ps = conn.prepareStatement(sqlInsert, java.sql.Statement.RETURN_GENERATED_KEYS)) {
+            try (PreparedStatement ps = conn.prepareStatement(sqlInsert)) {
                 ps.setInt(1, idSuscripcion);
                 ps.setDate(2, new java.sql.Date(System.currentTimeMillis())); // Asegurar hora local
                 ps.setDate(3, java.sql.Date.valueOf(fechaVencimiento));
                 ps.setDouble(4, montoMensual);
-                ps.setString(5, nombrePeriodo);
-                ps.setString(6, rangoPeriodo);
+                ps.setString(5, SecuenciaDAO.siguienteCodigoFactura()); // 0001, 0002, etc.
+                ps.setString(6, nombrePeriodo);
+                ps.setString(7, rangoPeriodo);
 
                 boolean insertado = ps.executeUpdate() > 0;
 
                 if (insertado) {
-                    // Obtener el id_factura generado y actualizar codigo_factura
-                    ResultSet rsKeys = ps.getGeneratedKeys();
-                    if (rsKeys.next()) {
-                        int idFactura = rsKeys.getInt(1);
-                        String codigoFactura = String.format("%04d", idFactura); // 0001, 0002, etc.
-
-                        String sqlUpdateCodigo = "UPDATE factura SET codigo_factura = ? WHERE id_factura = ?";
-                        try (PreparedStatement psUpd = conn.prepareStatement(sqlUpdateCodigo)) {
-                            psUpd.setString(1, codigoFactura);
-                            psUpd.setInt(2, idFactura);
-                            psUpd.executeUpdate();
-                        }
-                    }
-
                     // G. Notificación de Nueva Deuda (Recordatorio)
                     if (telefono != null && !telefono.trim().isEmpty()) {
                         try {
-                            String template = "Hola " + nombreCliente + " 👋\n\n" +
-                                    "Le recordamos que su pago del servicio de internet correspondiente a *" + nombrePeriodo + "* " +
-                                    "por *S/ " + String.format(Locale.US, "%.2f", montoMensual) + "* está disponible.\n\n" +
-                                    "Gracias por su preferencia. 🌐\n" +
-                                    "_FNET - Internet de Alta Velocidad_";
+                            String template = construirRecordatorioNuevaDeuda(nombreCliente, nombrePeriodo, montoMensual);
 
+                            // Si ya hay un RECORDATORIO PENDIENTE, su texto pasa a ser el de la deuda actual
                             String sqlNotif = "INSERT INTO notificacion_pendiente " +
                                             "(id_suscripcion, tipo, mensaje, telefono, fecha_programada, estado) " +
-                                            "VALUES (?, 'RECORDATORIO', ?, ?, CURRENT_DATE(), 'PENDIENTE')";
+                                            "VALUES (?, 'RECORDATORIO', ?, ?, CURRENT_DATE(), 'PENDIENTE') " +
+                                            NotificacionDAO.SQL_ACTUALIZAR_PENDIENTE;
                             try (PreparedStatement psNotif = conn.prepareStatement(sqlNotif)) {
                                 psNotif.setInt(1, idSuscripcion);
                                 psNotif.setString(2, template);
@@ -314,8 +273,14 @@ public class PagoDAO {
                         }
                     }
 
+                    actualizarProximaFacturacion(conn, idSuscripcion, diaPago);
+                    estadoCobranzaDAO.recalcular(conn, java.util.Collections.singletonList(idSuscripcion));
+
                     String tipo = esMesAdelantado ? "PREPAGO" : "POSTPAGO";
                     System.out.println("   [" + tipo + "] " + nombrePeriodo + " (" + rangoPeriodo + ")");
+                } else {
+                    // Ya existe, silencioso: solo avanzar la próxima fecha
+                    actualizarProximaFacturacion(conn, idSuscripcion, diaPago);
                 }
                 return insertado;
             }
@@ -332,6 +297,275 @@ public class PagoDAO {
         }
     }
 
+    /**
+     * Avanza proxima_facturacion al siguiente mes tras cubrir el periodo actual.
+     */
+    private void actualizarProximaFacturacion(Connection conn, int idSuscripcion, int diaPago) throws SQLException {
+        String sql = "UPDATE suscripcion SET proxima_facturacion = ? WHERE id_suscripcion = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, java.sql.Date.valueOf(PeriodoFacturacion.siguienteFacturacion(LocalDate.now(), diaPago)));
+            ps.setInt(2, idSuscripcion);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Mensaje de RECORDATORIO que acompaña a una factura recién generada.
+     */
+    private static String construirRecordatorioNuevaDeuda(String nombreCliente, String nombrePeriodo,
+            double montoMensual) {
+        return "Hola " + nombreCliente + " 👋\n\n" +
+                "Le recordamos que su pago del servicio de internet correspondiente a *" + nombrePeriodo + "* " +
+                "por *S/ " + String.format(Locale.US, "%.2f", montoMensual) + "* está disponible.\n\n" +
+                "Gracias por su preferencia. 🌐\n" +
+                "_FNET - Internet de Alta Velocidad_";
+    }
+
+    // Tamaño de cada lote de inserción (una transacción por lote)
+    public static final int TAMANO_LOTE_FACTURAS = 500;
+
+    /**
+     * GENERACIÓN MASIVA DE FACTURAS.
+     * Recibe las facturas ya calculadas en memoria (periodo, monto, cliente) y
+     * las escribe por lotes: cada lote inserta con INSERT IGNORE en batch (la
+     * clave única descarta los periodos ya facturados), identifica las creadas
+     * por su código y agrega sus recordatorios, en una única transacción.
+     *
+     * @return Facturas realmente creadas (con idFactura y codigoFactura)
+     */
+    public List<FacturaNueva> generarFacturasLote(List<FacturaNueva> candidatas) {
+        List<FacturaNueva> creadas = new ArrayList<>();
+        for (int i = 0; i < candidatas.size(); i += TAMANO_LOTE_FACTURAS) {
+            List<FacturaNueva> lote = candidatas.subList(i, Math.min(i + TAMANO_LOTE_FACTURAS, candidatas.size()));
+            try {
+                creadas.addAll(insertarLoteFacturas(lote));
+            } catch (SQLException e) {
+                System.err.println("❌ Error insertando lote de " + lote.size() + " facturas: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        return creadas;
+    }
+
+    /**
+     * Escribe un lote (hasta TAMANO_LOTE_FACTURAS) y propaga el error, para
+     * que el llamador pueda reintentar solo ese lote. Reintentar es seguro:
+     * los periodos ya confirmados se descartan por la clave única
+     * (id_suscripcion, periodo_mes).
+     */
+    public List<FacturaNueva> generarLoteFacturas(List<FacturaNueva> lote) throws SQLException {
+        return insertarLoteFacturas(lote);
+    }
+
+    /**
+     * Inserta un lote de facturas en una sola transacción.
+     * Si algo falla se revierte solo este lote y se propaga el error.
+     */
+    private List<FacturaNueva> insertarLoteFacturas(List<FacturaNueva> lote) throws SQLException {
+        List<FacturaNueva> creadas = new ArrayList<>();
+        Connection conn = null;
+        try {
+            conn = Conexion.getConexion();
+            if (conn == null) {
+                throw new SQLException("Sin conexión disponible en el pool");
+            }
+            conn.setAutoCommit(false);
+
+            // A. Quitar repetidos dentro del mismo lote
+            java.util.Set<String> vistas = new java.util.HashSet<>();
+            List<FacturaNueva> candidatas = new ArrayList<>();
+            for (FacturaNueva f : lote) {
+                if (vistas.add(f.getIdSuscripcion() + "|" + f.getPeriodo().getNombrePeriodo())) {
+                    candidatas.add(f);
+                }
+            }
+
+            // Avanzar proxima_facturacion de todo el lote (creadas y ya existentes)
+            actualizarProximaFacturacion(conn, lote);
+
+            // B. INSERT IGNORE en batch con códigos reservados en bloque.
+            // uk_factura_suscripcion_periodo descarta los periodos ya facturados.
+            String sqlInsert = "INSERT IGNORE INTO factura (id_suscripcion, fecha_emision, fecha_vencimiento, monto_total, monto_pagado, id_estado, codigo_factura, periodo_mes, rango_periodo) "
+                    +
+                    "VALUES (?, ?, ?, ?, 0.00, 1, ?, ?, ?)";
+            java.sql.Date fechaEmision = new java.sql.Date(System.currentTimeMillis());
+            String[] codigos = SecuenciaDAO.siguientesCodigosFactura(candidatas.size());
+
+            try (PreparedStatement ps = conn.prepareStatement(sqlInsert)) {
+                for (int i = 0; i < candidatas.size(); i++) {
+                    FacturaNueva f = candidatas.get(i);
+                    f.setCodigoFactura(codigos[i]);
+                    f.setIdFactura(0); // Un reintento no debe arrastrar el id anterior
+                    ps.setInt(1, f.getIdSuscripcion());
+                    ps.setDate(2, fechaEmision);
+                    ps.setDate(3, java.sql.Date.valueOf(f.getPeriodo().getFechaVencimiento()));
+                    ps.setDouble(4, f.getMonto());
+                    ps.setString(5, f.getCodigoFactura());
+                    ps.setString(6, f.getPeriodo().getNombrePeriodo());
+                    ps.setString(7, f.getPeriodo().getRangoPeriodo());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            // C. Las creadas: su (suscripción, periodo) quedó con nuestro código.
+            // El código solo no identifica la fila (no es único, ver obtenerIdsInsertados)
+            List<FacturaNueva> pendientes = obtenerCreadasPorPeriodo(conn, candidatas);
+
+            // D. Notificaciones de Nueva Deuda (Recordatorio) en batch
+            // (un RECORDATORIO PENDIENTE anterior queda con el texto de la factura nueva)
+            String sqlNotif = "INSERT INTO notificacion_pendiente " +
+                    "(id_suscripcion, tipo, mensaje, telefono, fecha_programada, estado) " +
+                    "VALUES (?, 'RECORDATORIO', ?, ?, CURRENT_DATE(), 'PENDIENTE') " +
+                    NotificacionDAO.SQL_ACTUALIZAR_PENDIENTE;
+            try (PreparedStatement psNotif = conn.prepareStatement(sqlNotif)) {
+                for (FacturaNueva f : pendientes) {
+                    if (f.tieneTelefono()) {
+                        psNotif.setInt(1, f.getIdSuscripcion());
+                        psNotif.setString(2, construirRecordatorioNuevaDeuda(
+                                f.getNombreCliente(), f.getPeriodo().getNombrePeriodo(), f.getMonto()));
+                        psNotif.setString(3, f.getTelefono());
+                        psNotif.addBatch();
+                    }
+                }
+                psNotif.executeBatch();
+            }
+
+            // E. Etapa de cobranza de las suscripciones con factura nueva
+            List<Integer> idsCreadas = new ArrayList<>();
+            for (FacturaNueva f : pendientes) {
+                idsCreadas.add(f.getIdSuscripcion());
+            }
+            estadoCobranzaDAO.recalcular(conn, idsCreadas);
+
+            conn.commit();
+
+            for (FacturaNueva f : pendientes) {
+                String tipo = f.isMesAdelantado() ? "PREPAGO" : "POSTPAGO";
+                System.out.println("   [" + tipo + "] " + f.getPeriodo().getNombrePeriodo()
+                        + " (" + f.getPeriodo().getRangoPeriodo() + ")");
+            }
+            creadas.addAll(pendientes);
+
+        } catch (SQLException e) {
+            try {
+                if (conn != null)
+                    conn.rollback();
+            } catch (Exception ex) {
+            }
+            throw e;
+        } finally {
+            try {
+                if (conn != null)
+                    conn.close();
+            } catch (Exception ex) {
+            }
+        }
+        return creadas;
+    }
+
+    /**
+     * Guarda la siguiente fecha de facturación de cada suscripción del lote
+     * dentro de la misma transacción que sus facturas.
+     */
+    private void actualizarProximaFacturacion(Connection conn, List<FacturaNueva> lote) throws SQLException {
+        String sql = "UPDATE suscripcion SET proxima_facturacion = ? WHERE id_suscripcion = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (FacturaNueva f : lote) {
+                if (f.getProximaFacturacion() != null) {
+                    ps.setDate(1, java.sql.Date.valueOf(f.getProximaFacturacion()));
+                    ps.setInt(2, f.getIdSuscripcion());
+                    ps.addBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Identifica cuáles facturas del lote se insertaron realmente (las demás
+     * fueron ignoradas por duplicadas) y completa su id_factura. Una sola
+     * consulta por lote, por (id_suscripcion, periodo_mes) más el código.
+     */
+    private List<FacturaNueva> obtenerCreadasPorPeriodo(Connection conn, List<FacturaNueva> candidatas)
+            throws SQLException {
+        List<FacturaNueva> creadas = new ArrayList<>();
+        if (candidatas.isEmpty()) {
+            return creadas;
+        }
+
+        List<Integer> suscripciones = new ArrayList<>();
+        List<String> periodos = new ArrayList<>();
+        List<String> codigos = new ArrayList<>();
+        for (FacturaNueva f : candidatas) {
+            suscripciones.add(f.getIdSuscripcion());
+            periodos.add(f.getPeriodo().getNombrePeriodo());
+            codigos.add(f.getCodigoFactura());
+        }
+        int[] ids = obtenerIdsInsertados(conn, suscripciones, periodos, codigos);
+
+        // Mantener el orden original del lote
+        for (int i = 0; i < candidatas.size(); i++) {
+            if (ids[i] > 0) {
+                candidatas.get(i).setIdFactura(ids[i]);
+                creadas.add(candidatas.get(i));
+            }
+        }
+        return creadas;
+    }
+
+    /**
+     * Ids de las facturas que este INSERT IGNORE creó, en el orden recibido
+     * (0 = ignorada). Se busca por la clave única (id_suscripcion,
+     * periodo_mes) y se compara el código: codigo_factura no es único (la
+     * app de escritorio genera los suyos), así que buscar solo por código
+     * podría devolver la factura de otra suscripción.
+     */
+    private int[] obtenerIdsInsertados(Connection conn, List<Integer> suscripciones, List<String> periodos,
+            List<String> codigos) throws SQLException {
+        java.util.Map<String, Integer> posicion = new HashMap<>();
+        java.util.Set<Integer> idsSuscripcion = new java.util.LinkedHashSet<>(suscripciones);
+        java.util.Set<String> nombresPeriodo = new java.util.LinkedHashSet<>(periodos);
+        for (int i = 0; i < suscripciones.size(); i++) {
+            posicion.put(suscripciones.get(i) + "|" + periodos.get(i), i);
+        }
+
+        String sql = "SELECT id_factura, id_suscripcion, periodo_mes, codigo_factura FROM factura " +
+                "WHERE id_suscripcion IN (" + marcadores(idsSuscripcion.size()) + ") " +
+                "AND periodo_mes IN (" + marcadores(nombresPeriodo.size()) + ")";
+
+        int[] ids = new int[suscripciones.size()];
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int idx = 1;
+            for (Integer id : idsSuscripcion) {
+                ps.setInt(idx++, id);
+            }
+            for (String periodo : nombresPeriodo) {
+                ps.setString(idx++, periodo);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Integer i = posicion.get(rs.getInt("id_suscripcion") + "|" + rs.getString("periodo_mes"));
+                    if (i != null && codigos.get(i).equals(rs.getString("codigo_factura"))) {
+                        ids[i] = rs.getInt("id_factura");
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Genera "?, ?, ?" para cláusulas IN.
+     */
+    static String marcadores(int cantidad) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cantidad; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
     // En src/DAO/PagoDAO.java
     public List<Object[]> obtenerHistorialCompleto(int idSuscripcion) {
         List<Object[]> lista = new ArrayList<>();
@@ -491,13 +725,15 @@ public class PagoDAO {
             // 1. Obtener el monto de la factura para el movimiento de caja
             double monto = 0;
             String periodoMes = "";
-            String sqlInfo = "SELECT monto_total, periodo_mes FROM factura WHERE id_factura = ?";
+            int idSuscripcion = 0;
+            String sqlInfo = "SELECT monto_total, periodo_mes, id_suscripcion FROM factura WHERE id_factura = ?";
             try (PreparedStatement psInfo = conn.prepareStatement(sqlInfo)) {
                 psInfo.setInt(1, idFactura);
                 ResultSet rs = psInfo.executeQuery();
                 if (rs.next()) {
                     monto = rs.getDouble("monto_total");
                     periodoMes = rs.getString("periodo_mes");
+                    idSuscripcion = rs.getInt("id_suscripcion");
                 }
             }
 
@@ -529,6 +765,14 @@ public class PagoDAO {
                 }
             }
 
+            // 4. Etapa de cobranza; si quedó PAGADA, evento para la reconexión automática
+            if (idSuscripcion > 0) {
+                estadoCobranzaDAO.recalcular(conn, java.util.Collections.singletonList(idSuscripcion));
+                if (nuevoEstado == 2) {
+                    eventoPagoDAO.publicar(conn, idSuscripcion, idFactura);
+                }
+            }
+
             conn.commit();
             return true;
         } catch (Exception e) {
@@ -550,6 +794,7 @@ public class PagoDAO {
 
     /**
      * Crea una factura manual (para migración de datos o nuevo contrato).
+     * Retorna false si el periodo ya tenía factura (no se duplica).
      * 
      * @param registrarEnCaja Si es true y estado=PAGADO, registra en
      *                        movimiento_caja
@@ -564,9 +809,10 @@ public class PagoDAO {
             conn = Conexion.getConexion();
             conn.setAutoCommit(false);
 
-            String sqlInsert = "INSERT INTO factura (id_suscripcion, fecha_emision, fecha_vencimiento, " +
+            // INSERT IGNORE: si el periodo ya existe no se crea nada (ver uk_factura_suscripcion_periodo)
+            String sqlInsert = "INSERT IGNORE INTO factura (id_suscripcion, fecha_emision, fecha_vencimiento, " +
                     "monto_total, monto_pagado, id_estado, codigo_factura, periodo_mes, fecha_pago, rango_periodo) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, '', ?, ?, ?)";
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
             java.sql.Date fechaPago = (estado == 2) ? fechaVencimiento : null;
             double montoPagado = (estado == 2) ? monto : 0;
@@ -579,23 +825,19 @@ public class PagoDAO {
                 ps.setDouble(4, monto);
                 ps.setDouble(5, montoPagado);
                 ps.setInt(6, estado);
-                ps.setString(7, periodoMes);
-                ps.setDate(8, fechaPago);
-                ps.setString(9, rangoPeriodo); // Puede ser null
-                ps.executeUpdate();
+                ps.setString(7, SecuenciaDAO.siguienteCodigoFactura()); // Código secuencial CORRECTO
+                ps.setString(8, periodoMes);
+                ps.setDate(9, fechaPago);
+                ps.setString(10, rangoPeriodo); // Puede ser null
+
+                if (ps.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false; // El periodo ya tenía factura
+                }
 
                 ResultSet rsKeys = ps.getGeneratedKeys();
                 if (rsKeys.next()) {
                     idFacturaGenerada = rsKeys.getInt(1);
-
-                    // Actualizar con código secuencial CORRECTO
-                    String codigoFactura = String.format("%04d", idFacturaGenerada);
-                    String sqlUpdateCodigo = "UPDATE factura SET codigo_factura = ? WHERE id_factura = ?";
-                    try (PreparedStatement psUpd = conn.prepareStatement(sqlUpdateCodigo)) {
-                        psUpd.setString(1, codigoFactura);
-                        psUpd.setInt(2, idFacturaGenerada);
-                        psUpd.executeUpdate();
-                    }
                 }
             }
 
@@ -612,6 +854,8 @@ public class PagoDAO {
                 }
             }
 
+            estadoCobranzaDAO.recalcular(conn, java.util.Collections.singletonList(idSuscripcion));
+
             conn.commit();
             return true;
         } catch (Exception e) {
@@ -653,7 +897,15 @@ public class PagoDAO {
             ps.setDouble(2, monto);
             ps.setDate(3, fechaVencimiento);
             ps.setInt(4, idFactura);
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            // El vencimiento pudo cambiar: recalcular la próxima acción
+            int idSuscripcion = obtenerIdSuscripcion(conn, idFactura);
+            if (idSuscripcion > 0) {
+                estadoCobranzaDAO.recalcular(conn, java.util.Collections.singletonList(idSuscripcion));
+            }
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -669,63 +921,205 @@ public class PagoDAO {
         String sql = "DELETE FROM factura WHERE id_factura = ?";
         try (Connection conn = Conexion.getConexion();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
+            int idSuscripcion = obtenerIdSuscripcion(conn, idFactura);
             ps.setInt(1, idFactura);
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            if (idSuscripcion > 0) {
+                estadoCobranzaDAO.recalcular(conn, java.util.Collections.singletonList(idSuscripcion));
+            }
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    private int obtenerIdSuscripcion(Connection conn, int idFactura) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id_suscripcion FROM factura WHERE id_factura = ?")) {
+            ps.setInt(1, idFactura);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
     /**
      * Genera los 12 meses de un año para una suscripción.
      * Útil para migrar clientes desde Excel con su historial completo.
+     * Los 12 meses se insertan en una sola transacción (ver importarHistorial).
      * 
      * @return Cantidad de meses creados exitosamente
      */
     public int generarAnioCompleto(int idSuscripcion, int anio, int diaPago, double monto,
             int estadoPorDefecto, boolean registrarEnCaja, int idUsuario) {
-        int mesesCreados = 0;
-        String[] nombresMeses = { "Enero", "Febrero", "Marzo", "Abril", "Mayo", "Junio",
-                "Julio", "Agosto", "Septiembre", "Octubre", "Noviembre", "Diciembre" };
+        CalculadoraPeriodos periodos = CalculadoraPeriodos.getInstancia();
+        List<FacturaHistorica> meses = new ArrayList<>();
 
         for (int mes = 1; mes <= 12; mes++) {
-            String periodoMes = nombresMeses[mes - 1] + " " + anio;
+            meses.add(new FacturaHistorica(idSuscripcion, periodos.nombreMes(anio, mes), monto,
+                    estadoPorDefecto, periodos.fechaVencimiento(anio, mes, diaPago)));
+        }
+
+        try {
+            // Los periodos que ya existían se omiten
+            return importarHistorial(meses, registrarEnCaja, idUsuario);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * MIGRACIÓN MASIVA DE HISTORIAL.
+     * Inserta un lote de facturas pasadas en una sola transacción:
+     * - Una consulta trae los periodos ya facturados de las suscripciones del
+     * lote; esos (y los repetidos dentro del lote) se omiten.
+     * - Facturas en batch con códigos reservados en bloque.
+     * - Si registrarEnCaja, un movimiento_caja por cada factura pagada.
+     * Si algo falla se revierte el lote completo y se propaga el error.
+     *
+     * @return Cantidad de facturas creadas
+     */
+    public int importarHistorial(List<FacturaHistorica> lote, boolean registrarEnCaja, int idUsuario)
+            throws SQLException {
+        if (lote.isEmpty()) {
+            return 0;
+        }
+
+        Connection conn = null;
+        try {
+            conn = Conexion.getConexion();
+            if (conn == null) {
+                throw new SQLException("Sin conexión disponible en el pool");
+            }
+            conn.setAutoCommit(false);
+
+            // A. Descartar periodos ya facturados (una consulta para todo el lote)
+            java.util.Set<Integer> ids = new java.util.LinkedHashSet<>();
+            for (FacturaHistorica f : lote) {
+                ids.add(f.getIdSuscripcion());
+            }
+            java.util.Set<String> existentes = obtenerPeriodosFacturados(conn, ids);
 
-            // Calcular fecha de vencimiento
-            java.util.Calendar cal = java.util.Calendar.getInstance();
-            cal.set(anio, mes - 1, Math.min(diaPago, cal.getActualMaximum(java.util.Calendar.DAY_OF_MONTH)));
-            java.sql.Date fechaVenc = new java.sql.Date(cal.getTimeInMillis());
+            List<FacturaHistorica> nuevas = new ArrayList<>();
+            for (FacturaHistorica f : lote) {
+                if (existentes.add(f.getIdSuscripcion() + "|" + f.getPeriodoMes())) {
+                    nuevas.add(f);
+                }
+            }
+            if (nuevas.isEmpty()) {
+                conn.commit();
+                return 0;
+            }
+
+            // B. Facturas en batch (INSERT IGNORE por si otro proceso se adelantó)
+            String sqlInsert = "INSERT IGNORE INTO factura (id_suscripcion, fecha_emision, fecha_vencimiento, " +
+                    "monto_total, monto_pagado, id_estado, codigo_factura, periodo_mes, fecha_pago) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            java.sql.Date fechaEmision = new java.sql.Date(System.currentTimeMillis());
+            String[] codigos = SecuenciaDAO.siguientesCodigosFactura(nuevas.size());
+
+            try (PreparedStatement ps = conn.prepareStatement(sqlInsert)) {
+                for (int i = 0; i < nuevas.size(); i++) {
+                    FacturaHistorica f = nuevas.get(i);
+                    java.sql.Date fechaVenc = java.sql.Date.valueOf(f.getFechaVencimiento());
+                    f.setCodigoFactura(codigos[i]);
+                    f.setIdFactura(0);
+                    ps.setInt(1, f.getIdSuscripcion());
+                    ps.setDate(2, fechaEmision);
+                    ps.setDate(3, fechaVenc);
+                    ps.setDouble(4, f.getMonto());
+                    ps.setDouble(5, f.isPagada() ? f.getMonto() : 0);
+                    ps.setInt(6, f.getEstado());
+                    ps.setString(7, f.getCodigoFactura());
+                    ps.setString(8, f.getPeriodoMes());
+                    ps.setDate(9, f.isPagada() ? fechaVenc : null);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            // C. Ids de las creadas (por periodo y código, ver obtenerIdsInsertados)
+            List<Integer> suscripciones = new ArrayList<>();
+            List<String> periodos = new ArrayList<>();
+            List<String> codigosLote = new ArrayList<>();
+            for (FacturaHistorica f : nuevas) {
+                suscripciones.add(f.getIdSuscripcion());
+                periodos.add(f.getPeriodoMes());
+                codigosLote.add(f.getCodigoFactura());
+            }
+            int[] idsCreadas = obtenerIdsInsertados(conn, suscripciones, periodos, codigosLote);
+            int creadas = 0;
+            for (int i = 0; i < nuevas.size(); i++) {
+                if (idsCreadas[i] > 0) {
+                    nuevas.get(i).setIdFactura(idsCreadas[i]);
+                    creadas++;
+                }
+            }
 
-            // Verificar si ya existe este periodo
-            if (!existeFacturaPeriodo(idSuscripcion, periodoMes)) {
-                boolean creada = crearFacturaManual(idSuscripcion, periodoMes, monto,
-                        estadoPorDefecto, fechaVenc,
-                        registrarEnCaja, idUsuario);
-                if (creada)
-                    mesesCreados++;
+            // D. Movimientos de caja de las pagadas, en batch
+            if (registrarEnCaja) {
+                String sqlCaja = "INSERT INTO movimiento_caja (fecha, monto, descripcion, id_categoria, id_usuario) " +
+                        "VALUES (?, ?, ?, 1, ?)";
+                try (PreparedStatement psCaja = conn.prepareStatement(sqlCaja)) {
+                    for (FacturaHistorica f : nuevas) {
+                        if (f.isPagada() && f.getIdFactura() > 0) {
+                            psCaja.setDate(1, java.sql.Date.valueOf(f.getFechaVencimiento()));
+                            psCaja.setDouble(2, f.getMonto());
+                            psCaja.setString(3, "Pago - " + f.getPeriodoMes() + " (Factura #" + f.getIdFactura() + ")");
+                            psCaja.setInt(4, idUsuario);
+                            psCaja.addBatch();
+                        }
+                    }
+                    psCaja.executeBatch();
+                }
+            }
+
+            // E. Etapa de cobranza (las pendientes importadas cuentan como deuda)
+            estadoCobranzaDAO.recalcular(conn, ids);
+
+            conn.commit();
+            return creadas;
+
+        } catch (SQLException e) {
+            try {
+                if (conn != null)
+                    conn.rollback();
+            } catch (Exception ex) {
+            }
+            throw e;
+        } finally {
+            try {
+                if (conn != null)
+                    conn.close();
+            } catch (Exception ex) {
             }
         }
-        return mesesCreados;
     }
 
     /**
-     * Verifica si ya existe una factura para un periodo específico.
+     * Pares "id_suscripcion|periodo_mes" ya facturados para las suscripciones
+     * indicadas.
      */
-    private boolean existeFacturaPeriodo(int idSuscripcion, String periodoMes) {
-        String sql = "SELECT COUNT(*) FROM factura WHERE id_suscripcion = ? AND periodo_mes = ?";
-        try (Connection conn = Conexion.getConexion();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, idSuscripcion);
-            ps.setString(2, periodoMes);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+    private java.util.Set<String> obtenerPeriodosFacturados(Connection conn, Collection<Integer> ids)
+            throws SQLException {
+        java.util.Set<String> existentes = new java.util.HashSet<>();
+        String sql = "SELECT id_suscripcion, periodo_mes FROM factura WHERE id_suscripcion IN ("
+                + marcadores(ids.size()) + ")";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int idx = 1;
+            for (Integer id : ids) {
+                ps.setInt(idx++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    existentes.add(rs.getInt("id_suscripcion") + "|" + rs.getString("periodo_mes"));
+                }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        return false;
+        return existentes;
     }
 
     /**
@@ -774,86 +1168,44 @@ public class PagoDAO {
         return null;
     }
 
-    /**
-     * Cuenta cuántas facturas pendientes tiene una suscripción.
-     * Usado para determinar si enviar advertencia de corte (3+ meses).
-     */
-    public int contarFacturasPendientes(int idSuscripcion) {
-        String sql = "SELECT COUNT(*) as total FROM factura WHERE id_suscripcion = ? AND id_estado = 1";
-
-        try (Connection conn = Conexion.getConexion();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, idSuscripcion);
-            ResultSet rs = ps.executeQuery();
-
-            if (rs.next()) {
-                return rs.getInt("total");
-            }
-
-        } catch (SQLException e) {
-            System.err.println("Error contando facturas pendientes: " + e.getMessage());
-        }
-
-        return 0;
-    }
+    // Máximo de ids por cláusula IN en el resumen de deuda
+    private static final int TAMANO_LOTE_RESUMEN = 500;
 
     /**
-     * Obtiene información de la última factura generada para una suscripción.
-     * Retorna formato: "del mes de Enero 2026 (02 Ene - 02 Feb)"
+     * Resumen de facturas pendientes (id_estado = 1) de varias suscripciones
+     * con una sola consulta por bloque de ids: cantidad, saldo total, última
+     * factura y detalle. Las suscripciones sin deuda no aparecen en el mapa.
      */
-    public String obtenerUltimaFacturaInfo(int idSuscripcion) {
-        String sql = "SELECT periodo_mes, rango_periodo FROM factura " +
-                "WHERE id_suscripcion = ? ORDER BY id_factura DESC LIMIT 1";
-
-        try (Connection con = bd.Conexion.getConexion();
-                PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setInt(1, idSuscripcion);
-            ResultSet rs = ps.executeQuery();
-
-            if (rs.next()) {
-                String periodoMes = rs.getString("periodo_mes");
-                String rangoPeriodo = rs.getString("rango_periodo");
-                return "del mes de " + periodoMes + " (" + rangoPeriodo + ")";
-            }
-        } catch (SQLException e) {
-            System.err.println("Error obteniendo info de factura: " + e.getMessage());
-        }
-
-        return "del mes actual";
-    }
-
-    /**
-     * Obtiene el detalle de todas las facturas pendientes de una suscripción.
-     * Retorna formato: "• Enero 2026 (02 Ene - 02 Feb): S/. 50.00\n• Febrero
-     * 2026..."
-     */
-    public String obtenerFacturasPendientesDetalle(int idSuscripcion) {
-        String sql = "SELECT periodo_mes, rango_periodo, monto FROM factura " +
-                "WHERE id_suscripcion = ? AND estado = 1 " +
-                "ORDER BY fecha_emision ASC";
-
-        StringBuilder detalle = new StringBuilder();
-
-        try (Connection con = bd.Conexion.getConexion();
-                PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setInt(1, idSuscripcion);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                String periodoMes = rs.getString("periodo_mes");
-                String rangoPeriodo = rs.getString("rango_periodo");
-                double monto = rs.getDouble("monto");
-
-                detalle.append("• ").append(periodoMes)
-                        .append(" (").append(rangoPeriodo).append("): S/. ")
-                        .append(String.format("%.2f", monto))
-                        .append("\n");
+    public Map<Integer, ResumenDeuda> obtenerResumenDeuda(Collection<Integer> idsSuscripcion) {
+        Map<Integer, ResumenDeuda> resumenes = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(new java.util.LinkedHashSet<>(idsSuscripcion));
+
+        for (int i = 0; i < ids.size(); i += TAMANO_LOTE_RESUMEN) {
+            List<Integer> bloque = ids.subList(i, Math.min(i + TAMANO_LOTE_RESUMEN, ids.size()));
+            String sql = "SELECT id_suscripcion, id_factura, periodo_mes, rango_periodo, " +
+                    "monto_total - COALESCE(monto_pagado, 0) AS saldo " +
+                    "FROM factura WHERE id_estado = 1 AND id_suscripcion IN (" + marcadores(bloque.size()) + ") " +
+                    "ORDER BY id_suscripcion, fecha_emision, id_factura";
+
+            try (Connection conn = Conexion.getConexion();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                int idx = 1;
+                for (Integer id : bloque) {
+                    ps.setInt(idx++, id);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int idSuscripcion = rs.getInt("id_suscripcion");
+                        resumenes.computeIfAbsent(idSuscripcion, ResumenDeuda::new)
+                                .agregar(rs.getInt("id_factura"), rs.getString("periodo_mes"),
+                                        rs.getString("rango_periodo"), rs.getDouble("saldo"));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error obteniendo resumen de deuda: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error obteniendo facturas pendientes: " + e.getMessage());
         }
 
-        return detalle.toString().trim();
+        return resumenes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package DAO;
+
+import bd.Conexion;
+import java.sql.*;
+
+/**
+ * Asignador de códigos de factura estilo hi/lo.
+ *
+ * Reserva bloques de códigos de la tabla secuencia con un solo UPDATE
+ * atómico y los entrega desde memoria, de modo que el código se escribe
+ * directamente en el INSERT de la factura (sin UPDATE posterior).
+ *
+ * - Seguro entre instancias: cada una reserva rangos disjuntos.
+ * - Tolerante a huecos: los códigos no usados de un bloque se pierden al
+ *   reiniciar o si la transacción de la factura se revierte.
+ */
+public class SecuenciaDAO {
+
+    public static final String SECUENCIA_FACTURA = "factura";
+
+    // Cantidad de códigos reservados por viaje a la BD
+    private static final int TAMANO_BLOQUE = 50;
+
+    // Rango reservado en memoria: [siguiente, limite]
+    private static long siguiente = 1;
+    private static long limite = 0;
+
+    /**
+     * Obtiene el siguiente código de factura formateado (0001, 0002, etc.).
+     */
+    public static String siguienteCodigoFactura() throws SQLException {
+        return siguientesCodigosFactura(1)[0];
+    }
+
+    /**
+     * Obtiene varios códigos de factura consecutivos en una sola llamada.
+     */
+    public static synchronized String[] siguientesCodigosFactura(int cantidad) throws SQLException {
+        String[] codigos = new String[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            if (siguiente > limite) {
+                // Reservar lo necesario para el resto del pedido de una vez
+                int tamano = Math.max(TAMANO_BLOQUE, cantidad - i);
+                long hi = reservarBloque(SECUENCIA_FACTURA, tamano);
+                siguiente = hi - tamano + 1;
+                limite = hi;
+            }
+            codigos[i] = String.format("%04d", siguiente++);
+        }
+        return codigos;
+    }
+
+    /**
+     * Reserva un bloque de valores y retorna el mayor de ellos.
+     * El bloque reservado es [hi - tamano + 1, hi].
+     */
+    private static long reservarBloque(String nombre, int tamano) throws SQLException {
+        String sqlReservar = "UPDATE secuencia SET valor = LAST_INSERT_ID(valor + ?) WHERE nombre = ?";
+
+        try (Connection conn = Conexion.getConexion();
+                PreparedStatement ps = conn.prepareStatement(sqlReservar)) {
+            ps.setInt(1, tamano);
+            ps.setString(2, nombre);
+
+            if (ps.executeUpdate() == 0) {
+                throw new SQLException("Secuencia '" + nombre + "' no inicializada (ver MigracionEsquema)");
+            }
+
+            // LAST_INSERT_ID() es por sesión: lee el valor que dejó el UPDATE
+            try (Statement st = conn.createStatement();
+                    ResultSet rs = st.executeQuery("SELECT LAST_INSERT_ID()")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
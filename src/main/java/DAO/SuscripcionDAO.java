@@ -8,6 +8,11 @@ import java.util.List;
 
 public class SuscripcionDAO {
 
+    // Máximo de ids por UPDATE ... IN
+    private static final int TAMANO_LOTE_ESTADO = 500;
+
+    private final EstadoCobranzaDAO estadoCobranzaDAO = new EstadoCobranzaDAO();
+
     public List<Suscripcion> listarPaginado(int limit, int offset) {
         List<Suscripcion> lista = new ArrayList<>();
 
@@ -75,8 +80,11 @@ public class SuscripcionDAO {
                     + "mes_adelantado, equipos_prestados, garantia, codigo_contrato, activo, nombre_suscripcion) "
                     + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 1, ?)";
         } else {
+            // proxima_facturacion = NULL: el día de pago o la modalidad pudieron
+            // cambiar, la siguiente corrida de facturación la recalcula
             sql = "UPDATE suscripcion SET id_servicio = ?, direccion_instalacion = ?, id_cliente = ?, fecha_inicio = ?, dia_pago = ?, "
-                    + "mes_adelantado = ?, equipos_prestados = ?, garantia = ?, nombre_suscripcion = ? "
+                    + "mes_adelantado = ?, equipos_prestados = ?, garantia = ?, nombre_suscripcion = ?, "
+                    + "proxima_facturacion = NULL "
                     + "WHERE id_suscripcion = ?";
         }
 
@@ -144,6 +152,120 @@ public class SuscripcionDAO {
         }
     }
 
+    /**
+     * Desactiva (activo = 0) las suscripciones cortadas que todavía tienen
+     * alguna factura PENDIENTE y, en la misma transacción, las pasa a
+     * CORTADO en estado_cobranza. Las que pagaron mientras corría el corte
+     * no se tocan. Usado al aplicar los cortes de EjecutorCortes.
+     *
+     * Un pago posterior encuentra la suscripción inactiva y CORTADO, así
+     * que ReconexionWorker la reconecta.
+     *
+     * @return ids que quedaron desactivados, o null si falló la escritura
+     */
+    public java.util.Set<Integer> desactivarConDeudaLote(java.util.Collection<Integer> idsSuscripcion) {
+        List<Integer> ids = new ArrayList<>(idsSuscripcion);
+        java.util.Set<Integer> desactivadas = new java.util.HashSet<>();
+
+        Connection conn = null;
+        try {
+            conn = Conexion.getConexion();
+            if (conn == null) {
+                return null;
+            }
+            conn.setAutoCommit(false);
+
+            for (int i = 0; i < ids.size(); i += TAMANO_LOTE_ESTADO) {
+                List<Integer> bloque = ids.subList(i, Math.min(i + TAMANO_LOTE_ESTADO, ids.size()));
+                String marcadores = String.join(", ", java.util.Collections.nCopies(bloque.size(), "?"));
+                String sql = "UPDATE suscripcion s SET s.activo = 0 WHERE s.id_suscripcion IN (" + marcadores + ") "
+                        + "AND EXISTS (SELECT 1 FROM factura f WHERE f.id_suscripcion = s.id_suscripcion "
+                        + "AND f.id_estado = 1)";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int idx = 1;
+                    for (Integer id : bloque) {
+                        ps.setInt(idx++, id);
+                    }
+                    ps.executeUpdate();
+                }
+
+                // Se cortaron estando activas: las que quedaron en 0 son las de este UPDATE
+                String sqlLeer = "SELECT id_suscripcion FROM suscripcion WHERE activo = 0 AND id_suscripcion IN ("
+                        + marcadores + ")";
+                try (PreparedStatement ps = conn.prepareStatement(sqlLeer)) {
+                    int idx = 1;
+                    for (Integer id : bloque) {
+                        ps.setInt(idx++, id);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            desactivadas.add(rs.getInt("id_suscripcion"));
+                        }
+                    }
+                }
+            }
+
+            estadoCobranzaDAO.registrarCortes(conn, desactivadas);
+            conn.commit();
+            return desactivadas;
+
+        } catch (SQLException e) {
+            try {
+                if (conn != null)
+                    conn.rollback();
+            } catch (Exception ex) {
+            }
+            e.printStackTrace();
+            return null;
+        } finally {
+            try {
+                if (conn != null)
+                    conn.close();
+            } catch (Exception ex) {
+            }
+        }
+    }
+
+    /**
+     * True si la suscripción tiene alguna factura PENDIENTE (misma regla que
+     * ReconexionWorker), null si no se pudo consultar.
+     */
+    public Boolean tieneDeudaPendiente(int idSuscripcion) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM factura WHERE id_suscripcion = ? AND id_estado = 1)";
+        try (Connection conn = Conexion.getConexion(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, idSuscripcion);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Guarda proxima_facturacion para varias suscripciones en un solo batch.
+     * Usado por la generación de facturas para las que aún no les toca.
+     */
+    public boolean actualizarProximaFacturacionLote(java.util.Map<Integer, java.time.LocalDate> fechas) {
+        if (fechas.isEmpty()) {
+            return true;
+        }
+        String sql = "UPDATE suscripcion SET proxima_facturacion = ? WHERE id_suscripcion = ?";
+        try (Connection conn = Conexion.getConexion(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (java.util.Map.Entry<Integer, java.time.LocalDate> e : fechas.entrySet()) {
+                ps.setDate(1, java.sql.Date.valueOf(e.getValue()));
+                ps.setInt(2, e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     /**
      * Crea una suscripción rápida para un cliente nuevo.
      *
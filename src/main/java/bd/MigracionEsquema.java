@@ -0,0 +1,313 @@
+package bd;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Migraciones de esquema versionadas para el servicio de automatización.
+ *
+ * Se ejecutan al arrancar (Main) y registran cada versión aplicada en la
+ * tabla esquema_version. Un candado GET_LOCK evita que dos instancias
+ * apliquen la misma migración a la vez: la segunda espera a que la
+ * primera termine y luego solo aplica lo que falte.
+ *
+ * Para agregar una migración: añadir una fila al final de MIGRACIONES
+ * con el siguiente número de versión. NUNCA modificar una ya publicada.
+ */
+public class MigracionEsquema {
+
+    private static final String CANDADO = "fnet_migraciones";
+    // GET_LOCK espera 30 s por intento: hasta 10 minutos en total
+    private static final int INTENTOS_CANDADO = 20;
+
+    // { version, descripcion, sentencias SQL }
+    private static final Object[][] MIGRACIONES = {
+            { 1, "Secuencia para códigos de factura (hi/lo)", new String[] {
+                    "CREATE TABLE IF NOT EXISTS secuencia ("
+                            + "nombre VARCHAR(50) NOT NULL PRIMARY KEY, "
+                            + "valor BIGINT NOT NULL DEFAULT 0)",
+                    // Continuar desde el mayor código/id existente
+                    "INSERT IGNORE INTO secuencia (nombre, valor) "
+                            + "SELECT 'factura', GREATEST(COALESCE(MAX(id_factura), 0), "
+                            + "COALESCE(MAX(CAST(codigo_factura AS UNSIGNED)), 0)) FROM factura"
+            } },
+            { 2, "Calendario de facturación (suscripcion.proxima_facturacion)", new String[] {
+                    "ALTER TABLE suscripcion ADD COLUMN proxima_facturacion DATE NULL",
+                    "ALTER TABLE suscripcion ADD INDEX idx_suscripcion_proxima_facturacion "
+                            + "(activo, proxima_facturacion)"
+            } },
+            { 3, "Una factura por periodo (uk_factura_suscripcion_periodo)", new String[] {
+                    // 1 = cuenta para la clave única; NULL = duplicado histórico (no choca)
+                    "ALTER TABLE factura ADD COLUMN periodo_unico TINYINT NULL DEFAULT 1",
+                    // Duplicados históricos: se conserva la primera y las demás solo se
+                    // marcan (periodo_unico IS NULL), sin cambiar ningún dato visible
+                    "UPDATE factura f JOIN ("
+                            + "SELECT id_suscripcion, periodo_mes, MIN(id_factura) AS conservar "
+                            + "FROM factura GROUP BY id_suscripcion, periodo_mes HAVING COUNT(*) > 1) d "
+                            + "ON f.id_suscripcion = d.id_suscripcion AND f.periodo_mes = d.periodo_mes "
+                            + "AND f.id_factura <> d.conservar "
+                            + "SET f.periodo_unico = NULL",
+                    "ALTER TABLE factura ADD UNIQUE KEY uk_factura_suscripcion_periodo "
+                            + "(id_suscripcion, periodo_mes, periodo_unico)"
+            } },
+            { 4, "Índice por código de factura (lectura de ids tras INSERT IGNORE en lote)", new String[] {
+                    "ALTER TABLE factura ADD INDEX idx_factura_codigo (codigo_factura)"
+            } },
+            { 5, "Índices de las consultas horarias de vencidas y ultimátums", new String[] {
+                    "ALTER TABLE factura ADD INDEX idx_factura_estado_vencimiento "
+                            + "(id_estado, fecha_vencimiento, id_suscripcion)",
+                    "ALTER TABLE notificacion_pendiente ADD INDEX idx_notificacion_suscripcion_tipo_estado "
+                            + "(id_suscripcion, tipo, estado)"
+            } },
+            { 6, "Una sola notificación PENDIENTE por suscripción y tipo", new String[] {
+                    // Duplicados actuales: se conserva la más antigua
+                    "DELETE np FROM notificacion_pendiente np JOIN ("
+                            + "SELECT id_suscripcion, tipo, MIN(id_notificacion) AS conservar "
+                            + "FROM notificacion_pendiente WHERE estado = 'PENDIENTE' "
+                            + "GROUP BY id_suscripcion, tipo HAVING COUNT(*) > 1) d "
+                            + "ON np.id_suscripcion = d.id_suscripcion AND np.tipo = d.tipo "
+                            + "AND np.estado = 'PENDIENTE' AND np.id_notificacion <> d.conservar",
+                    // 1 si está PENDIENTE, NULL si no (los NULL no chocan en la clave única)
+                    "ALTER TABLE notificacion_pendiente ADD COLUMN pendiente_unico TINYINT "
+                            + "AS (CASE WHEN estado = 'PENDIENTE' THEN 1 END) STORED",
+                    "ALTER TABLE notificacion_pendiente ADD UNIQUE KEY uk_notificacion_pendiente_unica "
+                            + "(id_suscripcion, tipo, pendiente_unico)"
+            } },
+            { 7, "Etapa de cobranza por suscripción (estado_cobranza)", new String[] {
+                    "CREATE TABLE IF NOT EXISTS estado_cobranza ("
+                            + "id_suscripcion INT NOT NULL PRIMARY KEY, "
+                            + "estado VARCHAR(20) NOT NULL DEFAULT 'AL_DIA', "
+                            + "fecha_vencimiento DATE NULL, " // Factura pendiente más antigua
+                            + "proxima_accion DATE NULL, "
+                            + "fecha_estado DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "fecha_recordado DATETIME NULL, "
+                            + "fecha_ultimatum DATETIME NULL, "
+                            + "fecha_cortado DATETIME NULL, "
+                            + "fecha_reconectado DATETIME NULL, "
+                            + "INDEX idx_estado_cobranza_proxima (estado, proxima_accion))",
+                    // Etapa actual deducida igual que las consultas EXISTS anteriores
+                    "INSERT IGNORE INTO estado_cobranza (id_suscripcion, estado, fecha_vencimiento) "
+                            + "SELECT s.id_suscripcion, "
+                            + "CASE WHEN d.vence IS NULL THEN 'AL_DIA' "
+                            + "WHEN s.activo = 0 THEN 'CORTADO' "
+                            + "WHEN EXISTS (SELECT 1 FROM notificacion_pendiente np WHERE np.id_suscripcion = s.id_suscripcion "
+                            + "AND np.tipo = 'ULTIMATUM' AND np.estado = 'ENVIADO') THEN 'ULTIMATUM' "
+                            + "WHEN EXISTS (SELECT 1 FROM notificacion_pendiente np WHERE np.id_suscripcion = s.id_suscripcion "
+                            + "AND np.tipo = 'RECORDATORIO') THEN 'RECORDADO' "
+                            + "ELSE 'AL_DIA' END, d.vence "
+                            + "FROM suscripcion s LEFT JOIN ("
+                            + "SELECT id_suscripcion, MIN(fecha_vencimiento) AS vence FROM factura "
+                            + "WHERE id_estado = 1 GROUP BY id_suscripcion) d ON d.id_suscripcion = s.id_suscripcion",
+                    // Próxima acción con la configuración vigente (ver EstadoCobranza.calcularProximaAccion)
+                    "UPDATE estado_cobranza SET proxima_accion = CASE estado "
+                            + "WHEN 'AL_DIA' THEN DATE_ADD(fecha_vencimiento, INTERVAL (SELECT COALESCE(MAX(CAST(valor AS SIGNED)), 0) "
+                            + "FROM configuracion_sistema WHERE clave = 'dias_recordatorio') DAY) "
+                            + "WHEN 'ULTIMATUM' THEN DATE_ADD(fecha_vencimiento, INTERVAL (SELECT COALESCE(MAX(CAST(valor AS SIGNED)), 21) + 1 "
+                            + "FROM configuracion_sistema WHERE clave = 'plazo_pago_dias') DAY) "
+                            + "END WHERE fecha_vencimiento IS NOT NULL"
+            } },
+            { 8, "Cola de eventos de pago para la reconexión automática (evento_pago)", new String[] {
+                    "CREATE TABLE IF NOT EXISTS evento_pago ("
+                            + "id_evento BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+                            + "id_suscripcion INT NOT NULL, "
+                            + "id_factura INT NULL, "
+                            + "estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE', "
+                            + "intentos INT NOT NULL DEFAULT 0, "
+                            + "proximo_intento DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "ultimo_error VARCHAR(255) NULL, "
+                            + "fecha_creacion DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "fecha_procesado DATETIME NULL, "
+                            + "INDEX idx_evento_pago_estado_proximo (estado, proximo_intento))"
+            } },
+            { 9, "Reclamo con lease de notificaciones (varias instancias enviando)", new String[] {
+                    "ALTER TABLE notificacion_pendiente ADD COLUMN reclamado_por VARCHAR(100) NULL",
+                    "ALTER TABLE notificacion_pendiente ADD COLUMN lease_expira DATETIME NULL",
+                    // Candidatas a reclamar en orden (estado, fecha_programada, id)
+                    "ALTER TABLE notificacion_pendiente ADD INDEX idx_notificacion_estado_programada "
+                            + "(estado, fecha_programada, id_notificacion)",
+                    "ALTER TABLE notificacion_pendiente ADD INDEX idx_notificacion_reclamado_por (reclamado_por)"
+            } },
+            { 10, "Reintentos con espera de notificaciones fallidas", new String[] {
+                    "ALTER TABLE notificacion_pendiente ADD COLUMN intentos INT NOT NULL DEFAULT 0",
+                    // NULL = sin espera (nunca falló)
+                    "ALTER TABLE notificacion_pendiente ADD COLUMN proximo_intento DATETIME NULL",
+                    // Igual que idx_notificacion_estado_programada más proximo_intento: el
+                    // reclamo descarta las que esperan reintento sin leer la fila
+                    "ALTER TABLE notificacion_pendiente ADD INDEX idx_notificacion_estado_reintento "
+                            + "(estado, fecha_programada, id_notificacion, proximo_intento)",
+                    "ALTER TABLE notificacion_pendiente DROP INDEX idx_notificacion_estado_programada"
+            } },
+            { 11, "Estado de entrega informado por el proveedor (callbacks)", new String[] {
+                    "ALTER TABLE notificacion_pendiente ADD COLUMN id_mensaje VARCHAR(64) NULL",
+                    "ALTER TABLE notificacion_pendiente ADD COLUMN estado_entrega VARCHAR(20) NULL",
+                    "ALTER TABLE notificacion_pendiente ADD COLUMN fecha_entrega DATETIME NULL",
+                    "ALTER TABLE notificacion_pendiente ADD INDEX idx_notificacion_id_mensaje (id_mensaje)"
+            } },
+            { 12, "Quitar índices de la migración 5 (las consultas horarias van por estado_cobranza)", new String[] {
+                    // Las búsquedas por suscripción usan uk_factura_suscripcion_periodo
+                    // y uk_notificacion_pendiente_unica (mismo prefijo)
+                    "ALTER TABLE factura DROP INDEX idx_factura_estado_vencimiento",
+                    "ALTER TABLE notificacion_pendiente DROP INDEX idx_notificacion_suscripcion_tipo_estado"
+            } },
+    };
+
+    private MigracionEsquema() {
+        // Utilidad estática - no instanciar
+    }
+
+    /**
+     * Aplica las migraciones que aún no están registradas.
+     * Debe llamarse al inicio de la aplicación.
+     *
+     * @return true si el esquema quedó al día; false si alguna migración
+     *         falló o no se pudo obtener el candado (no arrancar)
+     */
+    public static boolean aplicarPendientes() {
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                System.err.println("❌ Migraciones: sin conexión a la base de datos");
+                return false;
+            }
+
+            if (!adquirirCandado(conn)) {
+                System.err.println("❌ Migraciones: otra instancia no liberó el candado en "
+                        + (INTENTOS_CANDADO / 2) + " minutos");
+                return false;
+            }
+
+            try {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("CREATE TABLE IF NOT EXISTS esquema_version ("
+                            + "version INT NOT NULL PRIMARY KEY, "
+                            + "descripcion VARCHAR(200), "
+                            + "fecha_aplicada DATETIME DEFAULT CURRENT_TIMESTAMP)");
+                }
+
+                Set<Integer> aplicadas = obtenerAplicadas(conn);
+                int nuevas = 0;
+                boolean todas = true;
+
+                for (Object[] migracion : MIGRACIONES) {
+                    int version = (Integer) migracion[0];
+                    String descripcion = (String) migracion[1];
+                    if (aplicadas.contains(version)) {
+                        continue;
+                    }
+
+                    if (!aplicar(conn, version, descripcion, (String[]) migracion[2])) {
+                        // No seguir: las siguientes pueden depender de esta
+                        todas = false;
+                        break;
+                    }
+                    nuevas++;
+                }
+
+                if (nuevas > 0) {
+                    System.out.println("✅ Migraciones aplicadas: " + nuevas);
+                }
+                return todas;
+            } finally {
+                liberarCandado(conn);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("❌ Error aplicando migraciones: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Ejecuta las sentencias de una migración y la registra.
+     * Los errores por objetos ya existentes (columna/índice duplicado) o ya
+     * quitados se ignoran para que la migración sea re-ejecutable.
+     */
+    private static boolean aplicar(Connection conn, int version, String descripcion, String[] sentencias) {
+        System.out.println("🔧 Migración " + version + ": " + descripcion);
+        try (Statement st = conn.createStatement()) {
+            for (String sql : sentencias) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    if (!esObjetoExistente(e)) {
+                        throw e;
+                    }
+                }
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO esquema_version (version, descripcion) VALUES (?, ?)")) {
+                ps.setInt(1, version);
+                ps.setString(2, descripcion);
+                ps.executeUpdate();
+            }
+            return true;
+
+        } catch (SQLException e) {
+            System.err.println("❌ Migración " + version + " falló: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * True si el error es por un objeto que ya existe (tabla, columna o
+     * índice) o, en un DROP, que ya no existe. Un "Duplicate entry" (1062) NO entra aquí: significa datos
+     * que violan la restricción y la migración debe fallar.
+     */
+    private static boolean esObjetoExistente(SQLException e) {
+        switch (e.getErrorCode()) {
+            case 1050: // ER_TABLE_EXISTS_ERROR
+            case 1060: // ER_DUP_FIELDNAME
+            case 1061: // ER_DUP_KEYNAME
+            case 1091: // ER_CANT_DROP_FIELD_OR_KEY
+                return true;
+            default:
+                String msg = e.getMessage();
+                return msg != null && (msg.contains("Duplicate column")
+                        || msg.contains("Duplicate key name")
+                        || msg.contains("already exists")
+                        || msg.contains("check that column/key exists"));
+        }
+    }
+
+    private static Set<Integer> obtenerAplicadas(Connection conn) throws SQLException {
+        Set<Integer> aplicadas = new HashSet<>();
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT version FROM esquema_version")) {
+            while (rs.next()) {
+                aplicadas.add(rs.getInt(1));
+            }
+        }
+        return aplicadas;
+    }
+
+    // Espera a que otra instancia termine sus migraciones
+    private static boolean adquirirCandado(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, 30)")) {
+            ps.setString(1, CANDADO);
+            for (int intento = 1; intento <= INTENTOS_CANDADO; intento++) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next() && rs.getInt(1) == 1) {
+                        return true;
+                    }
+                }
+                System.out.println("⏳ Migraciones: otra instancia las está aplicando, esperando...");
+            }
+        }
+        return false;
+    }
+
+    private static void liberarCandado(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, CANDADO);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            // Se libera igual al cerrar la sesión
+        }
+    }
+}
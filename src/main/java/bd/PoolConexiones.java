@@ -11,13 +11,22 @@ import java.sql.SQLException;
  * gestionado que elimina el patrón "diente de sierra" de memoria.
  * 
  * Configuración optimizada para Railway Free Tier (1GB RAM):
- * - Máximo 10 conexiones en el pool (suficiente para un solo hilo)
+ * - Máximo 10 conexiones en el pool (compartidas por el scheduler, los
+ *   hilos de fondo y los hilos de facturación paralela)
  * - Timeout de conexión de 10s
  * - Tiempo máximo de vida de 30min (menor que el timeout de Railway)
  * - Leak detection de 60s (detecta conexiones no devueltas al pool)
  */
 public class PoolConexiones {
 
+    // Máximo de conexiones del pool (ver crearPool)
+    public static final int MAX_CONEXIONES = 10;
+
+    // Conexiones que pueden usar a la vez los hilos de fondo, que corren
+    // también durante la facturación: ReconexionWorker (2 hilos),
+    // EscritorEstados (1) y el escritor de ReceptorEntregas (1)
+    public static final int CONEXIONES_SEGUNDO_PLANO = 4;
+
     private static volatile HikariDataSource dataSource;
     private static final Object LOCK = new Object();
 
@@ -47,6 +56,21 @@ public class PoolConexiones {
         return getDataSource().getConnection();
     }
 
+    /**
+     * Cantidad de conexiones que un proceso paralelo puede tomar del pool
+     * sin dejar sin conexiones al scheduler principal ni a los hilos de
+     * fondo (CONEXIONES_SEGUNDO_PLANO).
+     *
+     * @param conexionesPorHilo Conexiones que usa cada hilo a la vez
+     * @param hilosDeseados     Hilos pedidos por configuración
+     * @return Hilos permitidos (mínimo 1)
+     */
+    public static int hilosPermitidos(int conexionesPorHilo, int hilosDeseados) {
+        int reservadas = 2 + CONEXIONES_SEGUNDO_PLANO; // Scheduler principal + consultas auxiliares + fondo
+        int disponibles = (MAX_CONEXIONES - reservadas) / Math.max(1, conexionesPorHilo);
+        return Math.max(1, Math.min(hilosDeseados, disponibles));
+    }
+
     /**
      * Cierra el pool de conexiones (para shutdown graceful).
      */
@@ -92,11 +116,18 @@ public class PoolConexiones {
         String password = getEnvOrDefault("DB_PASSWORD",
                 "MUjBYtfwVPnAMAoHGDXbHqsIXYDTZnWs");
 
+        // DB_URL (opcional) reemplaza la URL completa, ej: la base H2 de los benchmarks
+        String urlPersonalizada = getEnvOrDefault("DB_URL", "");
+
         HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + db);
+        if (urlPersonalizada.isEmpty()) {
+            config.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + db);
+            config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        } else {
+            config.setJdbcUrl(urlPersonalizada);
+        }
         config.setUsername(user);
         config.setPassword(password);
-        config.setDriverClassName("com.mysql.cj.jdbc.Driver");
 
         // Parámetros de conexión MySQL
         config.addDataSourceProperty("useSSL", "false");
@@ -107,9 +138,11 @@ public class PoolConexiones {
         config.addDataSourceProperty("useUnicode", "true");
         config.addDataSourceProperty("connectTimeout", "10000");
         config.addDataSourceProperty("socketTimeout", "30000");
+        // Los batch de facturación se envían como un solo INSERT multi-fila
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
 
         // Configuración del pool optimizada para Railway Free Tier
-        config.setMaximumPoolSize(10); // Máximo 10 conexiones concurrentes
+        config.setMaximumPoolSize(MAX_CONEXIONES); // Máximo 10 conexiones concurrentes
         config.setMinimumIdle(2); // Mantener 2 conexiones inactivas listas
         config.setConnectionTimeout(10000); // 10s para obtener conexión
         config.setIdleTimeout(300000); // 5min inactiva → se cierra
@@ -122,15 +155,22 @@ public class PoolConexiones {
         config.setValidationTimeout(5000);
 
         System.out.println("✅ Pool de conexiones HikariCP inicializado");
-        System.out.println("   🔗 " + host + ":" + port + "/" + db);
+        System.out.println("   🔗 " + (urlPersonalizada.isEmpty() ? host + ":" + port + "/" + db : urlPersonalizada));
         System.out.println("   📊 Max: " + config.getMaximumPoolSize()
                 + " | Min idle: " + config.getMinimumIdle());
 
         return new HikariDataSource(config);
     }
 
+    /**
+     * Lee primero la propiedad del sistema (-DDB_URL=...) y luego la
+     * variable de entorno.
+     */
     private static String getEnvOrDefault(String key, String defaultValue) {
-        String value = System.getenv(key);
+        String value = System.getProperty(key);
+        if (value == null || value.isEmpty()) {
+            value = System.getenv(key);
+        }
         return (value != null && !value.isEmpty()) ? value : defaultValue;
     }
 }
@@ -0,0 +1,117 @@
+package modelo;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Tablas precalculadas de periodos de facturación (inmutable, compartida).
+ *
+ * Para cada mes de la ventana, cada dia_pago (1..31) y cada modalidad
+ * (prepago/postpago) guarda el PeriodoFacturacion ya armado, además del
+ * nombre del mes ("Enero 2026") y la fecha de vencimiento por día de pago.
+ * Así los bucles de facturación solo consultan arreglos: no formatean
+ * fechas ni crean objetos.
+ *
+ * Fuera de la ventana (o con un dia_pago fuera de 1..31) se calcula al
+ * vuelo con PeriodoFacturacion.calcular, con el mismo resultado.
+ */
+public final class CalculadoraPeriodos {
+
+    private static final int DIAS = 31;
+
+    // Ventana: desde 3 años antes hasta 3 años después del año de arranque
+    private static final int ANIOS_ATRAS = 3;
+    private static final int ANIOS_ADELANTE = 3;
+
+    private static final CalculadoraPeriodos INSTANCIA = new CalculadoraPeriodos(
+            LocalDate.now().getYear() - ANIOS_ATRAS, ANIOS_ATRAS + ANIOS_ADELANTE + 1);
+
+    private final int mesBase; // anio * 12 + (mes - 1) del primer mes de la ventana
+    private final int meses;
+
+    // [mes * DIAS * 2 + (dia - 1) * 2 + (adelantado ? 1 : 0)]; null si el mes es más corto que el día
+    private final PeriodoFacturacion[] periodos;
+    // [mes]
+    private final String[] nombresMes;
+    // [mes * DIAS + (dia - 1)], día ajustado al último del mes
+    private final LocalDate[] vencimientos;
+
+    public static CalculadoraPeriodos getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Precalcula las tablas para los años [anioInicio, anioInicio + anios).
+     */
+    public CalculadoraPeriodos(int anioInicio, int anios) {
+        this.mesBase = anioInicio * 12;
+        this.meses = anios * 12;
+        this.periodos = new PeriodoFacturacion[meses * DIAS * 2];
+        this.nombresMes = new String[meses];
+        this.vencimientos = new LocalDate[meses * DIAS];
+
+        for (int m = 0; m < meses; m++) {
+            YearMonth ym = YearMonth.of(anioInicio + m / 12, m % 12 + 1);
+            LocalDate ultimoDia = ym.atEndOfMonth();
+
+            // Mismo texto que el concepto de PeriodoFacturacion ("Enero 2026")
+            nombresMes[m] = PeriodoFacturacion.calcular(ym.atDay(1), 1, true).getNombrePeriodo();
+
+            for (int dia = 1; dia <= DIAS; dia++) {
+                vencimientos[m * DIAS + dia - 1] = ym.atDay(Math.min(dia, ym.lengthOfMonth()));
+                // calcular() con el último día del mes: null si el mes no llega a ese día
+                periodos[indice(m, dia, false)] = PeriodoFacturacion.calcular(ultimoDia, dia, false);
+                periodos[indice(m, dia, true)] = PeriodoFacturacion.calcular(ultimoDia, dia, true);
+            }
+        }
+    }
+
+    /**
+     * Periodo a facturar en la fecha indicada, o null si aún no llega el día
+     * de pago. Equivalente a PeriodoFacturacion.calcular.
+     */
+    public PeriodoFacturacion calcular(LocalDate hoy, int diaPago, boolean mesAdelantado) {
+        if (hoy.getDayOfMonth() < diaPago) {
+            return null;
+        }
+        int m = mes(hoy.getYear(), hoy.getMonthValue());
+        if (m < 0 || diaPago < 1 || diaPago > DIAS) {
+            return PeriodoFacturacion.calcular(hoy, diaPago, mesAdelantado);
+        }
+        return periodos[indice(m, diaPago, mesAdelantado)];
+    }
+
+    /**
+     * Nombre del periodo para un mes calendario. Ej: "Enero 2026".
+     */
+    public String nombreMes(int anio, int mes) {
+        int m = mes(anio, mes);
+        if (m < 0) {
+            return PeriodoFacturacion.calcular(LocalDate.of(anio, mes, 1), 1, true).getNombrePeriodo();
+        }
+        return nombresMes[m];
+    }
+
+    /**
+     * Fecha del día de pago dentro de un mes, ajustada al último día si el
+     * mes es más corto (ej: día 31 en febrero → 28/29).
+     */
+    public LocalDate fechaVencimiento(int anio, int mes, int diaPago) {
+        int m = mes(anio, mes);
+        if (m < 0 || diaPago < 1 || diaPago > DIAS) {
+            YearMonth ym = YearMonth.of(anio, mes);
+            return ym.atDay(Math.max(1, Math.min(diaPago, ym.lengthOfMonth())));
+        }
+        return vencimientos[m * DIAS + diaPago - 1];
+    }
+
+    // Índice del mes dentro de la ventana, -1 si está fuera
+    private int mes(int anio, int mes) {
+        int m = anio * 12 + (mes - 1) - mesBase;
+        return (m >= 0 && m < meses) ? m : -1;
+    }
+
+    private static int indice(int mes, int dia, boolean adelantado) {
+        return mes * DIAS * 2 + (dia - 1) * 2 + (adelantado ? 1 : 0);
+    }
+}
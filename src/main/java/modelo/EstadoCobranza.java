@@ -0,0 +1,47 @@
+package modelo;
+
+import java.time.LocalDate;
+
+/**
+ * Etapa de cobranza de una suscripción (tabla estado_cobranza).
+ *
+ * AL_DIA → RECORDADO → ULTIMATUM → CORTADO → RECONECTADO
+ *
+ * proxima_accion es la fecha en que vence la siguiente transición; las
+ * pasadas horarias solo leen las filas con proxima_accion <= hoy.
+ */
+public class EstadoCobranza {
+
+    public enum Estado {
+        AL_DIA, RECORDADO, ULTIMATUM, CORTADO, RECONECTADO
+    }
+
+    private EstadoCobranza() {
+        // Solo reglas estáticas
+    }
+
+    /**
+     * Fecha de la siguiente acción según la etapa y la factura pendiente más
+     * antigua. null = no hay nada que hacer hasta que ocurra un evento
+     * (envío del ultimátum, pago, reconexión).
+     *
+     * - AL_DIA / RECONECTADO con deuda: recordatorio diasRecordatorio días
+     *   después del vencimiento.
+     * - ULTIMATUM: corte cuando la deuda supera plazoDias días.
+     */
+    public static LocalDate calcularProximaAccion(Estado estado, LocalDate fechaVencimiento,
+            int diasRecordatorio, int plazoDias) {
+        if (fechaVencimiento == null) {
+            return null;
+        }
+        switch (estado) {
+            case AL_DIA:
+            case RECONECTADO:
+                return fechaVencimiento.plusDays(diasRecordatorio);
+            case ULTIMATUM:
+                return fechaVencimiento.plusDays(plazoDias + 1L);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package modelo;
+
+import java.time.LocalDate;
+
+/**
+ * Factura de un periodo pasado a cargar en una migración de historial
+ * (importación desde Excel/CSV o generación de un año completo).
+ */
+public class FacturaHistorica {
+
+    private int idSuscripcion;
+    private String periodoMes; // Ej: "Enero 2026"
+    private double monto;
+    private int estado; // 1 = Pendiente, 2 = Pagado
+    private LocalDate fechaVencimiento;
+
+    // Se completan al insertar
+    private int idFactura;
+    private String codigoFactura;
+
+    public FacturaHistorica() {
+    }
+
+    public FacturaHistorica(int idSuscripcion, String periodoMes, double monto, int estado,
+            LocalDate fechaVencimiento) {
+        this.idSuscripcion = idSuscripcion;
+        this.periodoMes = periodoMes;
+        this.monto = monto;
+        this.estado = estado;
+        this.fechaVencimiento = fechaVencimiento;
+    }
+
+    // Getters y Setters
+    public int getIdSuscripcion() {
+        return idSuscripcion;
+    }
+
+    public void setIdSuscripcion(int idSuscripcion) {
+        this.idSuscripcion = idSuscripcion;
+    }
+
+    public String getPeriodoMes() {
+        return periodoMes;
+    }
+
+    public void setPeriodoMes(String periodoMes) {
+        this.periodoMes = periodoMes;
+    }
+
+    public double getMonto() {
+        return monto;
+    }
+
+    public void setMonto(double monto) {
+        this.monto = monto;
+    }
+
+    public int getEstado() {
+        return estado;
+    }
+
+    public void setEstado(int estado) {
+        this.estado = estado;
+    }
+
+    public LocalDate getFechaVencimiento() {
+        return fechaVencimiento;
+    }
+
+    public void setFechaVencimiento(LocalDate fechaVencimiento) {
+        this.fechaVencimiento = fechaVencimiento;
+    }
+
+    public int getIdFactura() {
+        return idFactura;
+    }
+
+    public void setIdFactura(int idFactura) {
+        this.idFactura = idFactura;
+    }
+
+    public String getCodigoFactura() {
+        return codigoFactura;
+    }
+
+    public void setCodigoFactura(String codigoFactura) {
+        this.codigoFactura = codigoFactura;
+    }
+
+    // Método de utilidad
+    public boolean isPagada() {
+        return estado == 2;
+    }
+}
@@ -0,0 +1,112 @@
+package modelo;
+
+/**
+ * Factura candidata a generarse en un lote de facturación automática.
+ * Se arma en memoria a partir del escaneo de suscripciones activas y,
+ * una vez insertada, lleva el id y código de la factura creada.
+ */
+public class FacturaNueva {
+
+    private int idSuscripcion;
+    private boolean mesAdelantado;
+    private double monto;
+    private String nombreCliente;
+    private String telefono;
+    private PeriodoFacturacion periodo;
+    private java.time.LocalDate proximaFacturacion; // Nuevo valor de suscripcion.proxima_facturacion
+
+    // Se completan al insertar
+    private int idFactura;
+    private String codigoFactura;
+
+    public FacturaNueva() {
+    }
+
+    public FacturaNueva(int idSuscripcion, boolean mesAdelantado, double monto,
+            String nombreCliente, String telefono, PeriodoFacturacion periodo) {
+        this.idSuscripcion = idSuscripcion;
+        this.mesAdelantado = mesAdelantado;
+        this.monto = monto;
+        this.nombreCliente = nombreCliente;
+        this.telefono = telefono;
+        this.periodo = periodo;
+    }
+
+    // Getters y Setters
+    public int getIdSuscripcion() {
+        return idSuscripcion;
+    }
+
+    public void setIdSuscripcion(int idSuscripcion) {
+        this.idSuscripcion = idSuscripcion;
+    }
+
+    public boolean isMesAdelantado() {
+        return mesAdelantado;
+    }
+
+    public void setMesAdelantado(boolean mesAdelantado) {
+        this.mesAdelantado = mesAdelantado;
+    }
+
+    public double getMonto() {
+        return monto;
+    }
+
+    public void setMonto(double monto) {
+        this.monto = monto;
+    }
+
+    public String getNombreCliente() {
+        return nombreCliente;
+    }
+
+    public void setNombreCliente(String nombreCliente) {
+        this.nombreCliente = nombreCliente;
+    }
+
+    public String getTelefono() {
+        return telefono;
+    }
+
+    public void setTelefono(String telefono) {
+        this.telefono = telefono;
+    }
+
+    public PeriodoFacturacion getPeriodo() {
+        return periodo;
+    }
+
+    public void setPeriodo(PeriodoFacturacion periodo) {
+        this.periodo = periodo;
+    }
+
+    public java.time.LocalDate getProximaFacturacion() {
+        return proximaFacturacion;
+    }
+
+    public void setProximaFacturacion(java.time.LocalDate proximaFacturacion) {
+        this.proximaFacturacion = proximaFacturacion;
+    }
+
+    public int getIdFactura() {
+        return idFactura;
+    }
+
+    public void setIdFactura(int idFactura) {
+        this.idFactura = idFactura;
+    }
+
+    public String getCodigoFactura() {
+        return codigoFactura;
+    }
+
+    public void setCodigoFactura(String codigoFactura) {
+        this.codigoFactura = codigoFactura;
+    }
+
+    // Método de utilidad
+    public boolean tieneTelefono() {
+        return telefono != null && !telefono.trim().isEmpty();
+    }
+}
@@ -10,7 +10,18 @@ import java.sql.Timestamp;
 public class NotificacionPendiente {
 
     public enum TipoNotificacion {
-        RECORDATORIO, ULTIMATUM, CORTE
+        RECORDATORIO(1), ULTIMATUM(2), CORTE(2);
+
+        // Mayor = sale antes cuando el cupo diario del proveedor no alcanza
+        private final int prioridad;
+
+        TipoNotificacion(int prioridad) {
+            this.prioridad = prioridad;
+        }
+
+        public int getPrioridad() {
+            return prioridad;
+        }
     }
 
     public enum EstadoNotificacion {
@@ -25,6 +36,10 @@ public class NotificacionPendiente {
     private Date fechaProgramada;
     private Timestamp fechaEnviado;
     private EstadoNotificacion estado;
+    private int intentos;
+    private Timestamp proximoIntento;
+    private String idMensaje; // Id del proveedor (callbacks de entrega)
+    private String estadoEntrega;
 
     // Campos auxiliares para visualización
     private String nombreCliente;
@@ -115,6 +130,38 @@ public class NotificacionPendiente {
         }
     }
 
+    public int getIntentos() {
+        return intentos;
+    }
+
+    public void setIntentos(int intentos) {
+        this.intentos = intentos;
+    }
+
+    public Timestamp getProximoIntento() {
+        return proximoIntento;
+    }
+
+    public void setProximoIntento(Timestamp proximoIntento) {
+        this.proximoIntento = proximoIntento;
+    }
+
+    public String getIdMensaje() {
+        return idMensaje;
+    }
+
+    public void setIdMensaje(String idMensaje) {
+        this.idMensaje = idMensaje;
+    }
+
+    public String getEstadoEntrega() {
+        return estadoEntrega;
+    }
+
+    public void setEstadoEntrega(String estadoEntrega) {
+        this.estadoEntrega = estadoEntrega;
+    }
+
     public String getNombreCliente() {
         return nombreCliente;
     }
@@ -0,0 +1,119 @@
+package modelo;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Periodo de facturación calculado para una suscripción (inmutable).
+ *
+ * LÓGICA DEL NEGOCIO:
+ * - PREPAGO: Cobra período ADELANTE (ej: 20 Dic a 20 Ene = concepto Enero)
+ * - POSTPAGO: Cobra período ATRÁS (ej: 20 Nov a 20 Dic = concepto Diciembre)
+ */
+public class PeriodoFacturacion {
+
+    private static final DateTimeFormatter FMT_MES = DateTimeFormatter.ofPattern("MMMM yyyy", new Locale("es", "ES"));
+    private static final DateTimeFormatter FMT_RANGO = DateTimeFormatter.ofPattern("dd MMM", new Locale("es", "ES"));
+
+    private final LocalDate fechaInicio;
+    private final LocalDate fechaFin;
+    private final LocalDate fechaVencimiento;
+    private final String nombrePeriodo; // Ej: "Enero 2026"
+    private final String rangoPeriodo; // Ej: "17 dic - 17 ene"
+
+    public PeriodoFacturacion(LocalDate fechaInicio, LocalDate fechaFin, LocalDate fechaVencimiento,
+            String nombrePeriodo, String rangoPeriodo) {
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+        this.fechaVencimiento = fechaVencimiento;
+        this.nombrePeriodo = nombrePeriodo;
+        this.rangoPeriodo = rangoPeriodo;
+    }
+
+    /**
+     * Calcula el periodo que corresponde facturar en la fecha indicada.
+     * Retorna null si aún no llega el día de pago del mes.
+     */
+    public static PeriodoFacturacion calcular(LocalDate hoy, int diaPago, boolean mesAdelantado) {
+        // Solo generar si ya llegó o pasó el día de pago
+        if (hoy.getDayOfMonth() < diaPago) {
+            return null;
+        }
+
+        LocalDate fechaInicio, fechaFin, fechaVencimiento;
+
+        if (mesAdelantado) {
+            // PREPAGO: dia_pago del mes actual → dia_pago del mes siguiente
+            fechaInicio = hoy.withDayOfMonth(Math.min(diaPago, hoy.lengthOfMonth()));
+            LocalDate mesSiguiente = hoy.plusMonths(1);
+            fechaFin = mesSiguiente.withDayOfMonth(Math.min(diaPago, mesSiguiente.lengthOfMonth()));
+            fechaVencimiento = fechaInicio; // Vence al inicio del período
+        } else {
+            // POSTPAGO: dia_pago del mes anterior → dia_pago del mes actual
+            LocalDate mesAnterior = hoy.minusMonths(1);
+            fechaInicio = mesAnterior.withDayOfMonth(Math.min(diaPago, mesAnterior.lengthOfMonth()));
+            fechaFin = hoy.withDayOfMonth(Math.min(diaPago, hoy.lengthOfMonth()));
+            fechaVencimiento = fechaFin; // Vence al final del período
+        }
+
+        // El concepto es el mes donde cae la MAYOR parte del período
+        // Para dia_pago <= 16: la mayoría cae en el mes de inicio
+        // Para dia_pago > 16: la mayoría cae en el mes de fin
+        LocalDate mesConcepto = (diaPago <= 16) ? fechaInicio : fechaFin;
+        String mesNombre = mesConcepto.format(FMT_MES);
+        String nombrePeriodo = mesNombre.substring(0, 1).toUpperCase() + mesNombre.substring(1).toLowerCase();
+
+        // Formato del rango: "17 dic - 17 ene"
+        String rangoPeriodo = fechaInicio.format(FMT_RANGO) + " - " + fechaFin.format(FMT_RANGO);
+
+        return new PeriodoFacturacion(fechaInicio, fechaFin, fechaVencimiento, nombrePeriodo, rangoPeriodo);
+    }
+
+    /**
+     * Primera fecha desde la indicada (inclusive) en la que calcular() ya
+     * retorna un periodo para este día de pago. Se guarda como
+     * suscripcion.proxima_facturacion para que cada corrida solo lea las
+     * suscripciones a las que ya les toca.
+     */
+    public static LocalDate primerDiaFacturable(LocalDate desde, int diaPago) {
+        int dia = Math.max(1, diaPago);
+        if (desde.getDayOfMonth() >= dia) {
+            return desde; // Ya llegó el día de pago este mes
+        }
+        LocalDate mes = desde.withDayOfMonth(1);
+        // Meses más cortos que el día de pago no facturan (ej: día 31 en febrero)
+        while (dia > mes.lengthOfMonth()) {
+            mes = mes.plusMonths(1);
+        }
+        return mes.withDayOfMonth(dia);
+    }
+
+    /**
+     * Siguiente fecha de facturación una vez cubierto el periodo del mes de
+     * la fecha indicada.
+     */
+    public static LocalDate siguienteFacturacion(LocalDate hoy, int diaPago) {
+        return primerDiaFacturable(hoy.withDayOfMonth(1).plusMonths(1), diaPago);
+    }
+
+    public LocalDate getFechaInicio() {
+        return fechaInicio;
+    }
+
+    public LocalDate getFechaFin() {
+        return fechaFin;
+    }
+
+    public LocalDate getFechaVencimiento() {
+        return fechaVencimiento;
+    }
+
+    public String getNombrePeriodo() {
+        return nombrePeriodo;
+    }
+
+    public String getRangoPeriodo() {
+        return rangoPeriodo;
+    }
+}
@@ -0,0 +1,101 @@
+package modelo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resumen de las facturas pendientes de una suscripción (cantidad, total,
+ * último periodo y detalle). Se arma en memoria a partir de una sola
+ * consulta para todas las suscripciones facturadas en una corrida.
+ */
+public class ResumenDeuda {
+
+    private final int idSuscripcion;
+    private final List<ItemDeuda> items = new ArrayList<>();
+    private double total;
+
+    // Factura pendiente más reciente (mayor id_factura)
+    private int idUltimaFactura;
+    private String ultimoPeriodo;
+    private String ultimoRango;
+
+    public ResumenDeuda(int idSuscripcion) {
+        this.idSuscripcion = idSuscripcion;
+    }
+
+    /**
+     * Agrega una factura pendiente. Se espera en orden de emisión.
+     */
+    public void agregar(int idFactura, String periodoMes, String rangoPeriodo, double monto) {
+        items.add(new ItemDeuda(periodoMes, rangoPeriodo, monto));
+        total += monto;
+        if (idFactura > idUltimaFactura) {
+            idUltimaFactura = idFactura;
+            ultimoPeriodo = periodoMes;
+            ultimoRango = rangoPeriodo;
+        }
+    }
+
+    public int getIdSuscripcion() {
+        return idSuscripcion;
+    }
+
+    public int getCantidad() {
+        return items.size();
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public String getUltimoPeriodo() {
+        return ultimoPeriodo;
+    }
+
+    public String getUltimoRango() {
+        return ultimoRango;
+    }
+
+    public List<ItemDeuda> getItems() {
+        return items;
+    }
+
+    /**
+     * Ej: "del mes de Enero 2026 (02 ene - 02 feb)"
+     */
+    public String getUltimaFacturaInfo() {
+        if (ultimoPeriodo == null) {
+            return "del mes actual";
+        }
+        return "del mes de " + ultimoPeriodo + " (" + ultimoRango + ")";
+    }
+
+    /**
+     * Ej: "• Enero 2026 (02 ene - 02 feb): S/. 50.00\n• Febrero 2026..."
+     */
+    public String getDetalle() {
+        StringBuilder detalle = new StringBuilder();
+        for (ItemDeuda item : items) {
+            detalle.append("• ").append(item.periodoMes)
+                    .append(" (").append(item.rangoPeriodo).append("): S/. ")
+                    .append(String.format("%.2f", item.monto))
+                    .append("\n");
+        }
+        return detalle.toString().trim();
+    }
+
+    /**
+     * Una factura pendiente dentro del resumen.
+     */
+    public static class ItemDeuda {
+        public final String periodoMes;
+        public final String rangoPeriodo;
+        public final double monto;
+
+        public ItemDeuda(String periodoMes, String rangoPeriodo, double monto) {
+            this.periodoMes = periodoMes;
+            this.rangoPeriodo = rangoPeriodo;
+            this.monto = monto;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package servicio;
+
+import modelo.NotificacionPendiente.EstadoNotificacion;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bitácora local de envíos (archivo de solo-agregar, mapeado en memoria).
+ *
+ * Antes de cada envío se anota el intento y, al terminar, su resultado;
+ * EscritorEstados lo pasa a notificacion_pendiente y después marca la
+ * bitácora como confirmada hasta ese punto. Si la base de datos se cae o
+ * el proceso muere antes de escribir, al arrancar se leen los resultados
+ * no confirmados y se vuelven a escribir (al menos una vez).
+ *
+ * Anotar es escribir REGISTRO bytes en memoria; el disco se sincroniza
+ * (force) cada EscritorEstados.INTERVALO_SYNC_MS y al cerrar.
+ *
+ * Formato: cabecera { int MAGICO, int reservado, long confirmado } y
+ * registros { int idNotificacion, byte tipo, 3 bytes relleno, long fecha }.
+ * Tipo 0 = fin (zona sin escribir), 1 = intento, 2+ = resultado (2 +
+ * ordinal de EstadoNotificacion). Cuando todo está confirmado el archivo
+ * se limpia y se vuelve a escribir desde el principio.
+ */
+public class BitacoraEnvios {
+
+    private static final int MAGICO = 0x464E4554; // "FNET"
+    private static final int CABECERA = 16;
+    private static final int REGISTRO = 16;
+    private static final int TAMANO_INICIAL = 4 * 1024 * 1024; // 262.144 registros
+    private static final byte TIPO_INTENTO = 1;
+    private static final byte TIPO_RESULTADO = 2;
+
+    private final FileChannel canal;
+    private MappedByteBuffer mapa;
+    private int fin;
+    private int confirmado;
+    private boolean sucio = false;
+
+    private BitacoraEnvios(Path ruta) throws IOException {
+        if (ruta.getParent() != null) {
+            Files.createDirectories(ruta.getParent());
+        }
+        this.canal = new RandomAccessFile(ruta.toFile(), "rw").getChannel();
+        boolean nueva = canal.size() < CABECERA;
+        this.mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(canal.size(), TAMANO_INICIAL));
+
+        if (nueva || mapa.getInt(0) != MAGICO) {
+            limpiar(mapa.capacity());
+            mapa.putInt(0, MAGICO);
+            mapa.putLong(8, CABECERA);
+            mapa.force();
+        }
+        this.confirmado = (int) mapa.getLong(8);
+        this.fin = confirmado;
+        while (fin + REGISTRO <= mapa.capacity() && mapa.get(fin + 4) != 0) {
+            fin += REGISTRO;
+        }
+    }
+
+    /**
+     * Abre (o crea) la bitácora. Si no se puede, retorna null: se sigue
+     * enviando, solo sin protección ante caídas.
+     */
+    public static BitacoraEnvios abrir(String ruta) {
+        try {
+            return new BitacoraEnvios(Paths.get(ruta));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ No se pudo abrir la bitácora de envíos (" + ruta + "): " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Anota que la notificación está por enviarse.
+     */
+    public synchronized void anotarIntento(int idNotificacion) {
+        agregar(idNotificacion, TIPO_INTENTO);
+    }
+
+    /**
+     * Anota el resultado de una notificación.
+     */
+    public synchronized void anotarResultado(int idNotificacion, EstadoNotificacion estado) {
+        agregar(idNotificacion, (byte) (TIPO_RESULTADO + estado.ordinal()));
+    }
+
+    /**
+     * Posición actual (para confirmarHasta).
+     */
+    public synchronized int posicion() {
+        return fin;
+    }
+
+    /**
+     * Todo lo anotado antes de "posicion" ya está en la base de datos.
+     */
+    public synchronized void confirmarHasta(int posicion) {
+        if (posicion <= confirmado) {
+            return;
+        }
+        confirmado = posicion;
+        if (confirmado == fin) {
+            // Nada pendiente: se vuelve a empezar desde la cabecera
+            limpiar(fin);
+            fin = CABECERA;
+            confirmado = CABECERA;
+        }
+        mapa.putLong(8, confirmado);
+        sucio = true;
+    }
+
+    /**
+     * Resultados anotados y no confirmados, en orden (el último por
+     * notificación manda).
+     */
+    public synchronized Map<Integer, EstadoNotificacion> resultadosSinConfirmar() {
+        Map<Integer, EstadoNotificacion> resultados = new LinkedHashMap<>();
+        EstadoNotificacion[] estados = EstadoNotificacion.values();
+        for (int p = confirmado; p < fin; p += REGISTRO) {
+            int tipo = mapa.get(p + 4);
+            if (tipo >= TIPO_RESULTADO && tipo - TIPO_RESULTADO < estados.length) {
+                int id = mapa.getInt(p);
+                resultados.remove(id);
+                resultados.put(id, estados[tipo - TIPO_RESULTADO]);
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Intentos no confirmados que no tienen resultado: se cortó el proceso
+     * durante el envío y no se sabe si el mensaje salió.
+     */
+    public synchronized List<Integer> intentosSinResultado() {
+        Set<Integer> conResultado = new HashSet<>();
+        List<Integer> intentos = new ArrayList<>();
+        for (int p = fin - REGISTRO; p >= confirmado; p -= REGISTRO) {
+            int id = mapa.getInt(p);
+            if (mapa.get(p + 4) == TIPO_INTENTO) {
+                if (!conResultado.contains(id)) {
+                    intentos.add(id);
+                }
+            } else {
+                conResultado.add(id);
+            }
+        }
+        return intentos;
+    }
+
+    /**
+     * Sincroniza con el disco si hubo cambios.
+     */
+    public synchronized void sincronizar() {
+        if (sucio) {
+            mapa.force();
+            sucio = false;
+        }
+    }
+
+    public synchronized void cerrar() {
+        try {
+            sincronizar();
+            canal.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ Error cerrando la bitácora de envíos: " + e.getMessage());
+        }
+    }
+
+    private void agregar(int idNotificacion, byte tipo) {
+        if (fin + REGISTRO > mapa.capacity() && !crecer()) {
+            return; // Sin espacio: el estado igual va a EscritorEstados
+        }
+        mapa.putInt(fin, idNotificacion);
+        mapa.putLong(fin + 8, System.currentTimeMillis());
+        mapa.put(fin + 4, tipo); // Al final: un registro con tipo != 0 está completo
+        fin += REGISTRO;
+        sucio = true;
+    }
+
+    // Duplica el archivo (muchos resultados sin confirmar, p. ej. BD caída)
+    private boolean crecer() {
+        try {
+            mapa.force();
+            mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, (long) mapa.capacity() * 2);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ No se pudo ampliar la bitácora de envíos: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Pone en cero los registros entre la cabecera y "hasta"
+    private void limpiar(int hasta) {
+        for (int p = CABECERA; p < hasta; p += 8) {
+            mapa.putLong(p, 0L);
+        }
+    }
+}
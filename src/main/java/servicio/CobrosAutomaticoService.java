@@ -7,6 +7,7 @@ import modelo.NotificacionPendiente.EstadoNotificacion;
 import bd.Conexion;
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -23,6 +24,8 @@ public class CobrosAutomaticoService {
     private final AlertaDAO alertaDAO;
     private final SuscripcionDAO suscripcionDAO;
     private final PagoDAO pagoDAO;
+    private final EstadoCobranzaDAO estadoCobranzaDAO;
+    private final EventoPagoDAO eventoPagoDAO;
 
     private final IWhatsAppService whatsAppService;
     private final IRouterService routerService;
@@ -34,6 +37,8 @@ public class CobrosAutomaticoService {
         this.alertaDAO = new AlertaDAO();
         this.suscripcionDAO = new SuscripcionDAO();
         this.pagoDAO = new PagoDAO();
+        this.estadoCobranzaDAO = new EstadoCobranzaDAO();
+        this.eventoPagoDAO = new EventoPagoDAO();
         this.mensajeService = new MensajeTemplateService();
 
         // WhatsApp con Evolution API - ACTIVADO INMEDIATAMENTE
@@ -52,6 +57,41 @@ public class CobrosAutomaticoService {
         }
     }
 
+    // Suscripciones a las que ya les toca el recordatorio (param: hoy), con sus
+    // facturas pendientes de la más antigua a la más nueva. Rango sobre
+    // idx_estado_cobranza_proxima; f NULL = ya pagó (hay que recalcular).
+    // con_recordatorio: ya tiene uno PENDIENTE (p. ej. el de la factura nueva).
+    static final String SQL_FACTURAS_VENCIDAS = "SELECT ec.id_suscripcion, s.activo, c.nombres, c.apellidos, c.telefono, " +
+            "f.monto_total, f.periodo_mes, f.fecha_vencimiento, " +
+            "EXISTS (SELECT 1 FROM notificacion_pendiente np WHERE np.id_suscripcion = ec.id_suscripcion " +
+            "   AND np.tipo = 'RECORDATORIO' AND np.estado = 'PENDIENTE') AS con_recordatorio " +
+            "FROM estado_cobranza ec " +
+            "JOIN suscripcion s ON ec.id_suscripcion = s.id_suscripcion " +
+            "JOIN cliente c ON s.id_cliente = c.id_cliente " +
+            "LEFT JOIN factura f ON f.id_suscripcion = ec.id_suscripcion AND f.id_estado = 1 " + // 1 = PENDIENTE
+            "WHERE ec.estado IN ('AL_DIA', 'RECONECTADO') " +
+            "AND ec.proxima_accion <= ? " +
+            "ORDER BY ec.id_suscripcion, f.fecha_vencimiento, f.id_factura";
+
+    // Suscripciones en ULTIMATUM con el plazo cumplido (params: fecha límite de
+    // vencimiento, hoy). con_deuda confirma que la deuda sigue impaga.
+    static final String SQL_ULTIMATUMS_VENCIDOS = "SELECT ec.id_suscripcion, s.activo, s.fecha_cancelacion, s.ip_cliente, " +
+            "c.nombres, c.apellidos, s.codigo_contrato, " +
+            "EXISTS (SELECT 1 FROM factura f WHERE f.id_suscripcion = ec.id_suscripcion " +
+            "   AND f.id_estado = 1 AND f.fecha_vencimiento < ?) AS con_deuda " + // Vencida hace más de plazoDias días
+            "FROM estado_cobranza ec " +
+            "JOIN suscripcion s ON ec.id_suscripcion = s.id_suscripcion " +
+            "JOIN cliente c ON s.id_cliente = c.id_cliente " +
+            "WHERE ec.estado = 'ULTIMATUM' " +
+            "AND ec.proxima_accion <= ?";
+
+    /**
+     * Router configurado (real o mock), compartido con ReconexionWorker.
+     */
+    IRouterService getRouterService() {
+        return routerService;
+    }
+
     /**
      * PROCESO DIARIO PRINCIPAL.
      * Debe ejecutarse una vez al día (preferiblemente en la mañana).
@@ -71,6 +111,15 @@ public class CobrosAutomaticoService {
             System.out.println("\n📋 Generación de facturas: Solo a las 6AM, 8AM y 6PM (actual: " + horaActual + ":00)");
         }
 
+        // 1b. Alinear estado_cobranza con facturas creadas o pagadas fuera del
+        // servicio (aplicación de escritorio) antes de leerlo (CADA HORA)
+        int resincronizadas = estadoCobranzaDAO.resincronizar();
+        if (resincronizadas > 0) {
+            System.out.println("🔄 Etapa de cobranza recalculada para " + resincronizadas + " suscripciones");
+        } else if (resincronizadas < 0) {
+            System.err.println("⚠️ No se pudo resincronizar estado_cobranza con las facturas");
+        }
+
         // 2. Revisar facturas vencidas y crear notificaciones de recordatorio (CADA
         // HORA)
         revisarFacturasVencidas();
@@ -78,6 +127,10 @@ public class CobrosAutomaticoService {
         // 3. Revisar ultimátums vencidos y ejecutar cortes (CADA HORA)
         revisarUltimatumsVencidos();
 
+        // 3b. Corregir diferencias entre la lista MOROSOS del router y la BD
+        // (CADA HORA, después de los cortes)
+        reconciliarMorosos();
+
         // 4. Procesar cola de notificaciones pendientes (CADA HORA)
         procesarNotificacionesPendientes();
 
@@ -108,86 +161,63 @@ public class CobrosAutomaticoService {
      * NUEVO: Genera facturas faltantes para TODOS los clientes activos.
      * No depende del día de pago - revisa cada suscripción y genera
      * la factura del siguiente periodo si corresponde.
+     *
+     * Los periodos se calculan en memoria a partir del mismo escaneo y las
+     * facturas se escriben por lotes (ver PagoDAO.generarFacturasLote).
+     * Solo se leen las suscripciones cuya proxima_facturacion ya llegó, así el
+     * trabajo de cada corrida depende de cuántos clientes vencen hoy.
      */
     public void generarFacturasFaltantes(boolean enviarNotificaciones) {
         System.out.println("\n📋 Revisando facturas faltantes...");
 
-        // Seleccionar TODAS las suscripciones activas
+        // Seleccionar solo las suscripciones activas a las que ya les toca
+        // (proxima_facturacion NULL = nueva o recién editada, se calcula aquí)
         String sql = "SELECT s.id_suscripcion, s.id_cliente, s.mes_adelantado, s.dia_pago, " +
                 "c.nombres, c.apellidos, c.telefono, c.dni_cliente, " + // CORREGIDO: c.dni_cliente
                 "srv.mensualidad, s.codigo_contrato " +
                 "FROM suscripcion s " +
                 "JOIN cliente c ON s.id_cliente = c.id_cliente " +
                 "JOIN servicio srv ON s.id_servicio = srv.id_servicio " +
-                "WHERE s.activo = 1";
+                "WHERE s.activo = 1 " +
+                "AND (s.proxima_facturacion IS NULL OR s.proxima_facturacion <= ?)";
 
-        int facturasGeneradas = 0;
         int clientesRevisados = 0;
         int notificacionesProgramadas = 0;
 
+        // 1. Escanear y calcular en memoria el periodo que corresponde a cada una
+        LocalDate hoy = LocalDate.now();
+        CalculadoraPeriodos periodos = CalculadoraPeriodos.getInstancia(); // Tablas precalculadas
+        List<FacturaNueva> candidatas = new ArrayList<>();
+        java.util.Map<Integer, LocalDate> aunNoLesToca = new java.util.HashMap<>();
+
         try (Connection conn = Conexion.getConexion();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
 
+            ps.setDate(1, java.sql.Date.valueOf(hoy));
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     clientesRevisados++;
                     int idSuscripcion = rs.getInt("id_suscripcion");
+                    int diaPago = rs.getInt("dia_pago");
                     boolean mesAdelantado = rs.getInt("mes_adelantado") == 1;
-                    String nombreCliente = rs.getString("nombres") + " " + rs.getString("apellidos");
-                    String telefono = rs.getString("telefono");
-                    String dni = rs.getString("dni_cliente"); // CORREGIDO: dni_cliente
-                    double monto = rs.getDouble("mensualidad");
-
-                    // Intentar generar factura (el método ya valida si corresponde)
-                    boolean generada = pagoDAO.generarSiguienteFactura(idSuscripcion);
-
-                    if (generada) {
-                        facturasGeneradas++;
-
-                        // Contar facturas pendientes DESPUÉS de generar la nueva
-                        int facturasPendientes = pagoDAO.contarFacturasPendientes(idSuscripcion);
-
-                        if (enviarNotificaciones) {
-                            // Obtener información de la factura recién generada
-                            String facturaInfo = pagoDAO.obtenerUltimaFacturaInfo(idSuscripcion);
-
-                            // Obtener lista de facturas pendientes
-                            String facturasPendientesDetalle = pagoDAO.obtenerFacturasPendientesDetalle(idSuscripcion);
-
-                            // Construir mensaje mejorado
-                            StringBuilder mensaje = new StringBuilder();
-                            mensaje.append("Hola ").append(nombreCliente).append(", ");
-                            mensaje.append("te recordamos que ya está disponible tu pago ").append(facturaInfo);
-                            mensaje.append(" por S/. ").append(String.format("%.2f", monto)).append(".");
-
-                            // Agregar facturas pendientes si hay más de una
-                            if (facturasPendientes > 1) {
-                                mensaje.append("\n\n📋 Facturas pendientes:\n").append(facturasPendientesDetalle);
-                            }
-
-                            mensaje.append("\n\n¡Gracias!");
-
-                            whatsAppService.enviarMensaje(telefono, mensaje.toString());
-                            notificacionesProgramadas++;
-                            System.out.println("   📱 Notificación enviada a: " + nombreCliente);
-                        } else {
-                            System.out.println(
-                                    "   ⏭️ Notificaciones solo en horario programado (6AM, 8AM, 6PM), omitido ahora.");
-                        }
-
-                        // ADVERTENCIA DE CORTE: Si llega a 3 meses de deuda
-                        if (facturasPendientes >= 3) {
-                            double deudaTotal = monto * facturasPendientes;
-                            String mensajeUrgente = String.format(
-                                    "⚠️ AVISO IMPORTANTE %s: Tienes %d meses de deuda acumulada (S/. %.2f). " +
-                                            "Debes regularizar tu pago en los próximos 5 días para evitar el corte de servicio. "
-                                            +
-                                            "Comunícate con nosotros para coordinar tu pago.",
-                                    nombreCliente, facturasPendientes, deudaTotal);
-                            whatsAppService.enviarMensaje(telefono, mensajeUrgente);
-                            System.out.println("   ⚠️ Advertencia de corte enviada a: " + nombreCliente);
-                        }
+
+                    // Solo si ya llegó el día de pago; si no, agendar para cuando llegue
+                    PeriodoFacturacion periodo = periodos.calcular(hoy, diaPago, mesAdelantado);
+                    if (periodo == null) {
+                        aunNoLesToca.put(idSuscripcion, PeriodoFacturacion.primerDiaFacturable(hoy, diaPago));
+                        continue;
                     }
+
+                    FacturaNueva factura = new FacturaNueva(
+                            idSuscripcion,
+                            mesAdelantado,
+                            rs.getDouble("mensualidad"),
+                            rs.getString("nombres") + " " + rs.getString("apellidos"),
+                            rs.getString("telefono"),
+                            periodo);
+                    // Se guarda junto con la factura (misma transacción)
+                    factura.setProximaFacturacion(PeriodoFacturacion.siguienteFacturacion(hoy, diaPago));
+                    candidatas.add(factura);
                 }
             }
 
@@ -195,6 +225,70 @@ public class CobrosAutomaticoService {
             e.printStackTrace();
         }
 
+        suscripcionDAO.actualizarProximaFacturacionLote(aunNoLesToca);
+
+        // 2. Insertar por lotes (facturas + recordatorios, una transacción por lote),
+        // repartidos en particiones por rango de id si hay varios hilos configurados
+        int hilos = configDAO.obtenerValorInt(ConfiguracionDAO.FACTURACION_HILOS, 1);
+        FacturacionParalela.ResultadoFacturacion resultado = new FacturacionParalela(pagoDAO, hilos)
+                .generar(candidatas);
+        List<FacturaNueva> creadas = resultado.creadas;
+        int facturasGeneradas = creadas.size();
+        if (resultado.particionesFallidas > 0) {
+            System.err.println("   ❌ Particiones fallidas: " + resultado.particionesFallidas
+                    + " (se reintentarán en el siguiente ciclo)");
+        }
+
+        // 3. Mensajes a los clientes con factura nueva.
+        // Deuda de todos ellos en una sola consulta; los mensajes se arman en memoria.
+        List<Integer> idsCreadas = new ArrayList<>();
+        for (FacturaNueva factura : creadas) {
+            idsCreadas.add(factura.getIdSuscripcion());
+        }
+        java.util.Map<Integer, ResumenDeuda> deudas = pagoDAO.obtenerResumenDeuda(idsCreadas);
+
+        for (FacturaNueva factura : creadas) {
+            int idSuscripcion = factura.getIdSuscripcion();
+            String nombreCliente = factura.getNombreCliente();
+            String telefono = factura.getTelefono();
+            double monto = factura.getMonto();
+
+            // Deuda pendiente DESPUÉS de generar la nueva
+            ResumenDeuda deuda = deudas.get(idSuscripcion);
+            int facturasPendientes = deuda != null ? deuda.getCantidad() : 0;
+
+            // Un solo mensaje por cliente: factura disponible y, si llega a 3
+            // meses de deuda, la advertencia de corte
+            List<String> mensajes = new ArrayList<>();
+            if (enviarNotificaciones) {
+                // Información de la factura recién generada (ya está en memoria)
+                String facturaInfo = "del mes de " + factura.getPeriodo().getNombrePeriodo()
+                        + " (" + factura.getPeriodo().getRangoPeriodo() + ")";
+                mensajes.add(mensajeService.generarFacturaDisponible(nombreCliente, facturaInfo, monto,
+                        facturasPendientes, facturasPendientes > 1 ? deuda.getDetalle() : null));
+            } else {
+                System.out.println(
+                        "   ⏭️ Notificaciones solo en horario programado (6AM, 8AM, 6PM), omitido ahora.");
+            }
+
+            // ADVERTENCIA DE CORTE: Si llega a 3 meses de deuda
+            if (facturasPendientes >= 3) {
+                mensajes.add(mensajeService.generarAdvertenciaDeuda(nombreCliente, facturasPendientes,
+                        deuda.getTotal()));
+            }
+
+            if (!mensajes.isEmpty()) {
+                RitmoProveedor.de(whatsAppService).enviar(telefono, mensajeService.combinar(mensajes));
+                if (enviarNotificaciones) {
+                    notificacionesProgramadas++;
+                    System.out.println("   📱 Notificación enviada a: " + nombreCliente);
+                }
+                if (facturasPendientes >= 3) {
+                    System.out.println("   ⚠️ Advertencia de corte enviada a: " + nombreCliente);
+                }
+            }
+        }
+
         System.out.println("   📊 Clientes revisados: " + clientesRevisados);
         System.out.println("   ✅ Facturas generadas: " + facturasGeneradas);
         if (notificacionesProgramadas > 0) {
@@ -223,59 +317,84 @@ public class CobrosAutomaticoService {
 
     /**
      * Revisa facturas vencidas y programa notificaciones de recordatorio.
-     * Solo para clientes POSTPAGO (mes_adelantado = 0).
+     * Aplica a prepago y postpago: la fecha de vencimiento de cada factura
+     * ya refleja la modalidad.
+     *
+     * Trabaja por conjuntos: una consulta trae las suscripciones cuya
+     * próxima acción (estado_cobranza) ya llegó, los mensajes se arman en
+     * memoria y se insertan con NotificacionDAO.crearNotificacionesLote. La
+     * clave única de notificacion_pendiente evita duplicados sin consultar
+     * antes (una PENDIENTE existente queda con el texto nuevo). Las suscripciones avisadas pasan a RECORDADO.
      */
     public void revisarFacturasVencidas() {
         System.out.println("\n🔍 Revisando facturas vencidas...");
 
-        int diasRecordatorio = configDAO.obtenerValorInt(ConfiguracionDAO.DIAS_RECORDATORIO, 0);
-
-        // Buscar facturas pendientes cuya fecha de vencimiento ya pasó
-        String sql = "SELECT f.id_factura, f.id_suscripcion, f.monto_total, f.periodo_mes, f.fecha_vencimiento, " +
-                "s.mes_adelantado, c.nombres, c.apellidos, c.telefono, s.codigo_contrato " +
-                "FROM factura f " +
-                "JOIN suscripcion s ON f.id_suscripcion = s.id_suscripcion " +
-                "JOIN cliente c ON s.id_cliente = c.id_cliente " +
-                "WHERE f.id_estado = 1 " + // 1 = PENDIENTE
-                "AND s.activo = 1 " +
-                "AND DATEDIFF(CURRENT_DATE(), f.fecha_vencimiento) >= ? " +
-                "AND NOT EXISTS (" +
-                "   SELECT 1 FROM notificacion_pendiente np " +
-                "   WHERE np.id_suscripcion = f.id_suscripcion " +
-                "   AND np.tipo = 'RECORDATORIO'" +
-                ")";
+        int plazoDias = configDAO.obtenerValorInt(ConfiguracionDAO.PLAZO_PAGO_DIAS, 21);
+        LocalDate hoy = LocalDate.now();
 
-        int recordatoriosProgramados = 0;
+        // 1. Suscripciones cuyo recordatorio ya vence
+        // (una fila por suscripción: su factura pendiente más antigua)
+        String sql = SQL_FACTURAS_VENCIDAS;
+        java.util.Map<Integer, Object[]> vencidas = new java.util.LinkedHashMap<>();
+        java.util.Set<Integer> avisadas = new java.util.LinkedHashSet<>();
+        List<Integer> sinDeuda = new ArrayList<>();
 
         try (Connection conn = Conexion.getConexion();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            ps.setInt(1, diasRecordatorio);
+            ps.setDate(1, java.sql.Date.valueOf(hoy));
             ResultSet rs = ps.executeQuery();
 
-            int plazoDias = configDAO.obtenerValorInt(ConfiguracionDAO.PLAZO_PAGO_DIAS, 21);
-
             while (rs.next()) {
                 int idSuscripcion = rs.getInt("id_suscripcion");
-                String nombreCliente = rs.getString("nombres") + " " + rs.getString("apellidos");
-                String telefono = rs.getString("telefono");
-                String periodo = rs.getString("periodo_mes");
-                double monto = rs.getDouble("monto_total");
-                java.sql.Date fechaVenc = rs.getDate("fecha_vencimiento");
-
-                // Fecha límite = fecha vencimiento + plazo
-                LocalDate fechaLimite = fechaVenc.toLocalDate().plusDays(plazoDias);
-
-                programarNotificacionRecordatorio(
-                        idSuscripcion, nombreCliente, telefono,
-                        periodo, monto, fechaLimite);
-                recordatoriosProgramados++;
+                if (rs.getDate("fecha_vencimiento") == null) {
+                    sinDeuda.add(idSuscripcion); // Pagó por fuera de este servicio
+                    continue;
+                }
+                if (rs.getInt("activo") != 1) {
+                    continue;
+                }
+                avisadas.add(idSuscripcion);
+                if (rs.getBoolean("con_recordatorio")) {
+                    continue; // Ya tiene un recordatorio en cola
+                }
+                vencidas.putIfAbsent(idSuscripcion, new Object[] {
+                        rs.getString("nombres") + " " + rs.getString("apellidos"),
+                        rs.getString("telefono"),
+                        rs.getString("periodo_mes"),
+                        rs.getDouble("monto_total"),
+                        rs.getDate("fecha_vencimiento").toLocalDate() });
             }
 
         } catch (SQLException e) {
             e.printStackTrace();
+            return;
         }
 
+        // 2. Armar todos los mensajes en memoria
+        List<NotificacionPendiente> recordatorios = new ArrayList<>(vencidas.size());
+        java.sql.Date fechaProgramada = java.sql.Date.valueOf(hoy);
+        for (java.util.Map.Entry<Integer, Object[]> vencida : vencidas.entrySet()) {
+            Object[] v = vencida.getValue();
+            // Fecha límite = fecha vencimiento + plazo
+            LocalDate fechaLimite = ((LocalDate) v[4]).plusDays(plazoDias);
+
+            NotificacionPendiente n = new NotificacionPendiente();
+            n.setIdSuscripcion(vencida.getKey());
+            n.setTipo(TipoNotificacion.RECORDATORIO);
+            n.setMensaje(mensajeService.generarRecordatorio((String) v[0], (String) v[2], (Double) v[3], fechaLimite));
+            n.setTelefono((String) v[1]);
+            n.setFechaProgramada(fechaProgramada);
+            recordatorios.add(n);
+        }
+
+        // 3. Insertar en lote (las que ya tenían una PENDIENTE solo actualizan su texto)
+        int recordatoriosProgramados = notificacionDAO.crearNotificacionesLote(recordatorios);
+
+        // 4. Avanzar la etapa de cobranza
+        estadoCobranzaDAO.registrarRecordatorios(avisadas);
+        estadoCobranzaDAO.recalcular(sinDeuda);
+
         System.out.println("   📱 " + recordatoriosProgramados + " recordatorios programados.");
     }
 
@@ -287,28 +406,25 @@ public class CobrosAutomaticoService {
 
         int plazoDias = configDAO.obtenerValorInt(ConfiguracionDAO.PLAZO_PAGO_DIAS, 21);
 
-        // Buscar facturas que YA pasaron el plazo de ultimátum (agrupado por suscripción para evitar duplicados)
-        String sql = "SELECT f.id_suscripcion, MAX(f.monto_total) as monto_total, MAX(f.periodo_mes) as periodo_mes, " +
-                "s.ip_cliente, c.nombres, c.apellidos, s.codigo_contrato " +
-                "FROM factura f " +
-                "JOIN suscripcion s ON f.id_suscripcion = s.id_suscripcion " +
-                "JOIN cliente c ON s.id_cliente = c.id_cliente " +
-                "WHERE f.id_estado = 1 " + // PENDIENTE
-                "AND s.activo = 1 " +
-                "AND DATEDIFF(CURRENT_DATE(), f.fecha_vencimiento) > ? " +
-                "AND EXISTS (" + // Ya se envió el ultimátum
-                "   SELECT 1 FROM notificacion_pendiente np " +
-                "   WHERE np.id_suscripcion = f.id_suscripcion " +
-                "   AND np.tipo = 'ULTIMATUM' AND np.estado = 'ENVIADO'" +
-                ") " +
-                "GROUP BY f.id_suscripcion, s.ip_cliente, c.nombres, c.apellidos, s.codigo_contrato";
-
-        int cortesEjecutados = 0;
+        // Ultimátums marcados como enviados desde la última pasada: RECORDADO → ULTIMATUM
+        int sincronizados = estadoCobranzaDAO.sincronizarUltimatumsEnviados();
+        if (sincronizados > 0) {
+            System.out.println("   📨 " + sincronizados + " suscripciones pasan a ULTIMATUM");
+        }
+
+        // Suscripciones en ULTIMATUM cuyo plazo ya pasó (una fila por suscripción)
+        String sql = SQL_ULTIMATUMS_VENCIDOS;
+
+        List<EjecutorCortes.Corte> cortes = new ArrayList<>();
+        List<Integer> sinDeuda = new ArrayList<>();
+        List<Integer> yaInactivas = new ArrayList<>();
 
         try (Connection conn = Conexion.getConexion();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            ps.setInt(1, plazoDias);
+            LocalDate hoy = LocalDate.now();
+            ps.setDate(1, java.sql.Date.valueOf(hoy.minusDays(plazoDias)));
+            ps.setDate(2, java.sql.Date.valueOf(hoy));
             ResultSet rs = ps.executeQuery();
 
             while (rs.next()) {
@@ -316,18 +432,16 @@ public class CobrosAutomaticoService {
                 String ipCliente = rs.getString("ip_cliente");
                 String nombreCliente = rs.getString("nombres") + " " + rs.getString("apellidos");
 
-                // Intentar cortar el servicio
-                if (ipCliente != null && !ipCliente.isEmpty()) {
-                    boolean cortado = routerService.cortarServicio(ipCliente);
-
-                    if (cortado) {
-                        // Marcar suscripción como inactiva (cortada)
-                        suscripcionDAO.cambiarEstado(idSuscripcion, 0);
-                        cortesEjecutados++;
-                        System.out.println("   🔴 Cortado: " + nombreCliente + " (" + ipCliente + ")");
-                    } else {
-                        System.out.println("   ⚠️ Corte fallido (sin router): " + nombreCliente);
+                if (!rs.getBoolean("con_deuda")) {
+                    sinDeuda.add(idSuscripcion); // Pagó (o la deuda cambió) fuera de este servicio
+                } else if (rs.getInt("activo") != 1) {
+                    // Cortada a mano: se registra el corte. Una baja (fecha_cancelacion)
+                    // no es un corte de cobranza y no debe reconectarse con un pago.
+                    if (rs.getDate("fecha_cancelacion") == null) {
+                        yaInactivas.add(idSuscripcion);
                     }
+                } else if (ipCliente != null && !ipCliente.isEmpty()) {
+                    cortes.add(new EjecutorCortes.Corte(idSuscripcion, ipCliente, nombreCliente));
                 } else {
                     System.out.println("   ⚠️ Sin IP configurada: " + nombreCliente);
                 }
@@ -335,120 +449,124 @@ public class CobrosAutomaticoService {
 
         } catch (SQLException e) {
             e.printStackTrace();
+            return;
+        }
+
+        // Cortar en paralelo (limitado por router) y aplicar resultados en bloque
+        int cortesPorRouter = configDAO.obtenerValorInt(ConfiguracionDAO.CORTES_POR_ROUTER, 4);
+        EjecutorCortes.ResultadoCortes resultado = new EjecutorCortes(routerService, suscripcionDAO, alertaDAO,
+                cortesPorRouter).ejecutar(cortes);
+
+        // Etapa de cobranza: las cortadas ya pasaron a CORTADO junto con
+        // activo = 0 (EjecutorCortes); faltan las cortadas a mano
+        estadoCobranzaDAO.registrarCortes(yaInactivas);
+        estadoCobranzaDAO.recalcular(sinDeuda);
+
+        for (EjecutorCortes.Corte c : resultado.cortados) {
+            System.out.println("   🔴 Cortado: " + c.nombreCliente + " (" + c.ipCliente + ")");
+        }
+        for (EjecutorCortes.Corte c : resultado.fallidos) {
+            System.out.println("   ⚠️ Corte fallido: " + c.nombreCliente + " - " + c.error);
+        }
+        if (!resultado.pagados.isEmpty()) {
+            System.out.println("   🟢 " + resultado.pagados.size() + " pagaron durante la corrida (no quedan cortados)");
+        }
+        if (!resultado.saltados.isEmpty()) {
+            System.out.println("   ⏳ " + resultado.saltados.size() + " cortes quedan para la siguiente corrida "
+                    + "(tiempo máximo alcanzado)");
+        }
+        if (!resultado.sinVerificar.isEmpty()) {
+            System.out.println("   ⏳ " + resultado.sinVerificar.size() + " cortes quedan para la siguiente corrida "
+                    + "(no se pudo confirmar la deuda en la BD)");
         }
 
-        System.out.println("   🔴 " + cortesEjecutados + " cortes ejecutados.");
+        System.out.println("   🔴 " + resultado.cortados.size() + " cortes ejecutados ("
+                + resultado.fallidos.size() + " fallidos, " + resultado.alertasCreadas + " alertas, "
+                + resultado.duracionMs + " ms).");
     }
 
     /**
-     * Procesa la cola de notificaciones pendientes y las envía.
+     * Compara la lista MOROSOS del router con la base de datos y aplica solo
+     * las diferencias (ver ReconciliadorMorosos).
      */
-    public void procesarNotificacionesPendientes() {
-    System.out.println("\n📤 WhatsApp automático: DESHABILITADO (usar CSV manual)");
-    return;
-    
-    /* CÓDIGO ORIGINAL PRESERVADO
-    System.out.println("\n📤 Procesando notificaciones pendientes...");
-
-    // MODO PRUEBA: Notificaciones habilitadas SOLO para DNI 44085317
-    // Fecha de activación general: 10 de Enero 2026
-    LocalDate fechaActivacion = LocalDate.of(2026, 1, 10);
-    boolean modoPrueba = LocalDate.now().isBefore(fechaActivacion);
-
-    if (modoPrueba) {
-        System.out.println("   🧪 MODO PRUEBA ACTIVO");
-        System.out.println("   ⏳ Notificaciones generales deshabilitadas hasta " + fechaActivacion);
-        System.out.println("   ✅ Solo se enviarán notificaciones al cliente DNI: 44085317");
-    }
+    public void reconciliarMorosos() {
+        System.out.println("\n🔁 Reconciliando lista MOROSOS del router...");
 
-    List<NotificacionPendiente> pendientes = notificacionDAO.obtenerPendientes();
-
-    int enviados = 0;
-    int sinTelefono = 0;
-    int errores = 0;
-    int filtrados = 0;
-
-    for (NotificacionPendiente n : pendientes) {
-        // FILTRO DE PRUEBA: Solo enviar a DNI 44085317 si estamos en modo prueba
-        if (modoPrueba) {
-            // Obtener DNI del cliente desde la suscripción
-            String dniCliente = suscripcionDAO.obtenerDNICliente(n.getIdSuscripcion());
-            if (!"44085317".equals(dniCliente)) {
-                filtrados++;
-                continue; // Saltar este cliente
-            }
-            System.out.println("   🎯 Cliente de prueba detectado (DNI: 44085317) - Enviando notificación...");
+        int comandosPorRouter = configDAO.obtenerValorInt(ConfiguracionDAO.CORTES_POR_ROUTER, 4);
+        ReconciliadorMorosos.ResultadoReconciliacion resultado = new ReconciliadorMorosos(routerService,
+                estadoCobranzaDAO, alertaDAO, comandosPorRouter).reconciliar();
+        if (resultado == null) {
+            return;
         }
 
-        if (!n.tieneTelefono()) {
-            notificacionDAO.marcarSinTelefono(n.getIdNotificacion());
-            alertaDAO.crearAlertaSinTelefono(
-                    n.getIdSuscripcion(),
-                    n.getNombreCliente(),
-                    n.getCodigoContrato());
-            sinTelefono++;
-            continue;
+        for (String ip : resultado.agregadas) {
+            System.out.println("   🔴 Faltaba en MOROSOS, agregada: " + ip);
         }
-
-        boolean exito = whatsAppService.enviarMensaje(n.getTelefono(), n.getMensaje());
-
-        if (exito) {
-            notificacionDAO.marcarComoEnviada(n.getIdNotificacion());
-            enviados++;
-
-            // Si era RECORDATORIO, programar ULTIMÁTUM
-            if (n.getTipo() == TipoNotificacion.RECORDATORIO) {
-                int plazoDias = configDAO.obtenerValorInt(ConfiguracionDAO.PLAZO_PAGO_DIAS, 21);
-                programarUltimatum(n.getIdSuscripcion(), n.getNombreCliente(),
-                        n.getTelefono(), plazoDias);
-            }
-        } else {
-            notificacionDAO.marcarComoError(n.getIdNotificacion());
-            errores++;
+        for (String ip : resultado.quitadas) {
+            System.out.println("   🟢 Sobraba en MOROSOS, quitada: " + ip);
+        }
+        for (String ip : resultado.fallidas) {
+            System.out.println("   ⚠️ No se pudo corregir: " + ip);
+        }
+        if (!resultado.manualesActivas.isEmpty()) {
+            System.out.println("   ℹ️ " + resultado.manualesActivas.size()
+                    + " clientes activos están en MOROSOS por entradas manuales (no se tocan)");
         }
-    }
 
-    System.out.println("   ✅ Enviados: " + enviados);
-    if (modoPrueba && filtrados > 0) {
-        System.out.println("   🚫 Filtrados (modo prueba): " + filtrados);
+        System.out.println("   " + (resultado.hayDiferencias() ? "⚠️ Diferencias corregidas" : "✅ Sin diferencias")
+                + " (" + resultado.enRouter + " en router, " + resultado.esperadas + " esperadas, "
+                + resultado.duracionMs + " ms).");
     }
-    System.out.println("   📵 Sin teléfono: " + sinTelefono);
-    System.out.println("   ❌ Errores: " + errores);
-    FIN CÓDIGO ORIGINAL */
-}
 
     /**
-     * Programa una notificación de recordatorio.
+     * Procesa la cola de notificaciones pendientes y las envía
+     * (ver DespachadorNotificaciones).
      */
-    private void programarNotificacionRecordatorio(int idSuscripcion, String nombreCliente,
-            String telefono, String periodo, double monto, LocalDate fechaLimite) {
-
-        if (notificacionDAO.existeNotificacionPendiente(idSuscripcion, TipoNotificacion.RECORDATORIO)) {
-            return; // Ya existe una pendiente
+    public void procesarNotificacionesPendientes() {
+        if (!configDAO.obtenerValorBoolean(ConfiguracionDAO.NOTIFICACIONES_AUTOMATICAS)) {
+            System.out.println("\n📤 WhatsApp automático: DESHABILITADO (usar CSV manual)");
+            return;
         }
 
-        String mensaje = mensajeService.generarRecordatorio(nombreCliente, periodo, monto, fechaLimite);
+        System.out.println("\n📤 Procesando notificaciones pendientes...");
 
-        NotificacionPendiente n = new NotificacionPendiente();
-        n.setIdSuscripcion(idSuscripcion);
-        n.setTipo(TipoNotificacion.RECORDATORIO);
-        n.setMensaje(mensaje);
-        n.setTelefono(telefono);
-        n.setFechaProgramada(java.sql.Date.valueOf(LocalDate.now()));
+        // Se reclaman por lotes con lease: otra instancia o una corrida manual
+        // simultánea no repite mensajes
+        int hilos = configDAO.obtenerValorInt(ConfiguracionDAO.ENVIO_HILOS, 4);
+        DespachadorNotificaciones.ResultadoDespacho resultado = new DespachadorNotificaciones(whatsAppService,
+                notificacionDAO, alertaDAO, hilos).despacharPendientes();
 
-        notificacionDAO.crearNotificacion(n);
+        // Recordatorios enviados → programar ULTIMÁTUM (en lote; sin duplicar los PENDIENTES)
+        int plazoDias = configDAO.obtenerValorInt(ConfiguracionDAO.PLAZO_PAGO_DIAS, 21);
+        List<NotificacionPendiente> ultimatums = new ArrayList<>();
+        synchronized (resultado.enviadas) {
+            for (NotificacionPendiente n : resultado.enviadas) {
+                if (n.getTipo() == TipoNotificacion.RECORDATORIO) {
+                    ultimatums.add(construirUltimatum(n.getIdSuscripcion(), n.getNombreCliente(),
+                            n.getTelefono(), plazoDias));
+                }
+            }
+        }
+        int programados = notificacionDAO.crearNotificacionesLote(ultimatums);
+
+        System.out.println("   ✅ Enviados: " + resultado.enviadas.size() + " (" + resultado.duracionMs + " ms, "
+                + hilos + " hilos)");
+        if (programados > 0) {
+            System.out.println("   ⏰ Ultimátums programados: " + programados);
+        }
+        System.out.println("   📵 Sin teléfono: " + resultado.sinTelefono.size());
+        if (resultado.agrupadas.get() > 0) {
+            System.out.println("   🔗 Agrupadas con otro mensaje al mismo número: " + resultado.agrupadas.get());
+        }
+        System.out.println("   ❌ Errores: " + resultado.errores.get() + " (se reintentan con espera)");
+        System.out.println("   📅 Cola: " + resultado.plan.describir());
     }
 
     /**
-     * Programa una notificación de ultimátum.
+     * Arma la notificación de ultimátum que sigue a un recordatorio enviado.
      */
-    private void programarUltimatum(int idSuscripcion, String nombreCliente,
+    private NotificacionPendiente construirUltimatum(int idSuscripcion, String nombreCliente,
             String telefono, int diasDespues) {
-
-        if (notificacionDAO.existeNotificacionPendiente(idSuscripcion, TipoNotificacion.ULTIMATUM)) {
-            return;
-        }
-
         LocalDate fechaCorte = LocalDate.now().plusDays(2); // Corte 24-48h después
         String mensaje = mensajeService.generarUltimatum(nombreCliente, "Periodo pendiente", 0, fechaCorte);
 
@@ -458,53 +576,19 @@ public class CobrosAutomaticoService {
         n.setMensaje(mensaje);
         n.setTelefono(telefono);
         n.setFechaProgramada(java.sql.Date.valueOf(LocalDate.now().plusDays(diasDespues)));
-
-        notificacionDAO.crearNotificacion(n);
+        return n;
     }
 
     /**
-     * Procesa un pago recibido.
-     * Reactiva el servicio si estaba cortado.
+     * Procesa un pago recibido por fuera de PagoDAO.
+     * Publica un evento de pago: ReconexionWorker cancela las notificaciones
+     * pendientes y reactiva el servicio si estaba cortado y ya no hay deuda.
      */
     public void procesarPago(int idSuscripcion, double monto) {
         System.out.println("💰 Procesando pago para suscripción: " + idSuscripcion);
 
-        // 1. Cancelar notificaciones pendientes
-        notificacionDAO.cancelarPendientes(idSuscripcion);
-
-        // 2. Verificar si estaba cortado y reconectar
-        String sql = "SELECT s.activo, s.ip_cliente, c.nombres, c.apellidos " +
-                "FROM suscripcion s JOIN cliente c ON s.id_cliente = c.id_cliente " +
-                "WHERE s.id_suscripcion = ?";
-
-        try (Connection conn = Conexion.getConexion();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, idSuscripcion);
-            ResultSet rs = ps.executeQuery();
-
-            if (rs.next()) {
-                int activo = rs.getInt("activo");
-                String ipCliente = rs.getString("ip_cliente");
-                String nombreCliente = rs.getString("nombres") + " " + rs.getString("apellidos");
-
-                if (activo == 0 && ipCliente != null && !ipCliente.isEmpty()) {
-                    // Estaba cortado, reconectar
-                    boolean reconectado = routerService.reconectarServicio(ipCliente);
-
-                    if (reconectado) {
-                        suscripcionDAO.cambiarEstado(idSuscripcion, 1);
-                        System.out.println("🟢 Servicio reconectado: " + nombreCliente);
-
-                        // Opcional: Enviar mensaje de reconexión
-                        // String msgReconexion = mensajeService.generarAvisoReconexion(nombreCliente);
-                        // whatsAppService.enviarMensaje(telefono, msgReconexion);
-                    }
-                }
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (eventoPagoDAO.publicar(idSuscripcion)) {
+            System.out.println("   📥 Pago en cola de reconexión");
         }
     }
 
@@ -0,0 +1,315 @@
+package servicio;
+
+import DAO.AlertaDAO;
+import DAO.NotificacionDAO;
+import modelo.NotificacionPendiente;
+import modelo.NotificacionPendiente.EstadoNotificacion;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envía la cola de notificaciones con varios hilos.
+ *
+ * - Cada hilo tiene su propia cola acotada (CAPACIDAD_POR_HILO). El
+ *   teléfono decide la cola, así los mensajes a un mismo número salen en
+ *   orden y nunca en paralelo.
+ * - Quien alimenta se bloquea cuando la cola está llena (no se cargan más
+ *   mensajes de los que se pueden enviar).
+ * - El ritmo lo pone RitmoProveedor, compartido por todos los hilos: el
+ *   total por hora depende del proveedor, no de esperar cada envío.
+ * - Los estados (ENVIADO / ERROR / SIN_TELEFONO) los escribe por lotes
+ *   EscritorEstados en segundo plano; al terminar la corrida se vacía.
+ *   Antes de cada envío el intento queda en la bitácora local
+ *   (BitacoraEnvios). Un ERROR se reintenta en una corrida posterior con espera exponencial
+ *   (NotificacionDAO.marcarEstadoLote).
+ * - Antes de encolar, las notificaciones de una ventana (VENTANA_AGRUPACION)
+ *   dirigidas al mismo teléfono se juntan en un solo mensaje
+ *   (MensajeTemplateService.combinar): un envío en vez de varios.
+ * - El cupo diario del proveedor lo reparte PlanificadorEnvios: ULTIMATUM y
+ *   CORTE antes que RECORDATORIO.
+ * - despacharPendientes reclama la cola por lotes con lease
+ *   (NotificacionDAO.reclamarPendientes), así varias instancias pueden
+ *   enviar a la vez sin repetir mensajes.
+ */
+public class DespachadorNotificaciones {
+
+    private static final int CAPACIDAD_POR_HILO = 50;
+    private static final int LOTE_RECLAMO = 100;
+    // Notificaciones que se miran juntas para agrupar por teléfono (un lote de reclamo)
+    private static final int VENTANA_AGRUPACION = LOTE_RECLAMO;
+    // Tiempo de envío supuesto por mensaje para dimensionar el lease
+    private static final int SEGUNDOS_POR_MENSAJE = 3;
+
+    // Marca de fin para cada cola
+    private static final Envio FIN = new Envio(null);
+
+    private final IWhatsAppService whatsAppService;
+    private final NotificacionDAO notificacionDAO;
+    private final AlertaDAO alertaDAO;
+    private final EscritorEstados escritor;
+    private final MensajeTemplateService mensajeService = new MensajeTemplateService();
+    private final int hilos;
+
+    public DespachadorNotificaciones(IWhatsAppService whatsAppService, NotificacionDAO notificacionDAO,
+            AlertaDAO alertaDAO, int hilos) {
+        this.whatsAppService = whatsAppService;
+        this.notificacionDAO = notificacionDAO;
+        this.alertaDAO = alertaDAO;
+        this.escritor = EscritorEstados.getInstancia();
+        this.hilos = Math.max(1, hilos);
+    }
+
+    /**
+     * Reclama y envía la cola PENDIENTE según el plan de PlanificadorEnvios:
+     * primero las de mayor prioridad y, de cada fase, como máximo su límite
+     * (lo demás queda PENDIENTE para otra corrida). Se reclama un lote
+     * nuevo solo cuando el anterior ya entró en las colas, y cada reclamo
+     * sigue (keyset) donde terminó el anterior: en memoria nunca hay más de
+     * un lote más las colas, sin importar el tamaño de la cola en BD.
+     * Los leases vencidos que quedan atrás se toman en la siguiente corrida.
+     */
+    public ResultadoDespacho despacharPendientes() {
+        PlanificadorEnvios.Plan plan = PlanificadorEnvios.planificar(whatsAppService,
+                notificacionDAO.contarPendientesPorTipo(), java.time.LocalDateTime.now());
+
+        // El lease cubre lo que puede estar reclamado sin enviar: el lote
+        // actual más las colas llenas
+        int enEspera = LOTE_RECLAMO + CAPACIDAD_POR_HILO * hilos;
+        int segundosLease = 300 + enEspera * SEGUNDOS_POR_MENSAJE;
+
+        ResultadoDespacho resultado = despachar(() -> new java.util.Iterator<NotificacionPendiente>() {
+            private final java.util.Iterator<PlanificadorEnvios.Fase> fases = plan.fases.iterator();
+            private PlanificadorEnvios.Fase fase = null;
+            private int reclamadasFase = 0;
+            private java.util.Iterator<NotificacionPendiente> lote = Collections.emptyIterator();
+            private NotificacionPendiente ultima = null;
+            private boolean agotada = true;
+
+            @Override
+            public boolean hasNext() {
+                while (!lote.hasNext()) {
+                    if (agotada || reclamadasFase >= fase.limite) {
+                        if (!fases.hasNext()) {
+                            return false;
+                        }
+                        fase = fases.next();
+                        reclamadasFase = 0;
+                        ultima = null;
+                        agotada = false;
+                    }
+                    List<NotificacionPendiente> reclamadas = notificacionDAO.reclamarPendientes(
+                            Math.min(LOTE_RECLAMO, fase.limite - reclamadasFase), segundosLease, fase.tipos, ultima);
+                    agotada = reclamadas.isEmpty();
+                    if (!agotada) {
+                        ultima = reclamadas.get(reclamadas.size() - 1);
+                        reclamadasFase += reclamadas.size();
+                    }
+                    // Ya enviadas con el estado aún en EscritorEstados: el
+                    // reclamo solo les renovó el lease
+                    reclamadas.removeIf(n -> escritor.tieneSinEscribir(n.getIdNotificacion()));
+                    lote = reclamadas.iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public NotificacionPendiente next() {
+                if (!hasNext()) {
+                    throw new java.util.NoSuchElementException();
+                }
+                return lote.next();
+            }
+        });
+        resultado.plan = plan;
+        return resultado;
+    }
+
+    /**
+     * Envía las notificaciones y escribe sus estados.
+     */
+    public ResultadoDespacho despachar(Iterable<NotificacionPendiente> pendientes) {
+        Corrida corrida = new Corrida();
+        long inicio = System.currentTimeMillis();
+
+        List<BlockingQueue<Envio>> colas = new ArrayList<>();
+        for (int i = 0; i < hilos; i++) {
+            colas.add(new ArrayBlockingQueue<>(CAPACIDAD_POR_HILO));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> trabajadores = new ArrayList<>();
+        try {
+            for (BlockingQueue<Envio> cola : colas) {
+                trabajadores.add(pool.submit(() -> atender(cola, corrida)));
+            }
+
+            try {
+                // Teléfono normalizado → envío, en orden de llegada
+                Map<String, Envio> ventana = new LinkedHashMap<>();
+                int enVentana = 0;
+                for (NotificacionPendiente n : pendientes) {
+                    if (!n.tieneTelefono()) {
+                        corrida.sinTelefono(n);
+                        continue;
+                    }
+                    ventana.computeIfAbsent(WhatsappService.normalizarTelefono(n.getTelefono()), Envio::new)
+                            .notificaciones.add(n);
+                    if (++enVentana >= VENTANA_AGRUPACION) {
+                        encolar(ventana, colas, corrida);
+                        enVentana = 0;
+                    }
+                }
+                encolar(ventana, colas, corrida);
+            } finally {
+                for (BlockingQueue<Envio> cola : colas) {
+                    cola.put(FIN);
+                }
+            }
+
+            for (Future<?> t : trabajadores) {
+                t.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        } catch (Exception e) {
+            System.err.println("❌ Error en el despacho de notificaciones: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
+            if (!escritor.vaciar()) {
+                System.err.println("   ⚠️ Estados pendientes de escribir: " + escritor.getPendientes()
+                        + " (EscritorEstados reintenta)");
+            }
+        }
+
+        corrida.resultado.duracionMs = System.currentTimeMillis() - inicio;
+        return corrida.resultado;
+    }
+
+    /**
+     * Arma el mensaje de cada teléfono de la ventana, lo pone en su cola y
+     * vacía la ventana.
+     */
+    private void encolar(Map<String, Envio> ventana, List<BlockingQueue<Envio>> colas, Corrida corrida)
+            throws InterruptedException {
+        for (Envio envio : ventana.values()) {
+            List<NotificacionPendiente> grupo = envio.notificaciones;
+            if (grupo.size() > 1) {
+                // Lo más urgente primero (CORTE, ULTIMATUM, RECORDATORIO)
+                grupo.sort(Comparator.comparing(NotificacionPendiente::getTipo).reversed());
+                corrida.resultado.agrupadas.addAndGet(grupo.size() - 1);
+            }
+            List<String> mensajes = new ArrayList<>();
+            for (NotificacionPendiente n : grupo) {
+                mensajes.add(n.getMensaje());
+            }
+            envio.mensaje = mensajeService.combinar(mensajes);
+            colas.get(colaDe(envio.telefono)).put(envio);
+        }
+        ventana.clear();
+    }
+
+    /**
+     * Envía lo que llega a una cola hasta recibir FIN.
+     */
+    private void atender(BlockingQueue<Envio> cola, Corrida corrida) {
+        RitmoProveedor ritmo = RitmoProveedor.de(whatsAppService);
+        try {
+            Envio envio;
+            while ((envio = cola.take()) != FIN) {
+                NotificacionPendiente primera = envio.notificaciones.get(0);
+                boolean exito;
+                try {
+                    ritmo.esperarTurno();
+                    for (NotificacionPendiente n : envio.notificaciones) {
+                        escritor.registrarIntento(n.getIdNotificacion());
+                    }
+                    String idMensaje = whatsAppService.enviarConId(primera.getTelefono(), envio.mensaje);
+                    exito = idMensaje != null;
+                    if (exito && !idMensaje.isEmpty()) {
+                        for (NotificacionPendiente n : envio.notificaciones) {
+                            escritor.registrarIdMensaje(n.getIdNotificacion(), idMensaje);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    System.err.println("   ❌ Error enviando a " + primera.getNombreCliente() + ": " + e.getMessage());
+                    exito = false;
+                }
+                for (NotificacionPendiente n : envio.notificaciones) {
+                    corrida.registrar(n, exito);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cola que atiende un teléfono normalizado (mismo número → misma cola).
+     */
+    private int colaDe(String telefono) {
+        return Math.floorMod(telefono.hashCode(), hilos);
+    }
+
+    /**
+     * Un mensaje por enviar: una o varias notificaciones al mismo teléfono.
+     */
+    private static class Envio {
+        final String telefono;
+        final List<NotificacionPendiente> notificaciones = new ArrayList<>();
+        String mensaje;
+
+        Envio(String telefono) {
+            this.telefono = telefono;
+        }
+    }
+
+    /**
+     * Resultado de una corrida; los estados van a EscritorEstados.
+     */
+    private class Corrida {
+        final ResultadoDespacho resultado = new ResultadoDespacho();
+
+        void registrar(NotificacionPendiente n, boolean exito) {
+            if (exito) {
+                resultado.enviadas.add(n);
+            } else {
+                resultado.errores.incrementAndGet();
+            }
+            escritor.registrar(n.getIdNotificacion(), exito ? EstadoNotificacion.ENVIADO : EstadoNotificacion.ERROR);
+        }
+
+        void sinTelefono(NotificacionPendiente n) {
+            resultado.sinTelefono.add(n);
+            alertaDAO.crearAlertaSinTelefono(n.getIdSuscripcion(), n.getNombreCliente(), n.getCodigoContrato());
+            escritor.registrar(n.getIdNotificacion(), EstadoNotificacion.SIN_TELEFONO);
+        }
+    }
+
+    /**
+     * Resultado de un despacho.
+     */
+    public static class ResultadoDespacho {
+        public final List<NotificacionPendiente> enviadas = Collections.synchronizedList(new ArrayList<>());
+        public final List<NotificacionPendiente> sinTelefono = new ArrayList<>();
+        public final AtomicInteger errores = new AtomicInteger();
+        // Notificaciones que salieron dentro del mensaje de otra (envíos ahorrados)
+        public final AtomicInteger agrupadas = new AtomicInteger();
+        // Solo en despacharPendientes
+        public PlanificadorEnvios.Plan plan;
+        public long duracionMs = 0;
+    }
+}
@@ -0,0 +1,256 @@
+package servicio;
+
+import DAO.AlertaDAO;
+import DAO.SuscripcionDAO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ejecuta cortes de servicio en paralelo.
+ *
+ * - Los comandos al router corren en un pool de hilos, pero cada router
+ *   acepta como máximo "cortes_por_router" comandos a la vez (Semaphore por
+ *   IRouterService.getIdRouter, compartido entre corridas).
+ * - Justo antes de cada comando se vuelve a consultar la deuda: quien pagó
+ *   desde que se armó la lista no se corta (PAGADO).
+ * - Los resultados se aplican al final en bloque: un UPDATE para las
+ *   suscripciones cortadas (activo = 0 y CORTADO en la misma transacción)
+ *   y un batch de alertas CORTE_FALLIDO. El UPDATE solo desactiva las que
+ *   siguen con deuda; las que pagaron entre el comando y el UPDATE se
+ *   reconectan en el router en ese momento. Si el UPDATE falla, todos los
+ *   cortes se deshacen en el router y quedan como fallidos (con alerta):
+ *   en la BD siguen activas y la siguiente corrida los vuelve a intentar.
+ * - Si la corrida supera TIEMPO_MAXIMO_MS, los cortes que aún no empezaron
+ *   se saltan y quedan para la siguiente hora (siguen con activo = 1). Lo
+ *   mismo si no se pudo confirmar la deuda (SIN_VERIFICAR).
+ */
+public class EjecutorCortes {
+
+    // Tiempo máximo para lanzar cortes dentro de una corrida horaria
+    private static final long TIEMPO_MAXIMO_MS = TimeUnit.MINUTES.toMillis(10);
+
+    // Un semáforo por router, compartido por todas las instancias
+    private static final Map<String, Semaphore> SEMAFOROS = new ConcurrentHashMap<>();
+
+    private final IRouterService routerService;
+    private final SuscripcionDAO suscripcionDAO;
+    private final AlertaDAO alertaDAO;
+    private final int cortesPorRouter;
+
+    public EjecutorCortes(IRouterService routerService, SuscripcionDAO suscripcionDAO, AlertaDAO alertaDAO,
+            int cortesPorRouter) {
+        this.routerService = routerService;
+        this.suscripcionDAO = suscripcionDAO;
+        this.alertaDAO = alertaDAO;
+        this.cortesPorRouter = Math.max(1, cortesPorRouter);
+    }
+
+    /**
+     * Ejecuta los cortes y aplica los resultados en la base de datos.
+     */
+    public ResultadoCortes ejecutar(List<Corte> cortes) {
+        ResultadoCortes resultado = new ResultadoCortes();
+        if (cortes.isEmpty()) {
+            return resultado;
+        }
+
+        long inicio = System.currentTimeMillis();
+        long limite = inicio + TIEMPO_MAXIMO_MS;
+        Semaphore semaforo = semaforoRouter(routerService, cortesPorRouter);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(cortesPorRouter, cortes.size()));
+        List<Future<EstadoCorte>> futuros = new ArrayList<>();
+        try {
+            for (Corte corte : cortes) {
+                futuros.add(pool.submit(() -> cortar(corte, semaforo, limite)));
+            }
+
+            // Recolectar en el orden original
+            for (int i = 0; i < cortes.size(); i++) {
+                Corte corte = cortes.get(i);
+                EstadoCorte estado;
+                try {
+                    estado = futuros.get(i).get();
+                } catch (Exception e) {
+                    corte.error = e.getMessage();
+                    estado = EstadoCorte.FALLIDO;
+                }
+                resultado.agregar(corte, estado);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // Aplicar en bloque
+        if (!resultado.cortados.isEmpty()) {
+            List<Integer> ids = new ArrayList<>();
+            for (Corte c : resultado.cortados) {
+                ids.add(c.idSuscripcion);
+            }
+            Set<Integer> desactivadas = suscripcionDAO.desactivarConDeudaLote(ids);
+            if (desactivadas != null) {
+                resultado.suscripcionesActualizadas = desactivadas.size();
+                revertirPagadas(resultado, desactivadas, semaforo);
+            } else {
+                revertirSinRegistrar(resultado, semaforo);
+            }
+        }
+        if (!resultado.fallidos.isEmpty()) {
+            List<Object[]> alertas = new ArrayList<>();
+            for (Corte c : resultado.fallidos) {
+                alertas.add(new Object[] { c.idSuscripcion, c.nombreCliente, c.error });
+            }
+            resultado.alertasCreadas = alertaDAO.crearAlertasCorteFallido(alertas);
+        }
+
+        resultado.duracionMs = System.currentTimeMillis() - inicio;
+        return resultado;
+    }
+
+    /**
+     * Cortes confirmados por el router cuya suscripción pagó antes del
+     * UPDATE (no quedó desactivada): se reconectan ya, porque en la BD
+     * siguen activas y ReconexionWorker no las va a tocar.
+     */
+    private void revertirPagadas(ResultadoCortes resultado, Set<Integer> desactivadas, Semaphore semaforo) {
+        for (java.util.Iterator<Corte> it = resultado.cortados.iterator(); it.hasNext();) {
+            Corte corte = it.next();
+            if (desactivadas.contains(corte.idSuscripcion)) {
+                continue;
+            }
+            it.remove();
+            resultado.pagados.add(corte);
+
+            if (!reconectar(corte, semaforo)) {
+                alertaDAO.crearAlertaReconexionFallo(corte.idSuscripcion, corte.nombreCliente,
+                        "Pagó mientras se ejecutaba el corte y el router no confirmó la reconexión");
+            }
+        }
+    }
+
+    /**
+     * El UPDATE de los cortes falló: en la BD siguen activas, así que se
+     * reconectan en el router (si no, la reconciliación las vería activas y
+     * la siguiente corrida las volvería a cortar) y pasan a fallidos.
+     */
+    private void revertirSinRegistrar(ResultadoCortes resultado, Semaphore semaforo) {
+        for (Corte corte : resultado.cortados) {
+            corte.error = reconectar(corte, semaforo)
+                    ? "No se pudo registrar el corte en la BD; se reconectó en el router"
+                    : "No se pudo registrar el corte en la BD y el router no confirmó la reconexión";
+            resultado.fallidos.add(corte);
+        }
+        resultado.cortados.clear();
+    }
+
+    private boolean reconectar(Corte corte, Semaphore semaforo) {
+        try {
+            semaforo.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            return routerService.reconectarServicio(corte.ipCliente);
+        } catch (Exception e) {
+            return false;
+        } finally {
+            semaforo.release();
+        }
+    }
+
+    /**
+     * Semáforo que limita los comandos simultáneos a un router. Lo comparten
+     * cortes y reconexiones (ReconexionWorker). Los permisos se fijan la
+     * primera vez que se pide el router.
+     */
+    static Semaphore semaforoRouter(IRouterService routerService, int permisos) {
+        return SEMAFOROS.computeIfAbsent(routerService.getIdRouter(), id -> new Semaphore(Math.max(1, permisos)));
+    }
+
+    /**
+     * Ejecuta un corte respetando el límite del router.
+     */
+    private EstadoCorte cortar(Corte corte, Semaphore semaforo, long limite) throws InterruptedException {
+        long espera = limite - System.currentTimeMillis();
+        if (espera <= 0 || !semaforo.tryAcquire(espera, TimeUnit.MILLISECONDS)) {
+            return EstadoCorte.SALTADO;
+        }
+        try {
+            // La lista se armó al inicio de la corrida: confirmar que la deuda sigue
+            Boolean conDeuda = suscripcionDAO.tieneDeudaPendiente(corte.idSuscripcion);
+            if (conDeuda == null) {
+                return EstadoCorte.SIN_VERIFICAR; // Sin BD: se intenta en la siguiente corrida
+            }
+            if (!conDeuda) {
+                return EstadoCorte.PAGADO;
+            }
+            if (routerService.cortarServicio(corte.ipCliente)) {
+                return EstadoCorte.CORTADO;
+            }
+            corte.error = "El router no confirmó el corte (" + routerService.getTipoRouter() + ")";
+            return EstadoCorte.FALLIDO;
+        } catch (Exception e) {
+            corte.error = e.getMessage();
+            return EstadoCorte.FALLIDO;
+        } finally {
+            semaforo.release();
+        }
+    }
+
+    public enum EstadoCorte {
+        CORTADO, FALLIDO, SALTADO, PAGADO, SIN_VERIFICAR
+    }
+
+    /**
+     * Suscripción a cortar.
+     */
+    public static class Corte {
+        public final int idSuscripcion;
+        public final String ipCliente;
+        public final String nombreCliente;
+        public String error;
+
+        public Corte(int idSuscripcion, String ipCliente, String nombreCliente) {
+            this.idSuscripcion = idSuscripcion;
+            this.ipCliente = ipCliente;
+            this.nombreCliente = nombreCliente;
+        }
+    }
+
+    /**
+     * Resultado de una corrida de cortes.
+     */
+    public static class ResultadoCortes {
+        public final List<Corte> cortados = new ArrayList<>();
+        public final List<Corte> fallidos = new ArrayList<>();
+        public final List<Corte> saltados = new ArrayList<>(); // Tiempo máximo alcanzado
+        public final List<Corte> sinVerificar = new ArrayList<>(); // No se pudo consultar la deuda
+        public final List<Corte> pagados = new ArrayList<>(); // Pagaron durante la corrida: no quedan cortados
+        public int suscripcionesActualizadas = 0;
+        public int alertasCreadas = 0;
+        public long duracionMs = 0;
+
+        void agregar(Corte corte, EstadoCorte estado) {
+            if (estado == EstadoCorte.CORTADO) {
+                cortados.add(corte);
+            } else if (estado == EstadoCorte.FALLIDO) {
+                fallidos.add(corte);
+            } else if (estado == EstadoCorte.PAGADO) {
+                pagados.add(corte);
+            } else if (estado == EstadoCorte.SIN_VERIFICAR) {
+                sinVerificar.add(corte);
+            } else {
+                saltados.add(corte);
+            }
+        }
+    }
+}
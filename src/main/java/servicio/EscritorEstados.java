@@ -0,0 +1,272 @@
+package servicio;
+
+import DAO.NotificacionDAO;
+import modelo.NotificacionPendiente.EstadoNotificacion;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escritor asíncrono de estados de notificaciones (uno por proceso).
+ *
+ * Los hilos de envío solo anotan el estado en memoria (registrar). Un hilo
+ * propio los escribe con NotificacionDAO.marcarEstadoLote cada INTERVALO_MS
+ * o apenas se juntan MAX_PENDIENTES, lo que ocurra primero: un UPDATE por
+ * estado y lote en vez de uno por mensaje.
+ *
+ * Si la escritura falla, el lote vuelve al buffer y se reintenta en la
+ * siguiente vuelta. Al detener el motor se vacía todo (Main lo detiene en
+ * su shutdown hook antes de cerrar el pool de conexiones).
+ *
+ * Mientras un resultado no llega a la base de datos la fila sigue
+ * PENDIENTE: tras un fallo se alarga su lease (NotificacionDAO.extenderLease)
+ * y DespachadorNotificaciones consulta tieneSinEscribir antes de enviar,
+ * para que un lease vencido no provoque un segundo envío.
+ *
+ * Cada estado se anota antes en BitacoraEnvios (archivo local, ruta en la
+ * variable BITACORA_ENVIOS): si el proceso muere con la base de datos
+ * caída, al arrancar se vuelven a escribir los que no llegaron.
+ */
+public class EscritorEstados {
+
+    private static final int MAX_PENDIENTES = 100;
+    private static final long INTERVALO_MS = 5000;
+    static final long INTERVALO_SYNC_MS = 1000;
+    private static final String RUTA_BITACORA = "bitacora-envios.dat";
+    // Lease de las filas con resultado sin escribir (se renueva en cada fallo)
+    private static final int SEGUNDOS_LEASE = 600;
+
+    private static EscritorEstados instancia;
+
+    private final NotificacionDAO notificacionDAO;
+    private final ScheduledExecutorService hilo;
+    private final BitacoraEnvios bitacora; // null si no se pudo abrir
+    private final Map<EstadoNotificacion, List<Integer>> buffer = new EnumMap<>(EstadoNotificacion.class);
+    private int cantidad = 0;
+    // id_notificacion → id del proveedor (se guarda con el mismo ritmo)
+    private final Map<Integer, String> idsMensaje = new HashMap<>();
+    // Con resultado anotado y aún no escrito (buffer + lote en curso)
+    private final Set<Integer> sinEscribir = new HashSet<>();
+
+    // Una escritura a la vez (hilo propio, vaciar() del despachador, cierre)
+    private final Object escritura = new Object();
+
+    private EscritorEstados(NotificacionDAO notificacionDAO, BitacoraEnvios bitacora) {
+        this.notificacionDAO = notificacionDAO;
+        this.bitacora = bitacora;
+        this.hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "escritor-estados");
+            t.setDaemon(true);
+            return t;
+        });
+        if (bitacora != null) {
+            recuperarBitacora();
+            hilo.scheduleWithFixedDelay(this::sincronizarBitacora, INTERVALO_SYNC_MS, INTERVALO_SYNC_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+        hilo.scheduleWithFixedDelay(this::vaciarEnSegundoPlano, INTERVALO_MS, INTERVALO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized EscritorEstados getInstancia() {
+        if (instancia == null) {
+            String ruta = System.getenv("BITACORA_ENVIOS");
+            instancia = new EscritorEstados(new NotificacionDAO(),
+                    BitacoraEnvios.abrir(ruta != null && !ruta.isBlank() ? ruta : RUTA_BITACORA));
+        }
+        return instancia;
+    }
+
+    /**
+     * Cierra la instancia si llegó a crearse (MotorAutomatizacion.detener).
+     */
+    public static synchronized void cerrarInstancia() {
+        if (instancia != null) {
+            instancia.cerrar();
+        }
+    }
+
+    /**
+     * Anota en la bitácora que la notificación está por enviarse.
+     */
+    public void registrarIntento(int idNotificacion) {
+        if (bitacora != null) {
+            bitacora.anotarIntento(idNotificacion);
+        }
+    }
+
+    /**
+     * Anota el id que el proveedor dio al mensaje de una notificación
+     * (para los callbacks de entrega). No toca la base de datos.
+     */
+    public void registrarIdMensaje(int idNotificacion, String idMensaje) {
+        synchronized (buffer) {
+            idsMensaje.put(idNotificacion, idMensaje);
+        }
+    }
+
+    /**
+     * Anota el nuevo estado de una notificación. No toca la base de datos.
+     */
+    public void registrar(int idNotificacion, EstadoNotificacion estado) {
+        boolean lleno;
+        synchronized (buffer) {
+            if (bitacora != null) {
+                bitacora.anotarResultado(idNotificacion, estado); // Mismo orden que el buffer
+            }
+            buffer.computeIfAbsent(estado, k -> new ArrayList<>()).add(idNotificacion);
+            sinEscribir.add(idNotificacion);
+            lleno = ++cantidad == MAX_PENDIENTES; // Tras un fallo espera la vuelta periódica
+        }
+        if (lleno) {
+            try {
+                hilo.execute(this::vaciarEnSegundoPlano);
+            } catch (RejectedExecutionException e) {
+                vaciar(); // Ya cerrado: escribir aquí mismo
+            }
+        }
+    }
+
+    /**
+     * Escribe ahora todo lo anotado.
+     *
+     * @return true si no quedó nada sin escribir
+     */
+    public boolean vaciar() {
+        synchronized (escritura) {
+            Map<EstadoNotificacion, List<Integer>> lote = new EnumMap<>(EstadoNotificacion.class);
+            Map<Integer, String> ids = new HashMap<>();
+            int marca;
+            synchronized (buffer) {
+                marca = bitacora != null ? bitacora.posicion() : 0;
+                if (cantidad == 0 && idsMensaje.isEmpty()) {
+                    if (bitacora != null) {
+                        bitacora.confirmarHasta(marca); // Solo intentos: ya no hacen falta
+                    }
+                    return true;
+                }
+                lote.putAll(buffer);
+                buffer.clear();
+                cantidad = 0;
+                ids.putAll(idsMensaje);
+                idsMensaje.clear();
+            }
+
+            // Los ids no van a la bitácora: si fallan se reintentan en la
+            // siguiente vuelta sin frenar la confirmación de los estados
+            if (!notificacionDAO.guardarIdsMensaje(ids)) {
+                synchronized (buffer) {
+                    ids.forEach(idsMensaje::putIfAbsent);
+                }
+            }
+
+            boolean todo = true;
+            for (Map.Entry<EstadoNotificacion, List<Integer>> e : lote.entrySet()) {
+                if (notificacionDAO.marcarEstadoLote(e.getValue(), e.getKey()) < 0) {
+                    devolver(e.getKey(), e.getValue());
+                    notificacionDAO.extenderLease(e.getValue(), SEGUNDOS_LEASE); // Si la BD responde
+                    todo = false;
+                } else {
+                    synchronized (buffer) {
+                        sinEscribir.removeAll(e.getValue());
+                    }
+                }
+            }
+            if (todo && bitacora != null) {
+                bitacora.confirmarHasta(marca);
+            }
+            return todo;
+        }
+    }
+
+    /**
+     * Detiene el hilo y escribe lo que quede.
+     */
+    public void cerrar() {
+        hilo.shutdown();
+        if (!vaciar()) {
+            System.err.println("❌ EscritorEstados: " + getPendientes()
+                    + " estados de notificación quedaron sin escribir"
+                    + (bitacora != null ? " (quedan en la bitácora para el próximo arranque)" : ""));
+        }
+        if (bitacora != null) {
+            bitacora.cerrar();
+        }
+    }
+
+    /**
+     * true si el resultado de la notificación está anotado pero aún no se
+     * escribió: su fila sigue PENDIENTE y no hay que volver a enviarla.
+     */
+    public boolean tieneSinEscribir(int idNotificacion) {
+        synchronized (buffer) {
+            return sinEscribir.contains(idNotificacion);
+        }
+    }
+
+    public int getPendientes() {
+        synchronized (buffer) {
+            return cantidad;
+        }
+    }
+
+    private void vaciarEnSegundoPlano() {
+        try {
+            if (!vaciar()) {
+                System.err.println("⚠️ EscritorEstados: no se pudo escribir, se reintenta en "
+                        + (INTERVALO_MS / 1000) + "s (" + getPendientes() + " pendientes)");
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error en EscritorEstados: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Resultados que quedaron en la bitácora sin llegar a la base de datos
+     * (corrida anterior): vuelven al buffer para escribirse.
+     */
+    private void recuperarBitacora() {
+        List<Integer> inciertos = bitacora.intentosSinResultado();
+        if (!inciertos.isEmpty()) {
+            // Siguen PENDIENTES: al vencer su lease se vuelven a enviar
+            System.out.println("⚠️ Bitácora: " + inciertos.size()
+                    + " envíos interrumpidos sin resultado (se reintentarán)");
+        }
+        Map<Integer, EstadoNotificacion> resultados = bitacora.resultadosSinConfirmar();
+        if (resultados.isEmpty()) {
+            return;
+        }
+        synchronized (buffer) {
+            for (Map.Entry<Integer, EstadoNotificacion> e : resultados.entrySet()) {
+                buffer.computeIfAbsent(e.getValue(), k -> new ArrayList<>()).add(e.getKey());
+                sinEscribir.add(e.getKey());
+                cantidad++;
+            }
+        }
+        notificacionDAO.extenderLease(resultados.keySet(), SEGUNDOS_LEASE); // Hasta la primera escritura
+        System.out.println("🔁 Bitácora: " + resultados.size() + " estados sin escribir de la corrida anterior");
+    }
+
+    private void sincronizarBitacora() {
+        try {
+            bitacora.sincronizar();
+        } catch (Exception e) {
+            System.err.println("❌ Error sincronizando la bitácora de envíos: " + e.getMessage());
+        }
+    }
+
+    // Lote fallido: vuelve al buffer para el siguiente intento
+    private void devolver(EstadoNotificacion estado, List<Integer> ids) {
+        synchronized (buffer) {
+            buffer.computeIfAbsent(estado, k -> new ArrayList<>()).addAll(ids);
+            cantidad += ids.size();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package servicio;
+
+import DAO.PagoDAO;
+import bd.PoolConexiones;
+import modelo.FacturaNueva;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generación de facturas repartida en particiones por rango de
+ * id_suscripcion y procesada en un pool de hilos acotado.
+ *
+ * - Cada hilo usa como máximo 2 conexiones a la vez (lote + secuencia),
+ *   así que la cantidad de hilos se limita según PoolConexiones.
+ * - Si un lote de una partición falla, solo ese lote se reintenta; los
+ *   lotes ya confirmados no se vuelven a escribir.
+ * - El resultado se une ordenado por id_suscripcion, igual que si se
+ *   hubiera procesado en un solo hilo.
+ */
+public class FacturacionParalela {
+
+    private static final int CONEXIONES_POR_HILO = 2;
+    private static final int MAX_INTENTOS_LOTE = 2;
+
+    // Debajo de esta cantidad no vale la pena abrir hilos
+    private static final int MINIMO_PARA_PARALELO = 200;
+
+    private final PagoDAO pagoDAO;
+    private final int hilos;
+
+    public FacturacionParalela(PagoDAO pagoDAO, int hilosDeseados) {
+        this.pagoDAO = pagoDAO;
+        this.hilos = PoolConexiones.hilosPermitidos(CONEXIONES_POR_HILO, hilosDeseados);
+    }
+
+    /**
+     * Genera las facturas candidatas y retorna el resultado combinado.
+     */
+    public ResultadoFacturacion generar(List<FacturaNueva> candidatas) {
+        ResultadoFacturacion resultado = new ResultadoFacturacion();
+
+        // Particiones por rango de id: ordenar y cortar en tramos contiguos
+        List<FacturaNueva> ordenadas = new ArrayList<>(candidatas);
+        ordenadas.sort(Comparator.comparingInt(FacturaNueva::getIdSuscripcion));
+
+        int numParticiones = (hilos <= 1 || ordenadas.size() < MINIMO_PARA_PARALELO) ? 1 : hilos;
+        List<List<FacturaNueva>> particiones = new ArrayList<>();
+        int tamano = (ordenadas.size() + numParticiones - 1) / Math.max(1, numParticiones);
+        for (int i = 0; i < ordenadas.size(); i += tamano) {
+            particiones.add(ordenadas.subList(i, Math.min(i + tamano, ordenadas.size())));
+        }
+        resultado.particiones = particiones.size();
+
+        if (particiones.size() <= 1) {
+            for (List<FacturaNueva> particion : particiones) {
+                resultado.creadas.addAll(procesarParticion(1, particion, resultado));
+            }
+            return resultado;
+        }
+
+        System.out.println("   ⚙️ Facturación en " + particiones.size() + " particiones (" + hilos + " hilos)");
+
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        try {
+            List<Future<List<FacturaNueva>>> futuros = new ArrayList<>();
+            for (int i = 0; i < particiones.size(); i++) {
+                final int numero = i + 1;
+                final List<FacturaNueva> particion = particiones.get(i);
+                futuros.add(pool.submit(() -> procesarParticion(numero, particion, resultado)));
+            }
+
+            // Unir en el orden de las particiones (determinista)
+            for (Future<List<FacturaNueva>> futuro : futuros) {
+                try {
+                    resultado.creadas.addAll(futuro.get());
+                } catch (Exception e) {
+                    System.err.println("❌ Error esperando partición: " + e.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        return resultado;
+    }
+
+    /**
+     * Procesa una partición lote por lote, reintentando el lote que falle.
+     * Si un lote agota sus intentos la partición se da por fallida y no se
+     * siguen escribiendo sus lotes restantes.
+     */
+    private List<FacturaNueva> procesarParticion(int numero, List<FacturaNueva> particion,
+            ResultadoFacturacion resultado) {
+        List<FacturaNueva> creadas = new ArrayList<>();
+
+        for (int i = 0; i < particion.size(); i += PagoDAO.TAMANO_LOTE_FACTURAS) {
+            List<FacturaNueva> lote = particion.subList(i,
+                    Math.min(i + PagoDAO.TAMANO_LOTE_FACTURAS, particion.size()));
+            for (int intento = 1;; intento++) {
+                try {
+                    creadas.addAll(pagoDAO.generarLoteFacturas(lote));
+                    break;
+                } catch (Exception e) {
+                    System.err.println("⚠️ Partición " + numero + ", lote " + (i / PagoDAO.TAMANO_LOTE_FACTURAS + 1)
+                            + " falló (intento " + intento + "): " + e.getMessage());
+                    if (intento >= MAX_INTENTOS_LOTE) {
+                        resultado.sumarFallida();
+                        return creadas;
+                    }
+                    resultado.sumarReintento();
+                }
+            }
+        }
+
+        return creadas;
+    }
+
+    /**
+     * Resultado combinado de todas las particiones.
+     */
+    public static class ResultadoFacturacion {
+        public final List<FacturaNueva> creadas = new ArrayList<>();
+        public int particiones = 0;
+        public int reintentos = 0;
+        public int particionesFallidas = 0;
+
+        synchronized void sumarReintento() {
+            reintentos++;
+        }
+
+        synchronized void sumarFallida() {
+            particionesFallidas++;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package servicio;
 
+import java.util.List;
+
 /**
  * Interface para servicios de control del router.
  */
@@ -11,4 +13,54 @@ public interface IRouterService {
     boolean verificarConexion();
 
     String getTipoRouter();
+
+    /**
+     * Identifica el equipo al que se envían los comandos. Los cortes
+     * concurrentes se limitan por este valor (ver EjecutorCortes).
+     */
+    default String getIdRouter() {
+        return getTipoRouter();
+    }
+
+    /**
+     * Entradas actuales de la lista de cortados (MOROSOS), en una sola
+     * consulta. null = el router no permite listarla y la reconciliación
+     * (ReconciliadorMorosos) se omite.
+     */
+    default List<EntradaMorosos> listarMorosos() {
+        return null;
+    }
+
+    /**
+     * Quita una entrada ya obtenida con listarMorosos sin volver a buscarla.
+     */
+    default boolean quitarEntradaMorosos(EntradaMorosos entrada) {
+        return reconectarServicio(entrada.ipCliente);
+    }
+
+    /**
+     * Una entrada de la address-list MOROSOS.
+     */
+    class EntradaMorosos {
+        // Comentario con el que cortarServicio marca sus entradas
+        public static final String COMENTARIO_AUTO_CORTE = "Auto-corte FNET";
+
+        public final String id;
+        public final String ipCliente;
+        public final String comentario;
+
+        public EntradaMorosos(String id, String ipCliente, String comentario) {
+            this.id = id;
+            this.ipCliente = ipCliente;
+            this.comentario = comentario;
+        }
+
+        /**
+         * true si la agregó este sistema (las demás se agregaron a mano y
+         * no se tocan).
+         */
+        public boolean esAutoCorte() {
+            return COMENTARIO_AUTO_CORTE.equals(comentario);
+        }
+    }
 }
@@ -6,7 +6,40 @@ package servicio;
 public interface IWhatsAppService {
     boolean enviarMensaje(String telefono, String mensaje);
 
+    /**
+     * Igual que enviarMensaje pero retorna el id que el proveedor asignó al
+     * mensaje ("" si no da uno) o null si no se envió. Retorna apenas el
+     * proveedor acepta el mensaje; la entrega real llega después a
+     * ReceptorEntregas.
+     */
+    default String enviarConId(String telefono, String mensaje) {
+        return enviarMensaje(telefono, mensaje) ? "" : null;
+    }
+
     boolean estaHabilitado();
 
     String getNombreServicio();
+
+    /**
+     * Pausa mínima entre dos envíos por este proveedor. La aplica
+     * RitmoProveedor para todos los hilos que envían a la vez.
+     */
+    default long getIntervaloEnvioMs() {
+        return 0;
+    }
+
+    /**
+     * Mensajes por día que permite este proveedor, o -1 si no tiene límite.
+     */
+    default int getCupoDiario() {
+        return -1;
+    }
+
+    /**
+     * Mensajes que aún puede enviar hoy, o -1 si no tiene límite. Lo usa
+     * PlanificadorEnvios para repartir la cola.
+     */
+    default int getCupoRestanteHoy() {
+        return -1;
+    }
 }
@@ -0,0 +1,320 @@
+package servicio;
+
+import DAO.PagoDAO;
+import modelo.CalculadoraPeriodos;
+import modelo.FacturaHistorica;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Importación masiva de historial de facturas desde Excel (.xlsx) o CSV.
+ * Pensado para migrar una sucursal completa de una sola vez.
+ *
+ * Columnas (la primera fila puede ser encabezado):
+ * A: id_suscripcion
+ * B: periodo ("Enero 2026", "2026-01" o "01/2026")
+ * C: monto
+ * D: estado (PAGADO/2 o PENDIENTE/1)
+ * E: dia_pago (opcional, para la fecha de vencimiento; por defecto 1)
+ *
+ * El archivo se lee en streaming (CSV línea a línea, Excel con el lector
+ * SAX de POI) y se inserta en lotes de TAMANO_LOTE filas, una transacción
+ * por lote (ver PagoDAO.importarHistorial).
+ */
+public class ImportadorHistorial {
+
+    private static final int TAMANO_LOTE = 1000;
+
+    private final PagoDAO pagoDAO;
+    private final CalculadoraPeriodos periodos = CalculadoraPeriodos.getInstancia();
+    private final Map<String, Integer> mesesPorNombre = new HashMap<>();
+
+    public ImportadorHistorial() {
+        this.pagoDAO = new PagoDAO();
+        Locale es = new Locale("es", "ES");
+        for (Month m : Month.values()) {
+            mesesPorNombre.put(m.getDisplayName(TextStyle.FULL, es).toLowerCase(), m.getValue());
+        }
+        mesesPorNombre.put("setiembre", 9); // Forma usada en Perú
+    }
+
+    /**
+     * Importa el archivo (según su extensión) y retorna el resumen.
+     *
+     * @param registrarEnCaja Si true, los periodos pagados generan su
+     *                        movimiento_caja
+     * @param idUsuario       Usuario que registra los movimientos de caja
+     */
+    public ResumenImportacion importar(File archivo, boolean registrarEnCaja, int idUsuario) {
+        Corrida corrida = new Corrida(registrarEnCaja, idUsuario);
+        long inicio = System.currentTimeMillis();
+
+        System.out.println("\n📥 Importando historial: " + archivo.getName());
+
+        try {
+            if (archivo.getName().toLowerCase().endsWith(".xlsx")) {
+                leerExcel(archivo, corrida);
+            } else {
+                leerCsv(archivo, corrida);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error leyendo archivo: " + e.getMessage());
+            e.printStackTrace();
+        }
+        corrida.guardarLote(); // Último lote incompleto
+
+        corrida.resumen.segundos = (System.currentTimeMillis() - inicio) / 1000.0;
+        mostrarResumen(corrida.resumen);
+        return corrida.resumen;
+    }
+
+    private void leerCsv(File archivo, Corrida corrida) throws Exception {
+        try (BufferedReader br = Files.newBufferedReader(archivo.toPath(), StandardCharsets.UTF_8)) {
+            String linea;
+            int numero = 0;
+            while ((linea = br.readLine()) != null) {
+                numero++;
+                if (linea.trim().isEmpty()) {
+                    continue;
+                }
+                // Acepta coma o punto y coma (Excel en español exporta con ';')
+                procesarFila(numero, linea.split(linea.indexOf(';') >= 0 ? ";" : ",", -1), corrida);
+            }
+        }
+    }
+
+    private void leerExcel(File archivo, Corrida corrida) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(archivo, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable textos = new ReadOnlySharedStringsTable(pkg);
+
+            // Solo la primera hoja
+            XSSFReader.SheetIterator hojas = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!hojas.hasNext()) {
+                return;
+            }
+
+            try (InputStream hoja = hojas.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null, textos,
+                        new LectorFilas(corrida), new DataFormatter(), false));
+                parser.parse(new InputSource(hoja));
+            }
+        }
+    }
+
+    /**
+     * Recibe las celdas de cada fila del lector SAX de POI.
+     */
+    private class LectorFilas implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Corrida corrida;
+        private final String[] columnas = new String[5];
+        private int columnaActual;
+
+        LectorFilas(Corrida corrida) {
+            this.corrida = corrida;
+        }
+
+        @Override
+        public void startRow(int fila) {
+            java.util.Arrays.fill(columnas, "");
+            columnaActual = -1;
+        }
+
+        @Override
+        public void cell(String referencia, String valor, XSSFComment comentario) {
+            columnaActual = referencia != null ? new CellReference(referencia).getCol() : columnaActual + 1;
+            if (columnaActual < columnas.length) {
+                columnas[columnaActual] = valor != null ? valor : "";
+            }
+        }
+
+        @Override
+        public void endRow(int fila) {
+            procesarFila(fila + 1, columnas, corrida);
+        }
+    }
+
+    /**
+     * Convierte una fila en FacturaHistorica y la agrega al lote actual.
+     */
+    private void procesarFila(int numero, String[] columnas, Corrida corrida) {
+        String idTexto = columna(columnas, 0);
+        if (idTexto.isEmpty()) {
+            return;
+        }
+        if (!Character.isDigit(idTexto.charAt(0))) {
+            return; // Encabezado
+        }
+
+        corrida.resumen.filasLeidas++;
+        try {
+            int idSuscripcion = (int) Double.parseDouble(idTexto);
+            int[] anioMes = leerPeriodo(columna(columnas, 1));
+            double monto = Double.parseDouble(columna(columnas, 2).replace("S/.", "").replace(",", ".").trim());
+            int estado = leerEstado(columna(columnas, 3));
+            String diaTexto = columna(columnas, 4);
+            int diaPago = diaTexto.isEmpty() ? 1 : (int) Double.parseDouble(diaTexto);
+
+            corrida.lote.add(new FacturaHistorica(idSuscripcion,
+                    periodos.nombreMes(anioMes[0], anioMes[1]), monto, estado,
+                    periodos.fechaVencimiento(anioMes[0], anioMes[1], diaPago)));
+
+        } catch (Exception e) {
+            System.err.println("⚠️ Fila " + numero + " inválida: " + e.getMessage());
+            corrida.resumen.filasInvalidas++;
+            return;
+        }
+
+        if (corrida.lote.size() >= TAMANO_LOTE) {
+            corrida.guardarLote();
+        }
+    }
+
+    /**
+     * Retorna {anio, mes} a partir de "Enero 2026", "2026-01" o "01/2026".
+     */
+    private int[] leerPeriodo(String texto) {
+        String t = texto.trim().toLowerCase();
+        String[] partes = t.split("[\\s/-]+");
+        if (partes.length != 2) {
+            throw new IllegalArgumentException("periodo no reconocido: " + texto);
+        }
+
+        Integer mes = mesesPorNombre.get(partes[0]);
+        if (mes != null) {
+            return new int[] { Integer.parseInt(partes[1]), mes };
+        }
+        int a = Integer.parseInt(partes[0]);
+        int b = Integer.parseInt(partes[1]);
+        int[] anioMes = a > 12 ? new int[] { a, b } : new int[] { b, a };
+        if (anioMes[1] < 1 || anioMes[1] > 12) {
+            throw new IllegalArgumentException("mes inválido: " + texto);
+        }
+        return anioMes;
+    }
+
+    /**
+     * PENDIENTE / 1 o PAGADO / 2 (las celdas numéricas de Excel llegan como
+     * "1.0"). Cualquier otro valor invalida la fila: un estado mal escrito
+     * no debe convertirse en deuda que luego se recuerde y se corte.
+     */
+    private int leerEstado(String texto) {
+        String t = texto.trim().toUpperCase();
+        if (t.equals("PENDIENTE") || t.equals("1") || t.equals("1.0")) {
+            return 1;
+        }
+        if (t.equals("PAGADO") || t.equals("2") || t.equals("2.0")) {
+            return 2;
+        }
+        throw new IllegalArgumentException("estado no reconocido: '" + texto + "'");
+    }
+
+    private static String columna(String[] columnas, int indice) {
+        return indice < columnas.length && columnas[indice] != null ? columnas[indice].trim() : "";
+    }
+
+    /**
+     * Estado de una importación en curso (lote actual y contadores).
+     */
+    private class Corrida {
+        final boolean registrarEnCaja;
+        final int idUsuario;
+        final List<FacturaHistorica> lote = new ArrayList<>();
+        final ResumenImportacion resumen = new ResumenImportacion();
+
+        Corrida(boolean registrarEnCaja, int idUsuario) {
+            this.registrarEnCaja = registrarEnCaja;
+            this.idUsuario = idUsuario;
+        }
+
+        void guardarLote() {
+            if (lote.isEmpty()) {
+                return;
+            }
+            try {
+                int creadas = pagoDAO.importarHistorial(lote, registrarEnCaja, idUsuario);
+                resumen.facturasCreadas += creadas;
+                resumen.yaExistian += lote.size() - creadas;
+                System.out.println("   ✅ Lote guardado: " + creadas + "/" + lote.size()
+                        + " (total " + resumen.facturasCreadas + ")");
+            } catch (Exception e) {
+                System.err.println("❌ Error guardando lote de " + lote.size() + " filas: " + e.getMessage());
+                resumen.filasConError += lote.size();
+            }
+            lote.clear();
+        }
+    }
+
+    /**
+     * Muestra el resumen de la importación.
+     */
+    private void mostrarResumen(ResumenImportacion resumen) {
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("📊 RESUMEN DE IMPORTACIÓN DE HISTORIAL");
+        System.out.println("=".repeat(60));
+        System.out.println("   📋 Filas leídas: " + resumen.filasLeidas);
+        System.out.println("   ✅ Facturas creadas: " + resumen.facturasCreadas);
+        System.out.println("   🔄 Ya existían: " + resumen.yaExistian);
+        System.out.println("   📝 Filas inválidas: " + resumen.filasInvalidas);
+        System.out.println("   ❌ Filas con error: " + resumen.filasConError);
+        System.out.println("   ⏱️ Tiempo: " + String.format("%.1f", resumen.segundos) + " s");
+        System.out.println("=".repeat(60) + "\n");
+    }
+
+    /**
+     * Clase para almacenar el resumen de la importación.
+     */
+    public static class ResumenImportacion {
+        public int filasLeidas = 0;
+        public int facturasCreadas = 0;
+        public int yaExistian = 0; // Periodos que ya tenían factura (o repetidos en el archivo)
+        public int filasInvalidas = 0;
+        public int filasConError = 0; // Filas de lotes que fallaron al guardar
+        public double segundos = 0;
+    }
+
+    /**
+     * Uso: java -cp fnet-automation.jar servicio.ImportadorHistorial
+     * archivo.(xlsx|csv) [idUsuario] [--sin-caja]
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Uso: ImportadorHistorial archivo.(xlsx|csv) [idUsuario] [--sin-caja]");
+            System.exit(1);
+        }
+        java.util.TimeZone.setDefault(java.util.TimeZone.getTimeZone("America/Lima"));
+        if (!bd.MigracionEsquema.aplicarPendientes()) {
+            System.err.println("❌ El esquema de la base de datos no está al día");
+            System.exit(1);
+        }
+
+        int idUsuario = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : 1;
+        boolean registrarEnCaja = !java.util.Arrays.asList(args).contains("--sin-caja");
+
+        new ImportadorHistorial().importar(new File(args[0]), registrarEnCaja, idUsuario);
+        bd.PoolConexiones.cerrarPool();
+    }
+}
@@ -36,15 +36,27 @@ public class Main {
             System.exit(1);
         }
 
-        // Registrar shutdown hook para cerrar el pool gracefulmente
+        // Aplicar migraciones de esquema pendientes (sin ellas las fases
+        // horarias fallan: no arrancar con el esquema a medias)
+        if (!bd.MigracionEsquema.aplicarPendientes()) {
+            System.err.println("❌ Error crítico: el esquema de la base de datos no está al día");
+            System.exit(1);
+        }
+        VerificacionPlanes.verificar();
+
+        servicio.MotorAutomatizacion motor = new servicio.MotorAutomatizacion();
+
+        // Registrar shutdown hook para cerrar gracefulmente: primero el motor
+        // (escribe los estados de EscritorEstados y detiene los workers),
+        // después el pool que todos ellos usan
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("\n🛑 Shutdown hook activado. Cerrando recursos...");
+            motor.detener();
             bd.PoolConexiones.cerrarPool();
             System.out.println("✅ Recursos liberados. Hasta luego.");
         }));
 
         // Iniciar el motor de automatización
-        servicio.MotorAutomatizacion motor = new servicio.MotorAutomatizacion();
         motor.iniciarServicio();
 
         System.out.println("✅ Motor de automatización iniciado");
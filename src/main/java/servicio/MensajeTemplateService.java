@@ -2,6 +2,9 @@ package servicio;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -80,6 +83,48 @@ public class MensajeTemplateService {
                 nombreCliente);
     }
 
+    /**
+     * Genera mensaje de FACTURA DISPONIBLE (factura recién generada), con el
+     * detalle de las pendientes si hay más de una.
+     */
+    public String generarFacturaDisponible(String nombreCliente, String facturaInfo, double monto,
+            int facturasPendientes, String detallePendientes) {
+        StringBuilder mensaje = new StringBuilder();
+        mensaje.append("Hola ").append(nombreCliente).append(", ");
+        mensaje.append("te recordamos que ya está disponible tu pago ").append(facturaInfo);
+        mensaje.append(" por S/. ").append(String.format("%.2f", monto)).append(".");
+
+        if (facturasPendientes > 1) {
+            mensaje.append("\n\n📋 Facturas pendientes:\n").append(detallePendientes);
+        }
+
+        mensaje.append("\n\n¡Gracias!");
+        return mensaje.toString();
+    }
+
+    /**
+     * Genera mensaje de ADVERTENCIA DE CORTE por deuda acumulada.
+     */
+    public String generarAdvertenciaDeuda(String nombreCliente, int mesesDeuda, double deudaTotal) {
+        return String.format(
+                "⚠️ AVISO IMPORTANTE %s: Tienes %d meses de deuda acumulada (S/. %.2f). " +
+                        "Debes regularizar tu pago en los próximos 5 días para evitar el corte de servicio. " +
+                        "Comunícate con nosotros para coordinar tu pago.",
+                nombreCliente, mesesDeuda, deudaTotal);
+    }
+
+    /**
+     * Junta varios mensajes para un mismo teléfono en uno solo, en el orden
+     * recibido. Los textos repetidos se envían una vez.
+     */
+    public String combinar(List<String> mensajes) {
+        List<String> distintos = new ArrayList<>(new LinkedHashSet<>(mensajes));
+        if (distintos.size() == 1) {
+            return distintos.get(0);
+        }
+        return String.join("\n\n━━━━━━━━━━━━━━━\n\n", distintos);
+    }
+
     /**
      * Formatea el nombre del periodo (mes año).
      * Ejemplo: "Enero 2025"
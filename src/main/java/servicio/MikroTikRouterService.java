@@ -6,7 +6,9 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 
 /**
  * Implementación de Router Service para MikroTik.
@@ -103,6 +105,59 @@ public class MikroTikRouterService implements IRouterService {
         return "MikroTik RouterOS";
     }
 
+    @Override
+    public List<EntradaMorosos> listarMorosos() {
+        if (!verificarConfiguracion()) {
+            return null;
+        }
+
+        try {
+            String urlStr = String.format("http://%s/rest/ip/firewall/address-list?list=%s", routerIp, "MOROSOS");
+            URL url = new URL(urlStr);
+            HttpURLConnection con = (HttpURLConnection) url.openConnection();
+            con.setRequestMethod("GET");
+            con.setConnectTimeout(10000);
+            con.setReadTimeout(30000);
+
+            String auth = Base64.getEncoder().encodeToString((usuario + ":" + password).getBytes());
+            con.setRequestProperty("Authorization", "Basic " + auth);
+
+            if (con.getResponseCode() != 200) {
+                System.err.println("❌ MikroTik: Error " + con.getResponseCode() + " listando MOROSOS");
+                return null;
+            }
+
+            StringBuilder response = new StringBuilder();
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    response.append(line);
+                }
+            }
+            return parsearAddressList(response.toString());
+
+        } catch (Exception e) {
+            System.err.println("❌ MikroTik: Error listando MOROSOS - " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public boolean quitarEntradaMorosos(EntradaMorosos entrada) {
+        if (!verificarConfiguracion()) {
+            System.err.println("❌ MikroTik: No configurado correctamente");
+            return false;
+        }
+        // DELETE directo: el .id ya vino en el listado
+        String urlStr = String.format("http://%s/rest/ip/firewall/address-list/%s", routerIp, entrada.id);
+        return enviarComando(urlStr, "DELETE", null);
+    }
+
+    @Override
+    public String getIdRouter() {
+        return routerIp != null && !routerIp.isEmpty() ? routerIp : getTipoRouter();
+    }
+
     /**
      * Ejecuta un comando en el router MikroTik via API REST.
      * 
@@ -111,30 +166,37 @@ public class MikroTikRouterService implements IRouterService {
      * @param nombreLista Nombre de la address-list ("MOROSOS")
      */
     private boolean ejecutarComandoMikroTik(String accion, String ipCliente, String nombreLista) {
-        try {
-            String urlStr;
-            String method;
-            String body = null;
-
-            if ("add".equals(accion)) {
-                // POST /rest/ip/firewall/address-list
-                urlStr = String.format("http://%s/rest/ip/firewall/address-list", routerIp);
-                method = "PUT";
-                body = String.format("{\"address\":\"%s\",\"list\":\"%s\",\"comment\":\"Auto-corte FNET\"}",
-                        ipCliente, nombreLista);
-            } else {
-                // Primero buscar el ID del registro
-                String idRegistro = buscarIdEnAddressList(ipCliente, nombreLista);
-                if (idRegistro == null) {
-                    System.out.println("⚠️ MikroTik: IP " + ipCliente + " no encontrada en lista " + nombreLista);
-                    return true; // No es error, simplemente no existía
-                }
-
-                // DELETE /rest/ip/firewall/address-list/{id}
-                urlStr = String.format("http://%s/rest/ip/firewall/address-list/%s", routerIp, idRegistro);
-                method = "DELETE";
+        String urlStr;
+        String method;
+        String body = null;
+
+        if ("add".equals(accion)) {
+            // POST /rest/ip/firewall/address-list
+            urlStr = String.format("http://%s/rest/ip/firewall/address-list", routerIp);
+            method = "PUT";
+            body = String.format("{\"address\":\"%s\",\"list\":\"%s\",\"comment\":\"%s\"}",
+                    ipCliente, nombreLista, EntradaMorosos.COMENTARIO_AUTO_CORTE);
+        } else {
+            // Primero buscar el ID del registro
+            String idRegistro = buscarIdEnAddressList(ipCliente, nombreLista);
+            if (idRegistro == null) {
+                System.out.println("⚠️ MikroTik: IP " + ipCliente + " no encontrada en lista " + nombreLista);
+                return true; // No es error, simplemente no existía
             }
 
+            // DELETE /rest/ip/firewall/address-list/{id}
+            urlStr = String.format("http://%s/rest/ip/firewall/address-list/%s", routerIp, idRegistro);
+            method = "DELETE";
+        }
+
+        return enviarComando(urlStr, method, body);
+    }
+
+    /**
+     * Envía un comando REST al router.
+     */
+    private boolean enviarComando(String urlStr, String method, String body) {
+        try {
             URL url = new URL(urlStr);
             HttpURLConnection con = (HttpURLConnection) url.openConnection();
             con.setRequestMethod(method);
@@ -217,6 +279,44 @@ public class MikroTikRouterService implements IRouterService {
         return null;
     }
 
+    /**
+     * Parsea la respuesta de /rest/ip/firewall/address-list
+     * (formato: [{".id":"*1A","address":"10.0.0.5","comment":"...",...}]).
+     */
+    static List<EntradaMorosos> parsearAddressList(String json) {
+        List<EntradaMorosos> entradas = new ArrayList<>();
+        int inicio = json.indexOf('{');
+        while (inicio >= 0) {
+            int fin = json.indexOf('}', inicio);
+            if (fin < 0) {
+                break;
+            }
+            String objeto = json.substring(inicio, fin);
+            String id = campoJson(objeto, ".id");
+            String address = campoJson(objeto, "address");
+            if (id != null && address != null) {
+                // "10.0.0.5/32" equivale a "10.0.0.5"
+                if (address.endsWith("/32")) {
+                    address = address.substring(0, address.length() - 3);
+                }
+                entradas.add(new EntradaMorosos(id, address, campoJson(objeto, "comment")));
+            }
+            inicio = json.indexOf('{', fin);
+        }
+        return entradas;
+    }
+
+    private static String campoJson(String objeto, String clave) {
+        String patron = "\"" + clave + "\":\"";
+        int desde = objeto.indexOf(patron);
+        if (desde < 0) {
+            return null;
+        }
+        desde += patron.length();
+        int hasta = objeto.indexOf('"', desde);
+        return hasta < 0 ? null : objeto.substring(desde, hasta);
+    }
+
     private boolean verificarConfiguracion() {
         return routerIp != null && !routerIp.isEmpty()
                 && usuario != null && !usuario.isEmpty()
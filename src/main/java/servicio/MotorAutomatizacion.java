@@ -16,6 +16,10 @@ import java.util.concurrent.TimeUnit;
  * 2. Revisión de facturas vencidas → programa recordatorios
  * 3. Revisión de ultimátums vencidos → ejecuta cortes
  * 4. Procesamiento de cola de notificaciones WhatsApp
+ *
+ * En paralelo, ReconexionWorker reconecta a los clientes que pagan
+ * (segundos después del pago, sin esperar al ciclo horario), y
+ * ReceptorEntregas registra los avisos de entrega de WhatsApp.
  */
 public class MotorAutomatizacion {
 
@@ -24,6 +28,8 @@ public class MotorAutomatizacion {
     private final ScheduledExecutorService scheduler;
     private final EmailMonitorService emailMonitor;
     private final YapePagoProcessor yapeProcesador;
+    private final ReconexionWorker reconexionWorker;
+    private final ReceptorEntregas receptorEntregas;
 
     private boolean ejecutandose = false;
 
@@ -33,6 +39,8 @@ public class MotorAutomatizacion {
         this.scheduler = Executors.newSingleThreadScheduledExecutor();
         this.emailMonitor = new EmailMonitorService();
         this.yapeProcesador = new YapePagoProcessor();
+        this.reconexionWorker = new ReconexionWorker(cobrosService.getRouterService());
+        this.receptorEntregas = new ReceptorEntregas();
     }
 
     /**
@@ -52,6 +60,12 @@ public class MotorAutomatizacion {
         // Ejecutar cada 1 HORA
         // Para pruebas: cambiar TimeUnit.HOURS a TimeUnit.MINUTES
         scheduler.scheduleAtFixedRate(this::procesarCiclo, 0, 1, TimeUnit.HOURS);
+
+        // Reconexión tras pago: independiente del ciclo horario
+        reconexionWorker.iniciar();
+
+        // Avisos de entrega de Twilio / Evolution (si hay puerto configurado)
+        receptorEntregas.iniciar();
     }
 
     /**
@@ -108,6 +122,9 @@ public class MotorAutomatizacion {
         if (scheduler != null && !scheduler.isShutdown()) {
             System.out.println("🛑 Deteniendo Motor de Automatización...");
             scheduler.shutdown();
+            reconexionWorker.detener();
+            receptorEntregas.detener();
+            EscritorEstados.cerrarInstancia(); // Escribir los estados que queden
             ejecutandose = false;
         }
     }
@@ -0,0 +1,153 @@
+package servicio;
+
+import modelo.NotificacionPendiente.TipoNotificacion;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Reparte el cupo diario del proveedor de WhatsApp entre las notificaciones
+ * pendientes de una corrida horaria.
+ *
+ * - Primero salen las de mayor prioridad (ULTIMATUM y CORTE), hasta donde
+ *   alcance el cupo que le queda hoy al proveedor.
+ * - Los RECORDATORIOS se reparten en partes iguales entre las corridas que
+ *   quedan en el día, así siempre queda cupo para los ultimátums que
+ *   aparezcan después. Los que no entran siguen PENDIENTES para mañana.
+ * - Con la cola actual y el cupo diario estima cuándo se termina de enviar.
+ *
+ * Un proveedor sin cupo diario (getCupoRestanteHoy = -1) solo se ordena por
+ * prioridad, sin límites.
+ */
+public class PlanificadorEnvios {
+
+    private static final DateTimeFormatter FMT_PROYECCION = DateTimeFormatter.ofPattern("dd/MM HH:mm");
+
+    private PlanificadorEnvios() {
+        // Utilidad estática - no instanciar
+    }
+
+    /**
+     * Arma el plan de la corrida.
+     *
+     * @param pendientes notificaciones listas para enviar, por tipo
+     *                   (NotificacionDAO.contarPendientesPorTipo)
+     */
+    public static Plan planificar(IWhatsAppService proveedor, Map<TipoNotificacion, Integer> pendientes,
+            LocalDateTime ahora) {
+        // Prioridades de mayor a menor, con sus tipos y cantidades
+        TreeMap<Integer, Set<TipoNotificacion>> niveles = new TreeMap<>(Collections.reverseOrder());
+        for (TipoNotificacion tipo : TipoNotificacion.values()) {
+            niveles.computeIfAbsent(tipo.getPrioridad(), k -> EnumSet.noneOf(TipoNotificacion.class)).add(tipo);
+        }
+
+        int cupoRestante = proveedor.getCupoRestanteHoy();
+        int cupoDiario = proveedor.getCupoDiario();
+        boolean conCupo = cupoRestante >= 0 && cupoDiario > 0;
+        int corridasRestantes = 24 - ahora.getHour(); // Una por hora, incluida esta
+
+        Plan plan = new Plan();
+        plan.cupoRestante = cupoRestante;
+        int disponible = cupoRestante;
+        int nivel = 0;
+        for (Map.Entry<Integer, Set<TipoNotificacion>> e : niveles.entrySet()) {
+            int cantidad = 0;
+            for (TipoNotificacion tipo : e.getValue()) {
+                cantidad += pendientes.getOrDefault(tipo, 0);
+            }
+            plan.totalPendientes += cantidad;
+            if (cantidad == 0) {
+                nivel++;
+                continue;
+            }
+
+            int limite;
+            if (!conCupo) {
+                limite = Integer.MAX_VALUE;
+            } else if (nivel == 0) {
+                limite = Math.min(cantidad, disponible); // Las más urgentes: todo lo que alcance
+            } else {
+                // Resto de prioridades: la parte que le toca a esta corrida
+                limite = Math.min(cantidad, (disponible + corridasRestantes - 1) / corridasRestantes);
+            }
+            if (limite > 0) {
+                plan.fases.add(new Fase(e.getValue(), limite));
+            }
+            plan.postergadas += cantidad - Math.min(cantidad, limite);
+            if (conCupo) {
+                disponible -= limite;
+            }
+            nivel++;
+        }
+
+        plan.finEstimado = estimarFin(proveedor, plan, conCupo, corridasRestantes, ahora);
+        return plan;
+    }
+
+    /**
+     * Momento estimado en que la cola actual queda enviada (sin contar las
+     * que se agreguen después).
+     */
+    private static LocalDateTime estimarFin(IWhatsAppService proveedor, Plan plan, boolean conCupo,
+            int corridasRestantes, LocalDateTime ahora) {
+        if (plan.totalPendientes == 0) {
+            return ahora;
+        }
+        if (!conCupo) {
+            // Solo la pausa entre envíos del proveedor
+            return ahora.plus(plan.totalPendientes * proveedor.getIntervaloEnvioMs(), ChronoUnit.MILLIS);
+        }
+
+        int cupoDiario = proveedor.getCupoDiario();
+        if (plan.totalPendientes <= plan.cupoRestante) {
+            // Entra hoy; lo postergado sale en las siguientes corridas horarias
+            int porCorrida = Math.max(1, plan.totalPendientes - plan.postergadas);
+            long horas = (plan.postergadas + porCorrida - 1) / porCorrida;
+            return ahora.plusHours(Math.min(horas, corridasRestantes - 1));
+        }
+        int exceso = plan.totalPendientes - plan.cupoRestante;
+        long dias = (exceso + cupoDiario - 1) / cupoDiario;
+        // El último día el cupo se reparte por hora: termina a la hora proporcional
+        int ultimoDia = exceso - (int) (dias - 1) * cupoDiario;
+        long hora = (24L * ultimoDia + cupoDiario - 1) / cupoDiario - 1;
+        return ahora.toLocalDate().plusDays(dias).atStartOfDay().plusHours(hora);
+    }
+
+    /**
+     * Tipos que se reclaman juntos y cuántas notificaciones como máximo.
+     */
+    public static class Fase {
+        public final Set<TipoNotificacion> tipos;
+        public final int limite;
+
+        Fase(Set<TipoNotificacion> tipos, int limite) {
+            this.tipos = tipos;
+            this.limite = limite;
+        }
+    }
+
+    /**
+     * Plan de una corrida: fases en orden de prioridad y proyección.
+     */
+    public static class Plan {
+        public final List<Fase> fases = new ArrayList<>();
+        public int totalPendientes = 0;
+        public int postergadas = 0; // Quedan para otra corrida u otro día
+        public int cupoRestante = -1;
+        public LocalDateTime finEstimado;
+
+        public String describir() {
+            return totalPendientes + " en cola"
+                    + (cupoRestante >= 0 ? ", cupo hoy " + cupoRestante : "")
+                    + (postergadas > 0 ? ", " + postergadas + " postergadas" : "")
+                    + ", fin estimado " + finEstimado.format(FMT_PROYECCION);
+        }
+    }
+}
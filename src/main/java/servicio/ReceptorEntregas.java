@@ -0,0 +1,469 @@
+package servicio;
+
+import DAO.NotificacionDAO;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Endpoint HTTP para los avisos de entrega de los proveedores de WhatsApp.
+ *
+ * - POST RUTA_TWILIO: statusCallback de Twilio (formulario con MessageSid
+ *   y MessageStatus). TwilioWhatsAppService lo pide en cada envío.
+ * - POST RUTA_EVOLUTION: webhook messages.update de Evolution API. De cada
+ *   elemento de "data" se toma keyId (o key.id) y status (o update.status);
+ *   se leen como campos JSON, no buscando el texto en todo el cuerpo.
+ *   Se configura en la instancia de Evolution.
+ *
+ * El handler solo encola (cola acotada, CAPACIDAD_COLA) y responde; un hilo
+ * aparte escribe los estados con NotificacionDAO.actualizarEntregasLote
+ * cada INTERVALO_MS o cada LOTE avisos. Si la cola está llena se responde
+ * 503 para que el proveedor reintente.
+ *
+ * Variables de entorno:
+ * - CALLBACK_ENTREGA_PUERTO y CALLBACK_ENTREGA_TOKEN: sin las dos, el
+ *   receptor no arranca. Cada aviso debe traer ?token=...
+ * - CALLBACK_ENTREGA_URL: URL pública de este servicio (para Twilio).
+ */
+public class ReceptorEntregas {
+
+    public static final String RUTA_TWILIO = "/callbacks/twilio";
+    public static final String RUTA_EVOLUTION = "/callbacks/evolution";
+
+    private static final int CAPACIDAD_COLA = 10000;
+    private static final int LOTE = 200;
+    private static final long INTERVALO_MS = 2000;
+    // Aviso que llega antes que el id_mensaje esté guardado: se reintenta hasta esta edad
+    private static final long ESPERA_MAXIMA_ID_MS = 120000;
+
+    private final NotificacionDAO notificacionDAO;
+    private final BlockingQueue<Aviso> cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+    private final String token;
+    private HttpServer servidor;
+    private Thread escritor;
+    private volatile boolean activo = false;
+
+    public ReceptorEntregas() {
+        this.notificacionDAO = new NotificacionDAO();
+        this.token = System.getenv("CALLBACK_ENTREGA_TOKEN");
+    }
+
+    /**
+     * URL completa a la que el proveedor debe avisar, o null si no hay
+     * CALLBACK_ENTREGA_URL configurada.
+     */
+    public static String urlCallback(String ruta) {
+        String base = System.getenv("CALLBACK_ENTREGA_URL");
+        if (base == null || base.isBlank()) {
+            return null;
+        }
+        String token = System.getenv("CALLBACK_ENTREGA_TOKEN");
+        String url = base.replaceAll("/+$", "") + ruta;
+        return token != null && !token.isBlank()
+                ? url + "?token=" + java.net.URLEncoder.encode(token, StandardCharsets.UTF_8)
+                : url;
+    }
+
+    /**
+     * Arranca el servidor si hay puerto y token configurados. No usa PORT:
+     * el puerto queda expuesto, así que se habilita solo a propósito.
+     *
+     * @return true si quedó escuchando
+     */
+    public boolean iniciar() {
+        String puerto = System.getenv("CALLBACK_ENTREGA_PUERTO");
+        if (puerto == null || puerto.isBlank()) {
+            System.out.println("   📭 Avisos de entrega: sin CALLBACK_ENTREGA_PUERTO, deshabilitado");
+            return false;
+        }
+        if (token == null || token.isBlank()) {
+            System.err.println("⚠️ Avisos de entrega: falta CALLBACK_ENTREGA_TOKEN, deshabilitado");
+            return false;
+        }
+
+        try {
+            servidor = HttpServer.create(new InetSocketAddress(Integer.parseInt(puerto.trim())), 0);
+            servidor.createContext(RUTA_TWILIO, ex -> atender(ex, true));
+            servidor.createContext(RUTA_EVOLUTION, ex -> atender(ex, false));
+            servidor.setExecutor(Executors.newFixedThreadPool(2));
+            servidor.start();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ No se pudo iniciar el receptor de entregas: " + e.getMessage());
+            return false;
+        }
+
+        activo = true;
+        escritor = new Thread(this::escribirEnBucle, "receptor-entregas");
+        escritor.setDaemon(true);
+        escritor.start();
+        System.out.println("   📬 Avisos de entrega: escuchando en el puerto " + puerto.trim());
+        return true;
+    }
+
+    public void detener() {
+        if (servidor == null) {
+            return;
+        }
+        servidor.stop(1);
+        activo = false;
+        escritor.interrupt();
+        try {
+            escritor.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void atender(HttpExchange ex, boolean twilio) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+                responder(ex, 405);
+                return;
+            }
+            String recibido = parsearFormulario(ex.getRequestURI().getRawQuery()).get("token");
+            if (recibido == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                    recibido.getBytes(StandardCharsets.UTF_8))) {
+                responder(ex, 403);
+                return;
+            }
+
+            String cuerpo;
+            try (InputStream in = ex.getRequestBody()) {
+                cuerpo = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            List<Aviso> avisos = twilio ? leerTwilio(cuerpo) : leerEvolution(cuerpo);
+            boolean encolados = true;
+            for (Aviso aviso : avisos) { // Vacía: otro evento o estado que no interesa
+                encolados &= cola.offer(aviso);
+            }
+            responder(ex, encolados ? 204 : 503);
+        } catch (Exception e) {
+            System.err.println("❌ Error atendiendo aviso de entrega: " + e.getMessage());
+            responder(ex, 500);
+        }
+    }
+
+    private static List<Aviso> leerTwilio(String cuerpo) {
+        Map<String, String> campos = parsearFormulario(cuerpo);
+        String estado = normalizarEstado(campos.get("MessageStatus"));
+        String sid = campos.get("MessageSid");
+        return sid != null && estado != null
+                ? Collections.singletonList(new Aviso(sid, estado))
+                : Collections.emptyList();
+    }
+
+    /**
+     * Evolution v2 manda data = { keyId, status, ... }; v1 manda
+     * data = { key: { id }, update: { status } }. data puede ser un arreglo.
+     */
+    private static List<Aviso> leerEvolution(String cuerpo) {
+        List<Aviso> avisos = new ArrayList<>();
+        String evento = campoJson(cuerpo, "event");
+        if (evento != null && !evento.replace('_', '.').equalsIgnoreCase("messages.update")) {
+            return avisos;
+        }
+        String data = campoJson(cuerpo, "data");
+        if (data == null) {
+            return avisos;
+        }
+        for (String elemento : data.startsWith("[") ? elementosJson(data) : Collections.singletonList(data)) {
+            String id = campoJson(elemento, "keyId");
+            if (id == null) {
+                String key = campoJson(elemento, "key");
+                id = key != null ? campoJson(key, "id") : null;
+            }
+            String estado = campoJson(elemento, "status");
+            if (estado == null) {
+                String update = campoJson(elemento, "update");
+                estado = update != null ? campoJson(update, "status") : null;
+            }
+            String normalizado = normalizarEstado(estado);
+            if (id != null && !id.isEmpty() && normalizado != null) {
+                avisos.add(new Aviso(id, normalizado));
+            }
+        }
+        return avisos;
+    }
+
+    /**
+     * Estado del proveedor → NotificacionDAO.ESTADOS_ENTREGA (null si no
+     * interesa). Twilio: queued/sent/delivered/read/failed/undelivered.
+     * Evolution: SERVER_ACK/DELIVERY_ACK/READ/PLAYED/ERROR o su número.
+     */
+    static String normalizarEstado(String estado) {
+        if (estado == null) {
+            return null;
+        }
+        switch (estado.trim().toUpperCase()) {
+            case "ACCEPTED":
+            case "QUEUED":
+            case "SENT":
+            case "SERVER_ACK":
+            case "2":
+                return "ACEPTADO";
+            case "DELIVERED":
+            case "DELIVERY_ACK":
+            case "3":
+                return "ENTREGADO";
+            case "READ":
+            case "PLAYED":
+            case "4":
+            case "5":
+                return "LEIDO";
+            case "FAILED":
+            case "UNDELIVERED":
+            case "ERROR":
+            case "0":
+                return "FALLIDO";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Escribe la cola por lotes hasta que se detenga el receptor.
+     */
+    private void escribirEnBucle() {
+        List<Aviso> reintentos = new ArrayList<>();
+        while (activo || !cola.isEmpty()) {
+            List<Aviso> lote = new ArrayList<>(reintentos);
+            reintentos.clear();
+            try {
+                Aviso primero = cola.poll(INTERVALO_MS, TimeUnit.MILLISECONDS);
+                if (primero != null) {
+                    lote.add(primero);
+                    cola.drainTo(lote, LOTE - 1);
+                }
+            } catch (InterruptedException e) {
+                cola.drainTo(lote); // Al detener: escribir lo que quede
+            }
+            if (lote.isEmpty()) {
+                continue;
+            }
+
+            try {
+                reintentos.addAll(escribir(lote));
+            } catch (Exception e) {
+                System.err.println("❌ Error escribiendo avisos de entrega: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return los avisos que hay que volver a intentar
+     */
+    private List<Aviso> escribir(List<Aviso> lote) {
+        List<String[]> entregas = new ArrayList<>();
+        for (Aviso a : lote) {
+            entregas.add(new String[] { a.idMensaje, a.estado });
+        }
+        List<String[]> sinCoincidencia = notificacionDAO.actualizarEntregasLote(entregas);
+
+        List<Aviso> reintentos = new ArrayList<>();
+        long limite = System.currentTimeMillis() - ESPERA_MAXIMA_ID_MS;
+        if (sinCoincidencia == null) {
+            reintentos.addAll(lote); // BD caída: todo el lote otra vez
+        } else {
+            java.util.Set<String[]> pendientes = java.util.Collections
+                    .newSetFromMap(new java.util.IdentityHashMap<>());
+            pendientes.addAll(sinCoincidencia);
+            for (int i = 0; i < lote.size(); i++) {
+                if (pendientes.contains(entregas.get(i))) {
+                    reintentos.add(lote.get(i));
+                }
+            }
+        }
+        reintentos.removeIf(a -> a.recibido < limite);
+        return reintentos;
+    }
+
+    // ==================== JSON MÍNIMO ====================
+
+    /**
+     * Valor de un campo de primer nivel de un objeto JSON: el texto si es
+     * string, el objeto o arreglo completo, o el literal (número, true...).
+     * null si el campo no está o el JSON no es un objeto válido.
+     */
+    static String campoJson(String json, String nombre) {
+        int i = saltarEspacios(json, 0);
+        if (i >= json.length() || json.charAt(i) != '{') {
+            return null;
+        }
+        i++;
+        while (true) {
+            i = saltarEspacios(json, i);
+            if (i >= json.length() || json.charAt(i) != '"') {
+                return null; // Fin del objeto sin encontrarlo
+            }
+            int finClave = finString(json, i);
+            if (finClave < 0) {
+                return null;
+            }
+            String clave = json.substring(i + 1, finClave - 1);
+            i = saltarEspacios(json, finClave);
+            if (i >= json.length() || json.charAt(i) != ':') {
+                return null;
+            }
+            i = saltarEspacios(json, i + 1);
+            int finValor = finValor(json, i);
+            if (finValor < 0) {
+                return null;
+            }
+            if (clave.equals(nombre)) {
+                String valor = json.substring(i, finValor);
+                return valor.startsWith("\"") ? desescapar(valor.substring(1, valor.length() - 1)) : valor;
+            }
+            i = saltarEspacios(json, finValor);
+            if (i >= json.length() || json.charAt(i) != ',') {
+                return null;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Elementos (texto de cada valor) de un arreglo JSON.
+     */
+    static List<String> elementosJson(String arreglo) {
+        List<String> elementos = new ArrayList<>();
+        int i = saltarEspacios(arreglo, 0);
+        if (i >= arreglo.length() || arreglo.charAt(i) != '[') {
+            return elementos;
+        }
+        i++;
+        while (true) {
+            i = saltarEspacios(arreglo, i);
+            int fin = finValor(arreglo, i);
+            if (fin < 0 || fin == i) {
+                return elementos; // ']' o JSON inválido
+            }
+            elementos.add(arreglo.substring(i, fin));
+            i = saltarEspacios(arreglo, fin);
+            if (i >= arreglo.length() || arreglo.charAt(i) != ',') {
+                return elementos;
+            }
+            i++;
+        }
+    }
+
+    private static int saltarEspacios(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // Posición siguiente al string que abre la comilla en i, o -1
+    private static int finString(String s, int i) {
+        for (int j = i + 1; j < s.length(); j++) {
+            char c = s.charAt(j);
+            if (c == '\\') {
+                j++;
+            } else if (c == '"') {
+                return j + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Posición siguiente al valor que empieza en i, o -1
+    private static int finValor(String s, int i) {
+        if (i >= s.length()) {
+            return -1;
+        }
+        char c = s.charAt(i);
+        if (c == '"') {
+            return finString(s, i);
+        }
+        if (c == '{' || c == '[') {
+            int profundidad = 0;
+            for (int j = i; j < s.length(); j++) {
+                char d = s.charAt(j);
+                if (d == '"') {
+                    int fin = finString(s, j);
+                    if (fin < 0) {
+                        return -1;
+                    }
+                    j = fin - 1;
+                } else if (d == '{' || d == '[') {
+                    profundidad++;
+                } else if ((d == '}' || d == ']') && --profundidad == 0) {
+                    return j + 1;
+                }
+            }
+            return -1;
+        }
+        int j = i;
+        while (j < s.length() && ",}] \t\r\n".indexOf(s.charAt(j)) < 0) {
+            j++;
+        }
+        return j;
+    }
+
+    // Escapes simples (\" \\ \/); los ids y estados no traen \\uXXXX
+    private static String desescapar(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, String> parsearFormulario(String texto) {
+        Map<String, String> campos = new HashMap<>();
+        if (texto == null || texto.isEmpty()) {
+            return campos;
+        }
+        for (String par : texto.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                campos.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return campos;
+    }
+
+    private static void responder(HttpExchange ex, int codigo) throws IOException {
+        ex.sendResponseHeaders(codigo, -1);
+        try (OutputStream out = ex.getResponseBody()) {
+            // Sin cuerpo
+        }
+    }
+
+    /**
+     * Un aviso de entrega recibido.
+     */
+    private static class Aviso {
+        final String idMensaje;
+        final String estado;
+        final long recibido = System.currentTimeMillis();
+
+        Aviso(String idMensaje, String estado) {
+            this.idMensaje = idMensaje;
+            this.estado = estado;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package servicio;
+
+import DAO.AlertaDAO;
+import DAO.EstadoCobranzaDAO;
+import modelo.AlertaGerente;
+import modelo.AlertaGerente.TipoAlerta;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reconciliación de la lista MOROSOS del router con la base de datos.
+ *
+ * El estado de corte vive en dos lugares (suscripcion.activo /
+ * estado_cobranza y la address-list MOROSOS); una llamada REST fallida los
+ * desincroniza. En cada corrida:
+ * 1. Se lee la address-list completa en una llamada y la situación de las
+ *    suscripciones en una consulta.
+ * 2. Se comparan con HashSet (O(n)):
+ *    - Falta en el router: CORTADO por cobranza, inactiva, sin dar de baja,
+ *      con deuda y sin reconexión en cola → se agrega.
+ *    - Sobra en el router: entrada "Auto-corte FNET" cuya IP no debe estar
+ *      cortada → se quita. Las entradas agregadas a mano nunca se tocan.
+ *    - Las IPs dudosas (dadas de baja, pagadas esperando reconexión, IP
+ *      compartida entre una activa y una cortada) no se tocan.
+ * 3. Solo se aplican las diferencias, en paralelo con el mismo límite por
+ *    router que los cortes.
+ *
+ * Si hubo diferencias se deja una alerta al gerente con el resumen.
+ */
+public class ReconciliadorMorosos {
+
+    private final IRouterService routerService;
+    private final EstadoCobranzaDAO estadoCobranzaDAO;
+    private final AlertaDAO alertaDAO;
+    private final int comandosPorRouter;
+
+    public ReconciliadorMorosos(IRouterService routerService, EstadoCobranzaDAO estadoCobranzaDAO,
+            AlertaDAO alertaDAO, int comandosPorRouter) {
+        this.routerService = routerService;
+        this.estadoCobranzaDAO = estadoCobranzaDAO;
+        this.alertaDAO = alertaDAO;
+        this.comandosPorRouter = Math.max(1, comandosPorRouter);
+    }
+
+    /**
+     * Compara router y base de datos y corrige las diferencias.
+     *
+     * @return resultado, o null si no se pudo leer el router o la BD
+     */
+    public ResultadoReconciliacion reconciliar() {
+        long inicio = System.currentTimeMillis();
+
+        List<IRouterService.EntradaMorosos> entradas = routerService.listarMorosos();
+        if (entradas == null) {
+            System.out.println("   ⏭️ Reconciliación MOROSOS: el router (" + routerService.getTipoRouter()
+                    + ") no permite listar la address-list");
+            return null;
+        }
+        List<Object[]> situacion = estadoCobranzaDAO.listarSituacionRouter();
+        if (situacion == null) {
+            return null;
+        }
+
+        // Qué debería haber en el router según la BD
+        Set<String> deben = new HashSet<>();
+        Set<String> libres = new HashSet<>();
+        Set<String> dudosas = new HashSet<>();
+        for (Object[] f : situacion) {
+            String ip = (String) f[0];
+            boolean activa = (Boolean) f[2];
+            boolean cortadaPorCobranza = "CORTADO".equals(f[3]);
+            boolean cancelada = (Boolean) f[4];
+            boolean conDeuda = (Boolean) f[5];
+            boolean reconexionPendiente = (Boolean) f[6];
+
+            if (activa) {
+                libres.add(ip);
+            } else if (cortadaPorCobranza && !cancelada && conDeuda && !reconexionPendiente) {
+                deben.add(ip);
+            } else {
+                dudosas.add(ip);
+            }
+        }
+        // IP compartida entre una activa y una cortada: no se decide
+        for (String ip : new ArrayList<>(deben)) {
+            if (libres.contains(ip)) {
+                deben.remove(ip);
+                libres.remove(ip);
+                dudosas.add(ip);
+            }
+        }
+
+        // Qué hay en el router
+        ResultadoReconciliacion resultado = new ResultadoReconciliacion();
+        resultado.enRouter = entradas.size();
+        resultado.esperadas = deben.size();
+
+        Set<String> enRouter = new HashSet<>();
+        List<IRouterService.EntradaMorosos> aQuitar = new ArrayList<>();
+        for (IRouterService.EntradaMorosos e : entradas) {
+            enRouter.add(e.ipCliente);
+            if (deben.contains(e.ipCliente) || dudosas.contains(e.ipCliente)) {
+                continue;
+            }
+            if (e.esAutoCorte()) {
+                aQuitar.add(e);
+            } else if (libres.contains(e.ipCliente)) {
+                resultado.manualesActivas.add(e.ipCliente); // Solo se informa
+            }
+        }
+        List<String> aAgregar = new ArrayList<>();
+        for (String ip : deben) {
+            if (!enRouter.contains(ip)) {
+                aAgregar.add(ip);
+            }
+        }
+
+        if (!aAgregar.isEmpty() || !aQuitar.isEmpty()) {
+            aplicar(aAgregar, aQuitar, resultado);
+        }
+
+        resultado.duracionMs = System.currentTimeMillis() - inicio;
+        if (resultado.hayDiferencias()) {
+            alertaDAO.crearAlerta(new AlertaGerente(
+                    TipoAlerta.OTRO,
+                    "Diferencias entre router y sistema",
+                    String.format("La lista MOROSOS no coincidía con el sistema: %d IPs faltaban (agregadas: %d), "
+                            + "%d sobraban (quitadas: %d), %d comandos fallidos. "
+                            + "%d clientes activos siguen en la lista por entradas manuales.",
+                            aAgregar.size(), resultado.agregadas.size(), aQuitar.size(),
+                            resultado.quitadas.size(), resultado.fallidas.size(),
+                            resultado.manualesActivas.size())));
+        }
+        return resultado;
+    }
+
+    /**
+     * Aplica solo las diferencias, limitadas por el semáforo del router.
+     */
+    private void aplicar(List<String> aAgregar, List<IRouterService.EntradaMorosos> aQuitar,
+            ResultadoReconciliacion resultado) {
+        Semaphore semaforo = EjecutorCortes.semaforoRouter(routerService, comandosPorRouter);
+        int total = aAgregar.size() + aQuitar.size();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(comandosPorRouter, total));
+
+        try {
+            List<Future<Boolean>> agregados = new ArrayList<>();
+            for (String ip : aAgregar) {
+                agregados.add(pool.submit(() -> conPermiso(semaforo, () -> routerService.cortarServicio(ip))));
+            }
+            List<Future<Boolean>> quitados = new ArrayList<>();
+            for (IRouterService.EntradaMorosos e : aQuitar) {
+                quitados.add(pool.submit(() -> conPermiso(semaforo, () -> routerService.quitarEntradaMorosos(e))));
+            }
+
+            for (int i = 0; i < aAgregar.size(); i++) {
+                (esperar(agregados.get(i)) ? resultado.agregadas : resultado.fallidas).add(aAgregar.get(i));
+            }
+            for (int i = 0; i < aQuitar.size(); i++) {
+                (esperar(quitados.get(i)) ? resultado.quitadas : resultado.fallidas).add(aQuitar.get(i).ipCliente);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static boolean conPermiso(Semaphore semaforo, java.util.function.BooleanSupplier comando)
+            throws InterruptedException {
+        semaforo.acquire();
+        try {
+            return comando.getAsBoolean();
+        } catch (Exception e) {
+            System.err.println("   ❌ Reconciliación: " + e.getMessage());
+            return false;
+        } finally {
+            semaforo.release();
+        }
+    }
+
+    private static boolean esperar(Future<Boolean> futuro) {
+        try {
+            return futuro.get();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resultado de una reconciliación.
+     */
+    public static class ResultadoReconciliacion {
+        public int enRouter = 0;
+        public int esperadas = 0;
+        public final List<String> agregadas = new ArrayList<>();
+        public final List<String> quitadas = new ArrayList<>();
+        public final List<String> fallidas = new ArrayList<>();
+        public final List<String> manualesActivas = new ArrayList<>();
+        public long duracionMs = 0;
+
+        public boolean hayDiferencias() {
+            return !agregadas.isEmpty() || !quitadas.isEmpty() || !fallidas.isEmpty();
+        }
+    }
+}
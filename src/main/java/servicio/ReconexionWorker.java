@@ -0,0 +1,246 @@
+package servicio;
+
+import DAO.AlertaDAO;
+import DAO.ConfiguracionDAO;
+import DAO.EstadoCobranzaDAO;
+import DAO.EventoPagoDAO;
+import DAO.NotificacionDAO;
+import DAO.SuscripcionDAO;
+import bd.Conexion;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconexión automática tras un pago.
+ *
+ * Cada INTERVALO_SEGUNDOS lee la cola evento_pago (la llenan PagoDAO y
+ * CobrosAutomaticoService.procesarPago) y, por suscripción:
+ * 1. Si aún queda deuda, no hace nada (la etapa ya la recalculó PagoDAO).
+ * 2. Si no, cancela sus notificaciones pendientes.
+ * 3. Si estaba CORTADA por cobranza, la reconecta en el router (con el
+ *    mismo límite por router que los cortes).
+ * Si el router falla se reintenta con espera creciente; al agotar los
+ * intentos el evento queda FALLIDO y se crea una alerta RECONEXION_FALLO.
+ */
+public class ReconexionWorker {
+
+    private static final int INTERVALO_SEGUNDOS = 3;
+    private static final int EVENTOS_POR_CICLO = 100;
+    private static final int MAX_INTENTOS = 6;
+    private static final int ESPERA_BASE_SEGUNDOS = 5; // 5s, 15s, 45s, 2m, 7m
+    // Cada hilo usa una conexión del pool: tope fijo, sin importar los
+    // permisos del router (ver PoolConexiones.CONEXIONES_SEGUNDO_PLANO)
+    private static final int HILOS_MAXIMOS = 2;
+
+    private final IRouterService routerService;
+    private final EventoPagoDAO eventoPagoDAO;
+    private final NotificacionDAO notificacionDAO;
+    private final SuscripcionDAO suscripcionDAO;
+    private final EstadoCobranzaDAO estadoCobranzaDAO;
+    private final AlertaDAO alertaDAO;
+    private final ConfiguracionDAO configDAO;
+    private final ScheduledExecutorService scheduler;
+
+    public ReconexionWorker(IRouterService routerService) {
+        this.routerService = routerService;
+        this.eventoPagoDAO = new EventoPagoDAO();
+        this.notificacionDAO = new NotificacionDAO();
+        this.suscripcionDAO = new SuscripcionDAO();
+        this.estadoCobranzaDAO = new EstadoCobranzaDAO();
+        this.alertaDAO = new AlertaDAO();
+        this.configDAO = new ConfiguracionDAO();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    public void iniciar() {
+        System.out.println("   🔌 Reconexión automática: revisando pagos cada " + INTERVALO_SEGUNDOS + "s");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                procesarPendientes();
+            } catch (Exception e) {
+                System.err.println("❌ Error en ReconexionWorker: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, INTERVALO_SEGUNDOS, INTERVALO_SEGUNDOS, TimeUnit.SECONDS);
+    }
+
+    public void detener() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Procesa los eventos pendientes una vez.
+     *
+     * @return cantidad de suscripciones reconectadas
+     */
+    public int procesarPendientes() {
+        List<Object[]> eventos = eventoPagoDAO.obtenerPendientes(EVENTOS_POR_CICLO);
+        if (eventos.isEmpty()) {
+            return 0;
+        }
+
+        // Varios pagos de la misma suscripción se atienden juntos
+        Map<Integer, List<Long>> porSuscripcion = new LinkedHashMap<>();
+        Map<Integer, Integer> intentos = new LinkedHashMap<>();
+        for (Object[] e : eventos) {
+            int idSuscripcion = (Integer) e[1];
+            porSuscripcion.computeIfAbsent(idSuscripcion, k -> new ArrayList<>()).add((Long) e[0]);
+            intentos.merge(idSuscripcion, (Integer) e[2], Math::max);
+        }
+
+        int permisos = configDAO.obtenerValorInt(ConfiguracionDAO.CORTES_POR_ROUTER, 4);
+        Semaphore semaforo = EjecutorCortes.semaforoRouter(routerService, permisos);
+        int hilos = Math.min(Math.min(Math.max(1, permisos), HILOS_MAXIMOS), porSuscripcion.size());
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        int reconectadas = 0;
+
+        try {
+            List<Future<Boolean>> futuros = new ArrayList<>();
+            for (Map.Entry<Integer, List<Long>> e : porSuscripcion.entrySet()) {
+                int idSuscripcion = e.getKey();
+                futuros.add(pool.submit(() -> procesar(idSuscripcion, e.getValue(),
+                        intentos.get(idSuscripcion), semaforo)));
+            }
+            for (Future<Boolean> futuro : futuros) {
+                try {
+                    if (futuro.get()) {
+                        reconectadas++;
+                    }
+                } catch (Exception e) {
+                    System.err.println("❌ Error en reconexión: " + e.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (reconectadas > 0) {
+            System.out.println("🟢 [Reconexión] " + reconectadas + " servicios reconectados");
+        }
+        return reconectadas;
+    }
+
+    /**
+     * Atiende los eventos de una suscripción.
+     *
+     * @return true si se reconectó el servicio
+     */
+    private boolean procesar(int idSuscripcion, List<Long> idsEvento, int intentosPrevios, Semaphore semaforo)
+            throws InterruptedException {
+        Object[] info = obtenerSituacion(idSuscripcion);
+        if (info == null) {
+            reintentarOFallar(idSuscripcion, "Suscripción " + idSuscripcion, idsEvento, intentosPrevios,
+                    "Suscripción no encontrada o sin conexión a BD");
+            return false;
+        }
+        String nombreCliente = (String) info[0];
+        String ipCliente = (String) info[1];
+        boolean activa = (Boolean) info[2];
+        String estado = (String) info[3];
+        boolean conDeuda = (Boolean) info[4];
+
+        if (conDeuda) {
+            eventoPagoDAO.marcarProcesados(idsEvento, "Aún tiene deuda pendiente");
+            return false;
+        }
+
+        notificacionDAO.cancelarPendientes(idSuscripcion);
+
+        // Solo se reactiva lo que cortó la cobranza (no las bajas)
+        if (activa || !"CORTADO".equals(estado)) {
+            eventoPagoDAO.marcarProcesados(idsEvento, "Sin deuda; no estaba cortado");
+            return false;
+        }
+
+        if (ipCliente == null || ipCliente.isEmpty()) {
+            eventoPagoDAO.marcarFallidos(idsEvento, "Sin IP configurada");
+            alertaDAO.crearAlertaReconexionFallo(idSuscripcion, nombreCliente, "Sin IP configurada");
+            return false;
+        }
+
+        boolean reconectado;
+        String error;
+        semaforo.acquire();
+        try {
+            reconectado = routerService.reconectarServicio(ipCliente);
+            error = reconectado ? null : "El router no confirmó la reconexión (" + routerService.getTipoRouter() + ")";
+        } catch (Exception e) {
+            reconectado = false;
+            error = e.getMessage();
+        } finally {
+            semaforo.release();
+        }
+
+        if (reconectado) {
+            suscripcionDAO.cambiarEstado(idSuscripcion, 1);
+            estadoCobranzaDAO.registrarReconexion(idSuscripcion);
+            eventoPagoDAO.marcarProcesados(idsEvento, "Reconectado");
+            System.out.println("   🟢 Servicio reconectado: " + nombreCliente + " (" + ipCliente + ")");
+            return true;
+        }
+
+        reintentarOFallar(idSuscripcion, nombreCliente, idsEvento, intentosPrevios, error);
+        return false;
+    }
+
+    /**
+     * Reprograma los eventos con espera creciente o, si ya se agotaron los
+     * intentos, los marca FALLIDOS y alerta al gerente.
+     */
+    private void reintentarOFallar(int idSuscripcion, String nombreCliente, List<Long> idsEvento,
+            int intentosPrevios, String error) {
+        int intento = intentosPrevios + 1;
+        if (intento < MAX_INTENTOS) {
+            int espera = ESPERA_BASE_SEGUNDOS * (int) Math.pow(3, intentosPrevios);
+            eventoPagoDAO.reprogramar(idsEvento, espera, error);
+            System.out.println("   ⚠️ Reconexión fallida: " + nombreCliente + " (intento " + intento
+                    + ", reintento en " + espera + "s)");
+        } else {
+            eventoPagoDAO.marcarFallidos(idsEvento, error);
+            alertaDAO.crearAlertaReconexionFallo(idSuscripcion, nombreCliente, error);
+            System.err.println("   ❌ Reconexión fallida tras " + intento + " intentos: " + nombreCliente);
+        }
+    }
+
+    /**
+     * { nombreCliente, ipCliente, activa, estado_cobranza, conDeuda } o null.
+     */
+    private Object[] obtenerSituacion(int idSuscripcion) {
+        String sql = "SELECT c.nombres, c.apellidos, s.ip_cliente, s.activo, ec.estado, " +
+                "EXISTS (SELECT 1 FROM factura f WHERE f.id_suscripcion = s.id_suscripcion AND f.id_estado = 1) AS con_deuda " +
+                "FROM suscripcion s " +
+                "JOIN cliente c ON s.id_cliente = c.id_cliente " +
+                "LEFT JOIN estado_cobranza ec ON ec.id_suscripcion = s.id_suscripcion " +
+                "WHERE s.id_suscripcion = ?";
+
+        try (Connection conn = Conexion.getConexion();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, idSuscripcion);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new Object[] {
+                            rs.getString("nombres") + " " + rs.getString("apellidos"),
+                            rs.getString("ip_cliente"),
+                            rs.getInt("activo") == 1,
+                            rs.getString("estado"),
+                            rs.getBoolean("con_deuda") };
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,57 @@
+package servicio;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ritmo de envío por proveedor de WhatsApp, compartido por todos los hilos.
+ *
+ * Cada envío reserva un turno: el siguiente queda a
+ * IWhatsAppService.getIntervaloEnvioMs() del anterior. Los hilos esperan su
+ * turno fuera del candado, así N hilos nunca superan el ritmo del
+ * proveedor (el envío HTTP de uno se solapa con la espera de otro).
+ */
+public class RitmoProveedor {
+
+    // Un ritmo por proveedor (getNombreServicio), compartido entre corridas
+    private static final Map<String, RitmoProveedor> RITMOS = new ConcurrentHashMap<>();
+
+    private final IWhatsAppService proveedor;
+    private long siguienteTurno = 0;
+
+    private RitmoProveedor(IWhatsAppService proveedor) {
+        this.proveedor = proveedor;
+    }
+
+    public static RitmoProveedor de(IWhatsAppService proveedor) {
+        return RITMOS.computeIfAbsent(proveedor.getNombreServicio(), k -> new RitmoProveedor(proveedor));
+    }
+
+    /**
+     * Bloquea hasta que le toque enviar a este hilo.
+     */
+    public void esperarTurno() throws InterruptedException {
+        long turno;
+        synchronized (this) {
+            turno = Math.max(System.currentTimeMillis(), siguienteTurno);
+            siguienteTurno = turno + proveedor.getIntervaloEnvioMs();
+        }
+        long espera = turno - System.currentTimeMillis();
+        if (espera > 0) {
+            Thread.sleep(espera);
+        }
+    }
+
+    /**
+     * Envía respetando el ritmo (para envíos sueltos fuera del despachador).
+     */
+    public boolean enviar(String telefono, String mensaje) {
+        try {
+            esperarTurno();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return proveedor.enviarMensaje(telefono, mensaje);
+    }
+}
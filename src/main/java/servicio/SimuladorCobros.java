@@ -0,0 +1,509 @@
+package servicio;
+
+import DAO.ConfiguracionDAO;
+import bd.Conexion;
+import modelo.CalculadoraPeriodos;
+import modelo.EstadoCobranza;
+import modelo.EstadoCobranza.Estado;
+import modelo.NotificacionPendiente.EstadoNotificacion;
+import modelo.NotificacionPendiente.TipoNotificacion;
+import modelo.PeriodoFacturacion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Simulación (dry-run) del proceso de cobros de CobrosAutomaticoService.
+ *
+ * Carga una sola vez una foto de solo lectura de suscripcion, factura,
+ * notificacion_pendiente y estado_cobranza y ejecuta en memoria los ciclos
+ * horarios de ejecutarProcesoDiario (generación, facturas vencidas,
+ * ultimátums) con un reloj inyectado. NO escribe en MySQL ni llama a
+ * WhatsApp ni al router.
+ *
+ * Las etapas siguen las mismas reglas que EstadoCobranzaDAO: recordatorio
+ * por episodio de deuda (AL_DIA / RECONECTADO → RECORDADO), ULTIMATUM al
+ * enviarse el ultimátum y corte cuando vence proxima_accion
+ * (EstadoCobranza.calcularProximaAccion).
+ *
+ * Sirve para probar cambios de configuración (PLAZO_PAGO_DIAS,
+ * DIAS_RECORDATORIO) y para simular un mes completo en segundos.
+ */
+public class SimuladorCobros {
+
+    private static final ZoneId ZONA = ZoneId.of("America/Lima");
+
+    private final CalculadoraPeriodos periodos = CalculadoraPeriodos.getInstancia();
+
+    // Configuración (por defecto la de la BD, se puede sobrescribir)
+    private int plazoDias;
+    private int diasRecordatorio;
+    // El envío automático está deshabilitado en producción; activarlo para
+    // simular el paso RECORDATORIO enviado → ULTIMATUM → corte
+    private boolean simularEnvios = false;
+
+    // Foto en memoria
+    private final List<SuscripcionSim> suscripciones = new ArrayList<>();
+    private long msCarga;
+
+    public SimuladorCobros() {
+        ConfiguracionDAO configDAO = new ConfiguracionDAO();
+        this.plazoDias = configDAO.obtenerValorInt(ConfiguracionDAO.PLAZO_PAGO_DIAS, 21);
+        this.diasRecordatorio = configDAO.obtenerValorInt(ConfiguracionDAO.DIAS_RECORDATORIO, 0);
+    }
+
+    public void setPlazoDias(int plazoDias) {
+        this.plazoDias = plazoDias;
+    }
+
+    public void setDiasRecordatorio(int diasRecordatorio) {
+        this.diasRecordatorio = diasRecordatorio;
+    }
+
+    public void setSimularEnvios(boolean simularEnvios) {
+        this.simularEnvios = simularEnvios;
+    }
+
+    /**
+     * Carga la foto de la BD (solo lectura). Debe llamarse antes de simular.
+     */
+    public boolean cargarFoto() {
+        long inicio = System.currentTimeMillis();
+        suscripciones.clear();
+        Map<Integer, SuscripcionSim> porId = new HashMap<>();
+
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                System.err.println("❌ Simulador: sin conexión a la base de datos");
+                return false;
+            }
+            conn.setReadOnly(true);
+
+            String sqlSus = "SELECT s.id_suscripcion, s.activo, s.fecha_cancelacion, s.mes_adelantado, s.dia_pago, s.ip_cliente, " +
+                    "srv.mensualidad, c.nombres, c.apellidos, c.telefono " +
+                    "FROM suscripcion s " +
+                    "JOIN cliente c ON s.id_cliente = c.id_cliente " +
+                    "JOIN servicio srv ON s.id_servicio = srv.id_servicio " +
+                    "ORDER BY s.id_suscripcion";
+            try (PreparedStatement ps = conn.prepareStatement(sqlSus);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    SuscripcionSim s = new SuscripcionSim();
+                    s.id = rs.getInt("id_suscripcion");
+                    s.activo = rs.getInt("activo") == 1;
+                    s.cancelada = rs.getDate("fecha_cancelacion") != null;
+                    s.mesAdelantado = rs.getInt("mes_adelantado") == 1;
+                    s.diaPago = rs.getInt("dia_pago");
+                    s.ip = rs.getString("ip_cliente");
+                    s.mensualidad = rs.getDouble("mensualidad");
+                    s.nombre = rs.getString("nombres") + " " + rs.getString("apellidos");
+                    String telefono = rs.getString("telefono");
+                    s.tieneTelefono = telefono != null && !telefono.trim().isEmpty();
+                    suscripciones.add(s);
+                    porId.put(s.id, s);
+                }
+            }
+
+            String sqlFac = "SELECT id_suscripcion, periodo_mes, fecha_vencimiento, id_estado FROM factura";
+            try (PreparedStatement ps = conn.prepareStatement(sqlFac);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    SuscripcionSim s = porId.get(rs.getInt("id_suscripcion"));
+                    if (s == null) {
+                        continue;
+                    }
+                    s.periodosFacturados.add(rs.getString("periodo_mes"));
+                    java.sql.Date venc = rs.getDate("fecha_vencimiento");
+                    if (rs.getInt("id_estado") == 1 && venc != null) {
+                        s.agregarPendiente(venc.toLocalDate());
+                    }
+                }
+            }
+
+            String sqlNot = "SELECT id_suscripcion, tipo, estado, fecha_programada, fecha_enviado " +
+                    "FROM notificacion_pendiente";
+            try (PreparedStatement ps = conn.prepareStatement(sqlNot);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    SuscripcionSim s = porId.get(rs.getInt("id_suscripcion"));
+                    if (s == null) {
+                        continue;
+                    }
+                    try {
+                        java.sql.Date fecha = rs.getDate("fecha_programada");
+                        NotificacionSim n = new NotificacionSim(
+                                TipoNotificacion.valueOf(rs.getString("tipo")),
+                                EstadoNotificacion.valueOf(rs.getString("estado")),
+                                fecha != null ? fecha.toLocalDate() : null);
+                        java.sql.Timestamp enviado = rs.getTimestamp("fecha_enviado");
+                        n.enviado = enviado != null ? enviado.toLocalDateTime() : null;
+                        s.notificaciones.add(n);
+                    } catch (IllegalArgumentException e) {
+                        // Tipo/estado que el proceso no usa (ej: CANCELADO)
+                    }
+                }
+            }
+
+            String sqlEtapa = "SELECT id_suscripcion, estado, proxima_accion, fecha_recordado FROM estado_cobranza";
+            try (PreparedStatement ps = conn.prepareStatement(sqlEtapa);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    SuscripcionSim s = porId.get(rs.getInt("id_suscripcion"));
+                    if (s == null) {
+                        continue;
+                    }
+                    s.etapa = Estado.valueOf(rs.getString("estado"));
+                    java.sql.Date proxima = rs.getDate("proxima_accion");
+                    s.proximaAccion = proxima != null ? proxima.toLocalDate() : null;
+                    java.sql.Timestamp recordado = rs.getTimestamp("fecha_recordado");
+                    s.fechaRecordado = recordado != null ? recordado.toLocalDateTime() : null;
+                }
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        msCarga = System.currentTimeMillis() - inicio;
+        System.out.println("📸 Foto cargada: " + suscripciones.size() + " suscripciones en " + msCarga + " ms");
+        return true;
+    }
+
+    /**
+     * Simula un ciclo por hora entre las dos fechas (inclusive), igual que
+     * MotorAutomatizacion. La foto en memoria avanza con cada ciclo.
+     */
+    public ResultadoSimulacion simular(LocalDateTime desde, LocalDateTime hasta) {
+        ResultadoSimulacion resultado = new ResultadoSimulacion();
+        resultado.msCarga = msCarga;
+        long inicio = System.currentTimeMillis();
+
+        LocalDate ultimoDia = null;
+        for (LocalDateTime t = desde.truncatedTo(ChronoUnit.HOURS); !t.isAfter(hasta); t = t.plusHours(1)) {
+            Clock reloj = Clock.fixed(t.atZone(ZONA).toInstant(), ZONA);
+            boolean primeraDelDia = !t.toLocalDate().equals(ultimoDia);
+            ultimoDia = t.toLocalDate();
+            ejecutarCiclo(reloj, primeraDelDia, resultado);
+            resultado.ciclos++;
+        }
+
+        resultado.msSimulacion = System.currentTimeMillis() - inicio;
+        return resultado;
+    }
+
+    /**
+     * Un ciclo de ejecutarProcesoDiario a la hora que marca el reloj.
+     */
+    public void ejecutarCiclo(Clock reloj, boolean primeraDelDia, ResultadoSimulacion resultado) {
+        LocalDateTime ahora = LocalDateTime.now(reloj);
+        LocalDate hoy = ahora.toLocalDate();
+        int hora = ahora.getHour();
+
+        // 1. Generación: 6AM, 8AM, 6PM o primera ejecución del día
+        if (hora == 6 || hora == 8 || hora == 18 || primeraDelDia) {
+            generarFacturas(ahora, hoy, resultado);
+        }
+
+        // 2. Facturas vencidas → RECORDATORIO
+        revisarFacturasVencidas(ahora, hoy, resultado);
+
+        // 3. Ultimátums vencidos → corte
+        revisarUltimatumsVencidos(ahora, hoy, resultado);
+
+        // 4. Cola de notificaciones (solo si se simulan envíos)
+        if (simularEnvios) {
+            procesarNotificaciones(ahora, hoy, resultado);
+        }
+    }
+
+    private void generarFacturas(LocalDateTime ahora, LocalDate hoy, ResultadoSimulacion resultado) {
+        for (SuscripcionSim s : suscripciones) {
+            if (!s.activo) {
+                continue;
+            }
+            PeriodoFacturacion periodo = periodos.calcular(hoy, s.diaPago, s.mesAdelantado);
+            if (periodo == null || !s.periodosFacturados.add(periodo.getNombrePeriodo())) {
+                continue; // Aún no le toca o ya existe
+            }
+            s.agregarPendiente(periodo.getFechaVencimiento());
+            resultado.registrar(ahora, "FACTURA", s, periodo.getNombrePeriodo() + " (" + periodo.getRangoPeriodo()
+                    + ") S/. " + String.format("%.2f", s.mensualidad));
+
+            // La generación también deja su recordatorio de nueva deuda
+            if (s.tieneTelefono) {
+                s.programar(TipoNotificacion.RECORDATORIO, hoy);
+            }
+            recalcular(s);
+        }
+    }
+
+    /**
+     * Igual que SQL_FACTURAS_VENCIDAS: AL_DIA / RECONECTADO con la próxima
+     * acción cumplida pasan a RECORDADO (un recordatorio por episodio).
+     */
+    private void revisarFacturasVencidas(LocalDateTime ahora, LocalDate hoy, ResultadoSimulacion resultado) {
+        for (SuscripcionSim s : suscripciones) {
+            if ((s.etapa != Estado.AL_DIA && s.etapa != Estado.RECONECTADO)
+                    || s.proximaAccion == null || s.proximaAccion.isAfter(hoy)) {
+                continue;
+            }
+            if (s.vencimientoMasAntiguo == null) {
+                recalcular(s); // Ya pagó
+                continue;
+            }
+            if (!s.activo) {
+                continue;
+            }
+            cambiarEtapa(s, Estado.RECORDADO);
+            s.fechaRecordado = ahora;
+            if (s.programar(TipoNotificacion.RECORDATORIO, hoy)) {
+                resultado.registrar(ahora, "RECORDATORIO", s,
+                        "límite " + s.vencimientoMasAntiguo.plusDays(plazoDias));
+            }
+        }
+    }
+
+    /**
+     * Igual que SQL_ULTIMATUMS_VENCIDOS: ULTIMATUM con la próxima acción
+     * cumplida y deuda de más de plazoDias días → corte.
+     */
+    private void revisarUltimatumsVencidos(LocalDateTime ahora, LocalDate hoy, ResultadoSimulacion resultado) {
+        for (SuscripcionSim s : suscripciones) {
+            sincronizarUltimatum(s);
+            if (s.etapa != Estado.ULTIMATUM || s.proximaAccion == null || s.proximaAccion.isAfter(hoy)) {
+                continue;
+            }
+            boolean conDeuda = s.vencimientoMasAntiguo != null
+                    && s.vencimientoMasAntiguo.isBefore(hoy.minusDays(plazoDias));
+            if (!conDeuda) {
+                recalcular(s);
+            } else if (!s.activo) {
+                if (!s.cancelada) {
+                    cambiarEtapa(s, Estado.CORTADO); // Cortada a mano
+                }
+            } else if (s.ip == null || s.ip.isEmpty()) {
+                resultado.registrar(ahora, "SIN_IP", s, "no se puede cortar");
+            } else {
+                s.activo = false;
+                cambiarEtapa(s, Estado.CORTADO);
+                resultado.registrar(ahora, "CORTE", s, s.ip);
+            }
+        }
+    }
+
+    private void procesarNotificaciones(LocalDateTime ahora, LocalDate hoy, ResultadoSimulacion resultado) {
+        for (SuscripcionSim s : suscripciones) {
+            // Copia: enviar un RECORDATORIO agrega un ULTIMATUM a la lista
+            for (NotificacionSim n : new ArrayList<>(s.notificaciones)) {
+                if (n.estado != EstadoNotificacion.PENDIENTE || n.fecha == null || n.fecha.isAfter(hoy)) {
+                    continue;
+                }
+                if (!s.tieneTelefono) {
+                    n.estado = EstadoNotificacion.SIN_TELEFONO;
+                    continue;
+                }
+                n.estado = EstadoNotificacion.ENVIADO;
+                n.enviado = ahora;
+                resultado.registrar(ahora, "ENVIO_" + n.tipo.name(), s, "");
+
+                if (n.tipo == TipoNotificacion.RECORDATORIO) {
+                    s.programar(TipoNotificacion.ULTIMATUM, hoy.plusDays(plazoDias));
+                }
+            }
+            sincronizarUltimatum(s); // EstadoCobranzaDAO.registrarEnvios
+        }
+    }
+
+    // ==================== ETAPAS (igual que EstadoCobranzaDAO) ====================
+
+    /**
+     * EstadoCobranzaDAO.recalcular: sin deuda, RECORDADO y ULTIMATUM vuelven
+     * a AL_DIA; con deuda solo cambia la próxima acción.
+     */
+    private void recalcular(SuscripcionSim s) {
+        Estado etapa = s.etapa == null ? Estado.AL_DIA : s.etapa;
+        if (s.vencimientoMasAntiguo == null && (etapa == Estado.RECORDADO || etapa == Estado.ULTIMATUM)) {
+            etapa = Estado.AL_DIA;
+        }
+        s.etapa = etapa;
+        s.proximaAccion = EstadoCobranza.calcularProximaAccion(etapa, s.vencimientoMasAntiguo,
+                diasRecordatorio, plazoDias);
+    }
+
+    /**
+     * RECORDADO → ULTIMATUM si hay un ultimátum enviado en este episodio.
+     */
+    private void sincronizarUltimatum(SuscripcionSim s) {
+        if (s.etapa != Estado.RECORDADO) {
+            return;
+        }
+        for (NotificacionSim n : s.notificaciones) {
+            if (n.tipo == TipoNotificacion.ULTIMATUM && n.estado == EstadoNotificacion.ENVIADO
+                    && (s.fechaRecordado == null || n.enviado == null || !n.enviado.isBefore(s.fechaRecordado))) {
+                s.etapa = Estado.ULTIMATUM;
+                s.proximaAccion = EstadoCobranza.calcularProximaAccion(Estado.ULTIMATUM, s.vencimientoMasAntiguo,
+                        diasRecordatorio, plazoDias);
+                return;
+            }
+        }
+    }
+
+    // Transición que espera un evento: la próxima acción queda en NULL
+    private static void cambiarEtapa(SuscripcionSim s, Estado etapa) {
+        s.etapa = etapa;
+        s.proximaAccion = null;
+    }
+
+    // ==================== FOTO EN MEMORIA ====================
+
+    private static class SuscripcionSim {
+        int id;
+        boolean activo;
+        boolean cancelada;
+        boolean mesAdelantado;
+        int diaPago;
+        double mensualidad;
+        String nombre;
+        String ip;
+        boolean tieneTelefono;
+        final Set<String> periodosFacturados = new HashSet<>();
+        final List<NotificacionSim> notificaciones = new ArrayList<>();
+        // Solo importa la factura pendiente más antigua para vencidas/ultimátums
+        LocalDate vencimientoMasAntiguo;
+        // Fila de estado_cobranza (etapa null = aún no tiene fila)
+        Estado etapa;
+        LocalDate proximaAccion;
+        LocalDateTime fechaRecordado;
+
+        void agregarPendiente(LocalDate vencimiento) {
+            if (vencimientoMasAntiguo == null || vencimiento.isBefore(vencimientoMasAntiguo)) {
+                vencimientoMasAntiguo = vencimiento;
+            }
+        }
+
+        /**
+         * Agrega una notificación PENDIENTE salvo que ya haya una del mismo
+         * tipo (uk_notificacion_pendiente_unica).
+         */
+        boolean programar(TipoNotificacion tipo, LocalDate fecha) {
+            for (NotificacionSim n : notificaciones) {
+                if (n.tipo == tipo && n.estado == EstadoNotificacion.PENDIENTE) {
+                    return false;
+                }
+            }
+            notificaciones.add(new NotificacionSim(tipo, EstadoNotificacion.PENDIENTE, fecha));
+            return true;
+        }
+    }
+
+    private static class NotificacionSim {
+        final TipoNotificacion tipo;
+        EstadoNotificacion estado;
+        final LocalDate fecha;
+        LocalDateTime enviado;
+
+        NotificacionSim(TipoNotificacion tipo, EstadoNotificacion estado, LocalDate fecha) {
+            this.tipo = tipo;
+            this.estado = estado;
+            this.fecha = fecha;
+        }
+    }
+
+    // ==================== RESULTADO ====================
+
+    /**
+     * Un hecho que el proceso real habría producido.
+     */
+    public static class EventoSimulado {
+        public final LocalDateTime momento;
+        public final String tipo; // FACTURA, RECORDATORIO, CORTE, SIN_IP, ENVIO_*
+        public final int idSuscripcion;
+        public final String cliente;
+        public final String detalle;
+
+        EventoSimulado(LocalDateTime momento, String tipo, int idSuscripcion, String cliente, String detalle) {
+            this.momento = momento;
+            this.tipo = tipo;
+            this.idSuscripcion = idSuscripcion;
+            this.cliente = cliente;
+            this.detalle = detalle;
+        }
+    }
+
+    /**
+     * Resultado de la simulación: eventos, totales por tipo y tiempos.
+     */
+    public static class ResultadoSimulacion {
+        public final List<EventoSimulado> eventos = new ArrayList<>();
+        public final Map<String, Integer> totales = new java.util.TreeMap<>();
+        public int ciclos = 0;
+        public long msCarga = 0;
+        public long msSimulacion = 0;
+
+        void registrar(LocalDateTime momento, String tipo, SuscripcionSim s, String detalle) {
+            eventos.add(new EventoSimulado(momento, tipo, s.id, s.nombre, detalle));
+            totales.merge(tipo, 1, Integer::sum);
+        }
+
+        public void mostrar(boolean detallado) {
+            System.out.println("\n" + "=".repeat(60));
+            System.out.println("🧪 RESULTADO DE SIMULACIÓN (sin cambios en BD)");
+            System.out.println("=".repeat(60));
+            if (detallado) {
+                for (EventoSimulado e : eventos) {
+                    System.out.println("   " + e.momento + " " + e.tipo + " #" + e.idSuscripcion + " "
+                            + e.cliente + (e.detalle.isEmpty() ? "" : " - " + e.detalle));
+                }
+                System.out.println("-".repeat(60));
+            }
+            for (Map.Entry<String, Integer> total : totales.entrySet()) {
+                System.out.println("   " + total.getKey() + ": " + total.getValue());
+            }
+            System.out.println("   ⏱️ Ciclos: " + ciclos + " | Carga: " + msCarga + " ms | Simulación: "
+                    + msSimulacion + " ms");
+            System.out.println("=".repeat(60) + "\n");
+        }
+    }
+
+    /**
+     * Uso: java -cp fnet-automation.jar servicio.SimuladorCobros desde hasta
+     * [plazoDias] [--envios] [--detalle]
+     * Fechas en formato yyyy-MM-dd (hasta incluye todo el día).
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: SimuladorCobros yyyy-MM-dd yyyy-MM-dd [plazoDias] [--envios] [--detalle]");
+            System.exit(1);
+        }
+        java.util.TimeZone.setDefault(java.util.TimeZone.getTimeZone("America/Lima"));
+
+        SimuladorCobros simulador = new SimuladorCobros();
+        if (args.length > 2 && !args[2].startsWith("--")) {
+            simulador.setPlazoDias(Integer.parseInt(args[2]));
+        }
+        List<String> opciones = java.util.Arrays.asList(args);
+        simulador.setSimularEnvios(opciones.contains("--envios"));
+
+        if (simulador.cargarFoto()) {
+            ResultadoSimulacion resultado = simulador.simular(
+                    LocalDate.parse(args[0]).atStartOfDay(),
+                    LocalDate.parse(args[1]).atTime(23, 0));
+            resultado.mostrar(opciones.contains("--detalle"));
+        }
+        bd.PoolConexiones.cerrarPool();
+    }
+}
@@ -2,7 +2,9 @@ package servicio;
 
 import com.twilio.Twilio;
 import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.rest.api.v2010.account.MessageCreator;
 import com.twilio.type.PhoneNumber;
+import java.net.URI;
 
 /**
  * Implementación de WhatsApp usando Twilio API.
@@ -34,14 +36,24 @@ public class TwilioWhatsAppService implements IWhatsAppService {
 
     @Override
     public boolean enviarMensaje(String telefono, String mensaje) {
+        return enviarConId(telefono, mensaje) != null;
+    }
+
+    /**
+     * Envía y retorna el SID del mensaje. Si está configurado
+     * ReceptorEntregas, Twilio avisa ahí los cambios de estado
+     * (statusCallback).
+     */
+    @Override
+    public String enviarConId(String telefono, String mensaje) {
         if (!estaHabilitado()) {
             System.err.println("❌ Twilio no está habilitado. No se puede enviar mensaje.");
-            return false;
+            return null;
         }
 
         if (telefono == null || telefono.isEmpty()) {
             System.err.println("❌ Número de teléfono vacío");
-            return false;
+            return null;
         }
 
         try {
@@ -52,11 +64,16 @@ public class TwilioWhatsAppService implements IWhatsAppService {
                     : "whatsapp:+51" + telefono.replaceAll("[^0-9]", "");
 
             // Enviar mensaje vía Twilio
-            Message twilioMessage = Message.creator(
+            MessageCreator creador = Message.creator(
                     new PhoneNumber(toNumber), // To
                     new PhoneNumber(fromNumber), // From (número de Twilio)
                     mensaje // Body
-            ).create();
+            );
+            String callback = ReceptorEntregas.urlCallback(ReceptorEntregas.RUTA_TWILIO);
+            if (callback != null) {
+                creador.setStatusCallback(URI.create(callback));
+            }
+            Message twilioMessage = creador.create();
 
             String sid = twilioMessage.getSid();
             String status = twilioMessage.getStatus().toString();
@@ -66,12 +83,12 @@ public class TwilioWhatsAppService implements IWhatsAppService {
             System.out.println("   🆔 SID: " + sid);
             System.out.println("   📊 Estado: " + status);
 
-            return true;
+            return sid != null ? sid : "";
 
         } catch (Exception e) {
             System.err.println("❌ Error enviando mensaje vía Twilio: " + e.getMessage());
             e.printStackTrace();
-            return false;
+            return null;
         }
     }
 
@@ -0,0 +1,118 @@
+package servicio;
+
+import bd.Conexion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifica con EXPLAIN que las consultas horarias de cobros usan
+ * idx_estado_cobranza_proxima (migración 7). Los índices de la migración 5
+ * dejaron de usarse al pasar a estado_cobranza y se quitan en la 12. Se
+ * ejecuta al arrancar, después de las migraciones; solo informa, no detiene
+ * el servicio.
+ *
+ * Con tablas muy pequeñas el optimizador puede preferir un full scan:
+ * en ese caso la advertencia no indica un problema.
+ */
+public class VerificacionPlanes {
+
+    // { nombre, consulta (parámetros de fecha), índices esperados }
+    private static final Object[][] CONSULTAS = {
+            { "revisarFacturasVencidas", CobrosAutomaticoService.SQL_FACTURAS_VENCIDAS,
+                    new String[] { "idx_estado_cobranza_proxima" } },
+            { "revisarUltimatumsVencidos", CobrosAutomaticoService.SQL_ULTIMATUMS_VENCIDOS,
+                    new String[] { "idx_estado_cobranza_proxima" } },
+    };
+
+    private VerificacionPlanes() {
+        // Utilidad estática - no instanciar
+    }
+
+    /**
+     * @return true si todas las consultas usan los índices esperados
+     */
+    public static boolean verificar() {
+        boolean todoOk = true;
+
+        try (Connection conn = Conexion.getConexion()) {
+            if (conn == null) {
+                System.err.println("❌ Verificación de planes: sin conexión a la base de datos");
+                return false;
+            }
+
+            for (Object[] consulta : CONSULTAS) {
+                String nombre = (String) consulta[0];
+                List<String> indices = obtenerIndicesUsados(conn, (String) consulta[1]);
+
+                List<String> faltantes = new ArrayList<>();
+                for (String esperado : (String[]) consulta[2]) {
+                    if (!contiene(indices, esperado)) {
+                        faltantes.add(esperado);
+                    }
+                }
+
+                if (faltantes.isEmpty()) {
+                    System.out.println("✅ Plan " + nombre + ": usa índices");
+                } else {
+                    todoOk = false;
+                    System.out.println("⚠️ Plan " + nombre + ": no usa " + faltantes + " (plan: " + indices + ")");
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("⚠️ No se pudo verificar planes de consulta: " + e.getMessage());
+            return false;
+        }
+
+        return todoOk;
+    }
+
+    /**
+     * Ejecuta EXPLAIN y retorna los índices elegidos. En MySQL es la columna
+     * "key" de cada fila; en otros motores (H2) el texto completo del plan.
+     */
+    private static List<String> obtenerIndicesUsados(Connection conn, String sql) throws SQLException {
+        List<String> indices = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN " + sql)) {
+            int parametros = sql.length() - sql.replace("?", "").length();
+            for (int i = 1; i <= parametros; i++) {
+                ps.setDate(i, java.sql.Date.valueOf(LocalDate.now()));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                int columnaKey = buscarColumna(rs.getMetaData(), "key");
+                while (rs.next()) {
+                    String valor = rs.getString(columnaKey > 0 ? columnaKey : 1);
+                    if (valor != null) {
+                        indices.add(valor);
+                    }
+                }
+            }
+        }
+        return indices;
+    }
+
+    private static int buscarColumna(ResultSetMetaData meta, String nombre) throws SQLException {
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            if (nombre.equalsIgnoreCase(meta.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean contiene(List<String> indices, String esperado) {
+        for (String indice : indices) {
+            if (indice.toLowerCase().contains(esperado)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
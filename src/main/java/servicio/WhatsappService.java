@@ -13,7 +13,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 
  * Características:
  * - Límite de 100 mensajes por día
- * - Delay de 1-2 segundos entre mensajes
+ * - Delay de 1-2 segundos entre mensajes (lo aplica RitmoProveedor, compartido
+ *   por todos los hilos de envío)
  * - Manejo de errores y reintentos
  * - Logging completo
  */
@@ -29,10 +30,13 @@ public class WhatsappService implements IWhatsAppService {
     private static AtomicInteger mensajesEnviadosHoy = new AtomicInteger(0);
     private static LocalDate ultimaFechaReset = LocalDate.now();
 
+    // "key": { ..., "id": "..." } en la respuesta de /send/text
+    private static final java.util.regex.Pattern ID_MENSAJE = java.util.regex.Pattern
+            .compile("\"key\"\\s*:\\s*\\{[^}]*\"id\"\\s*:\\s*\"([^\"]+)\"");
+
     // Delay entre mensajes (1-2 segundos aleatorio)
     private static final int DELAY_MIN_MS = 1000; // 1 segundo
     private static final int DELAY_MAX_MS = 2000; // 2 segundos
-    private static long ultimoEnvio = 0;
 
     public WhatsappService() {
         // Leer variables de entorno
@@ -57,58 +61,82 @@ public class WhatsappService implements IWhatsAppService {
     }
 
     /**
-     * Envía un mensaje de WhatsApp con control de límites y delays.
+     * Envía un mensaje de WhatsApp con control de límite diario. El delay entre
+     * mensajes lo aplica quien envía (RitmoProveedor).
      * 
      * @param telefono Número de teléfono en formato internacional (ej: 51999123456)
      * @param mensaje  Texto del mensaje a enviar
      * @return true si se envió correctamente, false si hubo error
      */
     public boolean enviarMensaje(String telefono, String mensaje) {
+        return enviarConId(telefono, mensaje) != null;
+    }
+
+    /**
+     * Igual que enviarMensaje; retorna el key.id que asigna Evolution API
+     * (con él llegan los webhooks messages.update a ReceptorEntregas).
+     */
+    @Override
+    public String enviarConId(String telefono, String mensaje) {
         try {
             // 1. Verificar y resetear contador diario
             resetearContadorSiEsNecesario();
 
-            // 2. Verificar límite diario
-            if (mensajesEnviadosHoy.get() >= MAX_MENSAJES_POR_DIA) {
+            // 2. Reservar un cupo del límite diario (varios hilos envían a la vez)
+            if (mensajesEnviadosHoy.incrementAndGet() > MAX_MENSAJES_POR_DIA) {
+                mensajesEnviadosHoy.decrementAndGet();
                 System.out.println("⚠️ Límite diario alcanzado (" + MAX_MENSAJES_POR_DIA + " mensajes)");
                 System.out.println("   Se resetea mañana a las 00:00");
-                return false;
+                return null;
             }
 
-            // 3. Aplicar delay entre mensajes
-            aplicarDelay();
-
-            // 4. Construir JSON del mensaje
-            String json = construirJSON(telefono, mensaje);
-
-            // 5. Crear request HTTP
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(apiUrl + "/send/text"))
-                    .header("Content-Type", "application/json")
-                    .header("apikey", apiKey)
-                    .timeout(Duration.ofSeconds(60))
-                    .POST(HttpRequest.BodyPublishers.ofString(json))
-                    .build();
-
-            // 6. Enviar request
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            // 7. Verificar respuesta
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                mensajesEnviadosHoy.incrementAndGet();
-                System.out.println("✅ Mensaje enviado a " + formatearTelefono(telefono));
-                System.out.println("   📊 Mensajes hoy: " + mensajesEnviadosHoy.get() + "/" + MAX_MENSAJES_POR_DIA);
-                return true;
-            } else {
-                System.err.println("❌ Error al enviar mensaje: HTTP " + response.statusCode());
-                System.err.println("   Respuesta: " + response.body());
-                return false;
+            // 3. Enviar; si falla se devuelve el cupo
+            String idMensaje = null;
+            try {
+                idMensaje = enviarRequest(telefono, mensaje);
+                return idMensaje;
+            } finally {
+                if (idMensaje == null) {
+                    mensajesEnviadosHoy.decrementAndGet();
+                }
             }
 
         } catch (Exception e) {
             System.err.println("❌ Excepción al enviar mensaje a " + telefono);
             e.printStackTrace();
-            return false;
+            return null;
+        }
+    }
+
+    /**
+     * Envía el request HTTP a la API.
+     *
+     * @return key.id del mensaje ("" si la respuesta no lo trae) o null si falló
+     */
+    private String enviarRequest(String telefono, String mensaje) throws Exception {
+        // Construir JSON del mensaje
+        String json = construirJSON(telefono, mensaje);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(apiUrl + "/send/text"))
+                .header("Content-Type", "application/json")
+                .header("apikey", apiKey)
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        // Verificar respuesta
+        if (response.statusCode() >= 200 && response.statusCode() < 300) {
+            System.out.println("✅ Mensaje enviado a " + formatearTelefono(telefono));
+            System.out.println("   📊 Mensajes hoy: " + mensajesEnviadosHoy.get() + "/" + MAX_MENSAJES_POR_DIA);
+            java.util.regex.Matcher m = ID_MENSAJE.matcher(response.body());
+            return m.find() ? m.group(1) : "";
+        } else {
+            System.err.println("❌ Error al enviar mensaje: HTTP " + response.statusCode());
+            System.err.println("   Respuesta: " + response.body());
+            return null;
         }
     }
 
@@ -135,7 +163,7 @@ public class WhatsappService implements IWhatsAppService {
      * Normaliza un número de teléfono agregando el código de país si no lo tiene.
      * Asume Perú (51) como código por defecto.
      */
-    private String normalizarTelefono(String telefono) {
+    static String normalizarTelefono(String telefono) {
         // Remover espacios y caracteres especiales
         String limpio = telefono.replaceAll("[^0-9]", "");
 
@@ -148,34 +176,28 @@ public class WhatsappService implements IWhatsAppService {
     }
 
     /**
-     * Aplica un delay aleatorio entre 1-2 segundos para evitar spam.
+     * Delay aleatorio entre 1-2 segundos para evitar spam.
      */
-    private void aplicarDelay() {
-        long ahora = System.currentTimeMillis();
-        long tiempoTranscurrido = ahora - ultimoEnvio;
-
-        if (ultimoEnvio > 0 && tiempoTranscurrido < DELAY_MIN_MS) {
-            try {
-                // Calcular delay aleatorio entre 1-2 segundos
-                int delayAleatorio = DELAY_MIN_MS + (int) (Math.random() * (DELAY_MAX_MS - DELAY_MIN_MS));
-                long delayNecesario = delayAleatorio - tiempoTranscurrido;
+    @Override
+    public long getIntervaloEnvioMs() {
+        return DELAY_MIN_MS + (long) (Math.random() * (DELAY_MAX_MS - DELAY_MIN_MS));
+    }
 
-                if (delayNecesario > 0) {
-                    System.out.println("⏳ Esperando " + (delayNecesario / 1000.0) + "s antes de enviar...");
-                    Thread.sleep(delayNecesario);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
+    @Override
+    public int getCupoDiario() {
+        return MAX_MENSAJES_POR_DIA;
+    }
 
-        ultimoEnvio = System.currentTimeMillis();
+    @Override
+    public int getCupoRestanteHoy() {
+        resetearContadorSiEsNecesario();
+        return Math.max(0, MAX_MENSAJES_POR_DIA - mensajesEnviadosHoy.get());
     }
 
     /**
      * Resetea el contador de mensajes si cambió el día.
      */
-    private void resetearContadorSiEsNecesario() {
+    private static synchronized void resetearContadorSiEsNecesario() {
         LocalDate hoy = LocalDate.now();
         if (!hoy.equals(ultimaFechaReset)) {
             int mensajesAyer = mensajesEnviadosHoy.getAndSet(0);